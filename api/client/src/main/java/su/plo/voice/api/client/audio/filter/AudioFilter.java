@@ -1,9 +1,14 @@
 package su.plo.voice.api.client.audio.filter;
 
 import org.jetbrains.annotations.NotNull;
+import su.plo.voice.api.util.AudioUtil;
 
 /**
  * Audio filters can modify audio before it will be played or sent
+ * <br/>
+ * (!) Filters must be thread-safe. Output device filters are called concurrently
+ * from the source lanes (up to 8 threads), so per-call state should be kept in local variables
+ * or thread-local buffers, and shared state should be read-only or synchronized
  */
 public interface AudioFilter {
 
@@ -20,6 +25,30 @@ public interface AudioFilter {
      */
     short[] process(short[] samples);
 
+    /**
+     * Process the audio filter in place
+     * <br/>
+     * Samples are in the short range and are clamped only once after all filters are processed,
+     * so device can convert samples to floats once for the whole filter chain
+     * <br/>
+     * Default implementation converts samples to shorts in a reused thread-local buffer and calls {@link #process(short[])},
+     * filters should override this method to avoid conversions
+     *
+     * @param samples the samples, only first {@code length} samples are processed
+     * @param length count of samples to process
+     * @return count of samples after processing, can't be greater than the array length
+     */
+    default int process(float[] samples, int length) {
+        short[] shorts = FilterBuffers.getShorts(length);
+        AudioUtil.floatsToShorts(samples, 0, length, shorts, 0);
+
+        short[] processed = process(shorts);
+        int processedLength = Math.min(processed.length, samples.length);
+        AudioUtil.shortsToFloats(processed, 0, processedLength, samples, 0);
+
+        return processedLength;
+    }
+
     /**
      * @return true if the filter is enabled
      */
@@ -0,0 +1,25 @@
+package su.plo.voice.api.client.audio.filter;
+
+/**
+ * Thread-local short buffers used by the default {@link AudioFilter#process(float[], int)} implementation
+ */
+final class FilterBuffers {
+
+    private static final ThreadLocal<short[]> SHORTS = ThreadLocal.withInitial(() -> new short[0]);
+
+    /**
+     * @return buffer of the exact length, reused by the current thread while the length is the same
+     */
+    static short[] getShorts(int length) {
+        short[] buffer = SHORTS.get();
+        if (buffer.length != length) {
+            buffer = new short[length];
+            SHORTS.set(buffer);
+        }
+
+        return buffer;
+    }
+
+    private FilterBuffers() {
+    }
+}
@@ -20,6 +20,11 @@ public final class AudioCaptureEvent extends EventCancellableBase {
     private final InputDevice device;
     @Getter
     private final short[] samples;
+    /**
+     * Time in {@link System#nanoTime()} when the first sample of the frame was captured by the device
+     */
+    @Getter
+    private final long captureTime;
     @Getter
     @Setter
     private boolean sendEnd;
@@ -27,8 +32,16 @@ public final class AudioCaptureEvent extends EventCancellableBase {
     public AudioCaptureEvent(@NotNull AudioCapture capture,
                              @NotNull InputDevice device,
                              short[] samples) {
+        this(capture, device, samples, System.nanoTime());
+    }
+
+    public AudioCaptureEvent(@NotNull AudioCapture capture,
+                             @NotNull InputDevice device,
+                             short[] samples,
+                             long captureTime) {
         this.capture = checkNotNull(capture, "capture");
         this.device = checkNotNull(device, "device");
         this.samples = checkNotNull(samples, "samples");
+        this.captureTime = captureTime;
     }
 }
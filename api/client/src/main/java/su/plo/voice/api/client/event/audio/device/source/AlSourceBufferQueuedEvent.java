@@ -10,6 +10,8 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * This event is fired once the buffer has been queued to the source
+ * <br/>
+ * The buffer is reused by the source after the event, so it shouldn't be stored
  */
 public final class AlSourceBufferQueuedEvent extends AlSourceEvent {
 
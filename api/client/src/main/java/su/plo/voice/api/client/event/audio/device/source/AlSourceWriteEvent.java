@@ -11,6 +11,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * This event is fired when the {@link AlSource#write(byte[])} has been called
+ * <br/>
+ * The buffer wraps the written samples and is copied to the source queue after the event,
+ * so it shouldn't be stored
  */
 public final class AlSourceWriteEvent extends AlSourceEvent implements EventCancellable {
 
@@ -0,0 +1,20 @@
+package su.plo.voice.api.client.event.audio.source;
+
+import lombok.Getter;
+import su.plo.voice.api.client.audio.source.ClientAudioSource;
+import su.plo.voice.api.event.Event;
+
+/**
+ * This event is fired once the {@link ClientAudioSource} stops playing audio that can be heard by the player
+ * <br/>
+ * The event is fired on the source thread
+ */
+public class AudioSourceDeactivatedEvent implements Event {
+
+    @Getter
+    protected final ClientAudioSource<?> source;
+
+    public AudioSourceDeactivatedEvent(ClientAudioSource<?> source) {
+        this.source = source;
+    }
+}
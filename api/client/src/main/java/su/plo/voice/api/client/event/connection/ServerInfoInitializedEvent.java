@@ -12,6 +12,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 /**
  * This event is fired once the {@link ConfigPacket} is received
  * and {@link ServerInfo} is available in {@link PlasmoVoiceClient#getServerInfo()}
+ * <br/>
+ * Fired on the voice connection bootstrap thread after the primary output device is opened,
+ * not on the main thread or the TCP packet thread, so listeners should schedule game state changes to the main thread
  */
 public final class ServerInfoInitializedEvent implements Event {
 
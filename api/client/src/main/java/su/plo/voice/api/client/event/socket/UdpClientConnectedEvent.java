@@ -9,6 +9,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * This event is fired once the udp client is connected to a server
+ * <br/>
+ * Fired on the voice connection bootstrap thread,
+ * not on the main thread or the TCP packet thread
  */
 public final class UdpClientConnectedEvent implements Event {
 
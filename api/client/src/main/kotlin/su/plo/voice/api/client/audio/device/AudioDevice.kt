@@ -26,6 +26,8 @@ interface AudioDevice {
 
     /**
      * Adds the filter to device with priority
+     *
+     * Filter must be thread-safe, see [AudioFilter]
      */
     fun addFilter(filter: AudioFilter, priority: AudioFilter.Priority)
 
@@ -51,10 +53,25 @@ interface AudioDevice {
     /**
      * Process all filters
      *
-     * @return the processed samples
+     * Samples are converted to floats once for the whole filter chain,
+     * the original array is not modified
+     *
+     * Can be called concurrently, output devices process filters from the source lanes
+     *
+     * @return the processed samples or the original array if there are no filters to process
      */
     fun processFilters(samples: ShortArray, excludeFilter: Predicate<AudioFilter>?): ShortArray
 
+    /**
+     * Process all filters in place
+     *
+     * @param samples the samples in the short range
+     * @param length count of samples to process
+     *
+     * @return count of samples after processing
+     */
+    fun processFilters(samples: FloatArray, length: Int, excludeFilter: Predicate<AudioFilter>?): Int
+
     /**
      * Process all filters
      *
@@ -1,3 +1,30 @@
 val mavenGroup: String by rootProject
 
 group = "$mavenGroup.api"
+
+// Java 17 sources (Vector API audio ops) are loaded only by name
+// if jdk.incubator.vector module is available
+val java17: SourceSet by sourceSets.creating {
+    java.setSrcDirs(listOf("src/main/java17"))
+    compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+}
+
+tasks.named<JavaCompile>(java17.compileJavaTaskName) {
+    javaCompiler.set(javaToolchains.compilerFor {
+        languageVersion.set(JavaLanguageVersion.of(17))
+    })
+    options.release.set(17)
+    options.encoding = Charsets.UTF_8.name()
+    options.compilerArgs.addAll(listOf("--add-modules", "jdk.incubator.vector"))
+}
+
+// Vector API classes are visible only to Java 17+ runtimes,
+// older runtimes never see class files they can't load
+tasks.jar {
+    into("META-INF/versions/17") {
+        from(java17.output)
+    }
+    manifest {
+        attributes("Multi-Release" to "true")
+    }
+}
@@ -5,6 +5,38 @@ public interface AudioDecoder {
 
     short[] decode(byte[] encoded) throws CodecException;
 
+    /**
+     * Decodes data into the caller-provided output array
+     * <br/>
+     * Default implementation falls back to {@link #decode(byte[])},
+     * implementations should override it to decode without allocations
+     *
+     * @param encoded the encoded data or null to conceal the lost packet
+     * @param offset the offset in the encoded array
+     * @param length the number of bytes to decode
+     * @param output the array to write decoded samples to
+     * @param outputOffset the offset in the output array
+     * @param outputLength the maximum number of samples to write
+     *
+     * @return the number of samples written to the output array
+     */
+    default int decode(byte[] encoded, int offset, int length,
+                       short[] output, int outputOffset, int outputLength) throws CodecException {
+        byte[] input = encoded;
+        if (encoded != null && (offset != 0 || length != encoded.length)) {
+            input = new byte[length];
+            System.arraycopy(encoded, offset, input, 0, length);
+        }
+
+        short[] decoded = decode(input);
+        if (decoded.length > outputLength) {
+            throw new CodecException("Output buffer is too small: " + outputLength + " < " + decoded.length);
+        }
+
+        System.arraycopy(decoded, 0, output, outputOffset, decoded.length);
+        return decoded.length;
+    }
+
     void open() throws CodecException;
 
     void reset();
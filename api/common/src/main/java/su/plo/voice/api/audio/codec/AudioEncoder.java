@@ -5,6 +5,38 @@ public interface AudioEncoder {
 
     byte[] encode(short[] samples) throws CodecException;
 
+    /**
+     * Encodes samples into the caller-provided output array
+     * <br/>
+     * Default implementation falls back to {@link #encode(short[])},
+     * implementations should override it to encode without allocations
+     *
+     * @param samples the input samples
+     * @param offset the offset in the input array
+     * @param length the number of samples to encode
+     * @param output the array to write encoded data to
+     * @param outputOffset the offset in the output array
+     * @param outputLength the maximum number of bytes to write
+     *
+     * @return the number of bytes written to the output array
+     */
+    default int encode(short[] samples, int offset, int length,
+                       byte[] output, int outputOffset, int outputLength) throws CodecException {
+        short[] input = samples;
+        if (offset != 0 || length != samples.length) {
+            input = new short[length];
+            System.arraycopy(samples, offset, input, 0, length);
+        }
+
+        byte[] encoded = encode(input);
+        if (encoded.length > outputLength) {
+            throw new CodecException("Output buffer is too small: " + outputLength + " < " + encoded.length);
+        }
+
+        System.arraycopy(encoded, 0, output, outputOffset, encoded.length);
+        return encoded.length;
+    }
+
     void open() throws CodecException;
 
     void reset();
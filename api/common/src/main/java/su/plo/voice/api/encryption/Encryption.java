@@ -1,8 +1,68 @@
 package su.plo.voice.api.encryption;
 
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
 public interface Encryption {
 
     byte[] encrypt(byte[] data) throws EncryptionException;
 
     byte[] decrypt(byte[] data) throws EncryptionException;
+
+    /**
+     * Encrypts remaining bytes of the input buffer into the output buffer
+     * <br/>
+     * Default implementation falls back to the array API,
+     * implementations should override it to avoid intermediate arrays
+     *
+     * @param input the buffer with data to encrypt
+     * @param output the buffer to write encrypted data to
+     *
+     * @return the number of bytes written to the output buffer
+     */
+    default int encrypt(@NotNull ByteBuffer input, @NotNull ByteBuffer output) throws EncryptionException {
+        byte[] data = new byte[input.remaining()];
+        input.get(data);
+
+        byte[] encrypted = encrypt(data);
+        output.put(encrypted);
+
+        return encrypted.length;
+    }
+
+    /**
+     * Gets the maximum length of the encrypted data, used to size the output buffer of {@link #encrypt(ByteBuffer, ByteBuffer)}
+     * <br/>
+     * Default implementation returns -1, which means the overhead is unknown
+     * and callers should use {@link #encrypt(byte[])} instead
+     *
+     * @param length the length of the data to encrypt
+     *
+     * @return the maximum length of the encrypted data or -1 if it's unknown
+     */
+    default int getMaxEncryptedLength(int length) {
+        return -1;
+    }
+
+    /**
+     * Decrypts remaining bytes of the input buffer into the output buffer
+     * <br/>
+     * Default implementation falls back to the array API,
+     * implementations should override it to avoid intermediate arrays
+     *
+     * @param input the buffer with data to decrypt
+     * @param output the buffer to write decrypted data to
+     *
+     * @return the number of bytes written to the output buffer
+     */
+    default int decrypt(@NotNull ByteBuffer input, @NotNull ByteBuffer output) throws EncryptionException {
+        byte[] data = new byte[input.remaining()];
+        input.get(data);
+
+        byte[] decrypted = decrypt(data);
+        output.put(decrypted);
+
+        return decrypted.length;
+    }
 }
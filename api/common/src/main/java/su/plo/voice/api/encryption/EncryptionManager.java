@@ -3,17 +3,37 @@ package su.plo.voice.api.encryption;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Collection;
+import java.util.List;
 
 // todo: doc
 public interface EncryptionManager {
 
     @NotNull Encryption create(@NotNull String name, byte[] data);
 
+    /**
+     * Creates an encryption over the list of algorithms sharing the same key
+     * <br/>
+     * Data is encrypted with {@code encryptAlgorithm} and tagged with its index in the list,
+     * decryption uses the algorithm from the tag, so peers can encrypt with different algorithms
+     * <br/>
+     * Algorithms that are not registered can't be used to decrypt
+     *
+     * @param algorithms the algorithms in the order advertised by the server
+     * @param encryptAlgorithm the algorithm used to encrypt data, must be registered
+     * @param data the key
+     *
+     * @return the new encryption
+     */
+    @NotNull Encryption createSuite(@NotNull List<String> algorithms, @NotNull String encryptAlgorithm, byte[] data);
+
     void register(@NotNull EncryptionSupplier supplier);
 
     boolean unregister(@NotNull String name);
 
     boolean unregister(@NotNull EncryptionSupplier supplier);
 
+    /**
+     * Gets registered algorithms in the registration order
+     */
     Collection<EncryptionSupplier> getAlgorithms();
 }
@@ -0,0 +1,23 @@
+package su.plo.voice.api.util;
+
+/**
+ * Bulk sample conversions used by {@link AudioUtil}
+ * <br/>
+ * Scalar implementation is used by default,
+ * SIMD implementation is used if jdk.incubator.vector module is available
+ */
+interface AudioOps {
+
+    void bytesToShorts(byte[] input, int offset, short[] output, int outputOffset, int samples);
+
+    void shortsToBytes(short[] input, int offset, byte[] output, int outputOffset, int samples);
+
+    void shortsToFloats(short[] input, int offset, float[] output, int outputOffset, int samples);
+
+    void convertToMono(short[] input, int offset, short[] output, int outputOffset, int monoSamples);
+
+    /**
+     * @return sum of squares of the samples normalized to [-1, 1]
+     */
+    double sumOfSquares(short[] samples, int from, int to);
+}
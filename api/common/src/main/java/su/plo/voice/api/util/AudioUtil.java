@@ -2,6 +2,11 @@ package su.plo.voice.api.util;
 
 public final class AudioUtil {
 
+    // vector ops are compiled for Java 17, so they should be loaded only by name
+    private static final String VECTOR_OPS_CLASS = "su.plo.voice.api.util.VectorAudioOps";
+
+    private static final AudioOps OPS = createOps();
+
     /**
      * Converts bytes to shorts
      *
@@ -9,13 +14,28 @@ public final class AudioUtil {
      */
     public static short[] bytesToShorts(byte[] bytes) {
         short[] shorts = new short[bytes.length / 2];
-        for (int i = 0; i < bytes.length; i += 2) {
-            shorts[i / 2] = bytesToShort(bytes[i], bytes[i + 1]);
-        }
+        OPS.bytesToShorts(bytes, 0, shorts, 0, shorts.length);
 
         return shorts;
     }
 
+    /**
+     * Converts bytes to shorts into the output array
+     *
+     * @param bytes the bytes
+     * @param offset offset in the bytes array
+     * @param length count of bytes to convert
+     * @param output the array to write shorts to
+     * @param outputOffset offset in the output array
+     * @return count of written shorts
+     */
+    public static int bytesToShorts(byte[] bytes, int offset, int length, short[] output, int outputOffset) {
+        int samples = length / 2;
+        OPS.bytesToShorts(bytes, offset, output, outputOffset, samples);
+
+        return samples;
+    }
+
     /**
      * Converts shorts to bytes
      *
@@ -23,16 +43,26 @@ public final class AudioUtil {
      */
     public static byte[] shortsToBytes(short[] shorts) {
         byte[] bytes = new byte[shorts.length * 2];
-
-        for (int i = 0; i < bytes.length; i += 2) {
-            byte[] sample = shortToBytes(shorts[i / 2]);
-            bytes[i] = sample[0];
-            bytes[i + 1] = sample[1];
-        }
+        OPS.shortsToBytes(shorts, 0, bytes, 0, shorts.length);
 
         return bytes;
     }
 
+    /**
+     * Converts shorts to bytes into the output array
+     *
+     * @param shorts the shorts
+     * @param offset offset in the shorts array
+     * @param length count of shorts to convert
+     * @param output the array to write bytes to
+     * @param outputOffset offset in the output array
+     * @return count of written bytes
+     */
+    public static int shortsToBytes(short[] shorts, int offset, int length, byte[] output, int outputOffset) {
+        OPS.shortsToBytes(shorts, offset, output, outputOffset, length);
+        return length * 2;
+    }
+
     /**
      * Converts two bytes to one short
      *
@@ -73,19 +103,48 @@ public final class AudioUtil {
      */
     public static float[] shortsToFloats(short[] input) {
         float[] ret = new float[input.length];
-
-        for(int i = 0; i < input.length; i++) {
-            ret[i] = Short.valueOf(input[i]).floatValue(); // 3Head
-//            if ((input[i * 2 + 1] & 128) != 0) {
-//                ret[i] = (float)(-32768 + ((input[i * 2 + 1] & 127) << 8) | input[i * 2] & 255);
-//            } else {
-//                ret[i] = (float)(input[i * 2 + 1] << 8 & '\uff00' | input[i * 2] & 255);
-//            }
-        }
+        OPS.shortsToFloats(input, 0, ret, 0, input.length);
 
         return ret;
     }
 
+    /**
+     * Converts shorts to floats into the output array
+     *
+     * @param input the shorts
+     * @param offset offset in the input array
+     * @param length count of shorts to convert
+     * @param output the array to write floats to
+     * @param outputOffset offset in the output array
+     */
+    public static void shortsToFloats(short[] input, int offset, int length, float[] output, int outputOffset) {
+        OPS.shortsToFloats(input, offset, output, outputOffset, length);
+    }
+
+    /**
+     * Converts floats to shorts into the output array
+     * <br/>
+     * Floats out of the short range are clamped
+     *
+     * @param input the floats
+     * @param offset offset in the input array
+     * @param length count of floats to convert
+     * @param output the array to write shorts to
+     * @param outputOffset offset in the output array
+     */
+    public static void floatsToShorts(float[] input, int offset, int length, short[] output, int outputOffset) {
+        for (int i = 0; i < length; i++) {
+            float sample = input[offset + i];
+            if (sample > Short.MAX_VALUE) {
+                sample = Short.MAX_VALUE;
+            } else if (sample < Short.MIN_VALUE) {
+                sample = Short.MIN_VALUE;
+            }
+
+            output[outputOffset + i] = (short) sample;
+        }
+    }
+
     /**
      * Checks if any sample audio level greater than the min audio level
      *
@@ -146,12 +205,7 @@ public final class AudioUtil {
      * @return the audio level
      */
     public static double calculateAudioLevel(short[] samples, int offset, int length) {
-        double rms = 0D; // root mean square (RMS) amplitude
-
-        for (int i = offset; i < length; i++) {
-            double sample = (double) samples[i] / Short.MAX_VALUE;
-            rms += sample * sample;
-        }
+        double rms = OPS.sumOfSquares(samples, offset, length); // root mean square (RMS) amplitude
 
         return calculateAudioLevelFromRMS(rms, samples.length);
     }
@@ -232,15 +286,30 @@ public final class AudioUtil {
      */
     public static short[] convertToMonoShorts(short[] samples) {
         short[] mono = new short[samples.length / 2];
-
-        // todo: better stereo -> mono conversation
-        for (int i = 0; i < samples.length; i += 2) {
-            mono[i / 2] = (short) ((samples[i] + samples[i + 1]) / 2);
-        }
+        OPS.convertToMono(samples, 0, mono, 0, mono.length);
 
         return mono;
     }
 
+    /**
+     * Converts stereo samples to mono shorts into the output array
+     * <br/>
+     * Output can be the same array as input with the same offset
+     *
+     * @param samples the stereo samples
+     * @param offset offset in the samples array
+     * @param length count of stereo samples to convert
+     * @param output the array to write mono samples to
+     * @param outputOffset offset in the output array
+     * @return count of written mono samples
+     */
+    public static int convertToMonoShorts(short[] samples, int offset, int length, short[] output, int outputOffset) {
+        int monoSamples = length / 2;
+        OPS.convertToMono(samples, offset, output, outputOffset, monoSamples);
+
+        return monoSamples;
+    }
+
     public static short[] normalizeAudioLevel(short[] samples, double targetAudioLevel) {
         double currentAudioLevel = calculateAudioLevel(samples, 0, samples.length);
 //        double currentAudioLevel = -14;
@@ -320,6 +389,25 @@ public final class AudioUtil {
         return (float) Math.exp(-1.0f / (sampleRate * time));
     }
 
+    /**
+     * Vector API is used if jdk.incubator.vector module is added to the runtime
+     * <br/>
+     * Can be disabled with "plasmovoice.disable_vector" system property
+     */
+    private static AudioOps createOps() {
+        if (System.getProperty("plasmovoice.disable_vector") != null) return new ScalarAudioOps();
+
+        try {
+            Class.forName("jdk.incubator.vector.ShortVector");
+
+            return (AudioOps) Class.forName(VECTOR_OPS_CLASS)
+                    .getMethod("create")
+                    .invoke(null);
+        } catch (Exception | LinkageError ignored) {
+            return new ScalarAudioOps();
+        }
+    }
+
     private AudioUtil() {
     }
 }
@@ -0,0 +1,47 @@
+package su.plo.voice.api.util;
+
+final class ScalarAudioOps implements AudioOps {
+
+    @Override
+    public void bytesToShorts(byte[] input, int offset, short[] output, int outputOffset, int samples) {
+        for (int i = 0; i < samples; i++) {
+            output[outputOffset + i] = AudioUtil.bytesToShort(input[offset + i * 2], input[offset + i * 2 + 1]);
+        }
+    }
+
+    @Override
+    public void shortsToBytes(short[] input, int offset, byte[] output, int outputOffset, int samples) {
+        for (int i = 0; i < samples; i++) {
+            short sample = input[offset + i];
+            output[outputOffset + i * 2] = (byte) (sample & 0xFF);
+            output[outputOffset + i * 2 + 1] = (byte) ((sample >> 8) & 0xFF);
+        }
+    }
+
+    @Override
+    public void shortsToFloats(short[] input, int offset, float[] output, int outputOffset, int samples) {
+        for (int i = 0; i < samples; i++) {
+            output[outputOffset + i] = input[offset + i];
+        }
+    }
+
+    @Override
+    public void convertToMono(short[] input, int offset, short[] output, int outputOffset, int monoSamples) {
+        // todo: better stereo -> mono conversation
+        for (int i = 0; i < monoSamples; i++) {
+            output[outputOffset + i] = (short) ((input[offset + i * 2] + input[offset + i * 2 + 1]) / 2);
+        }
+    }
+
+    @Override
+    public double sumOfSquares(short[] samples, int from, int to) {
+        double rms = 0D;
+
+        for (int i = from; i < to; i++) {
+            double sample = (double) samples[i] / Short.MAX_VALUE;
+            rms += sample * sample;
+        }
+
+        return rms;
+    }
+}
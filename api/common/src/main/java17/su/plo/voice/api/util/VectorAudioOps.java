@@ -0,0 +1,186 @@
+package su.plo.voice.api.util;
+
+import jdk.incubator.vector.*;
+
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * SIMD implementation of {@link AudioOps} using the incubating Vector API
+ * <br/>
+ * This class is compiled for Java 17, so it should be loaded only by name
+ * and only if jdk.incubator.vector module is added to the runtime
+ */
+public final class VectorAudioOps implements AudioOps {
+
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    // shorts converted to the float vector of the preferred shape
+    private static final VectorSpecies<Short> FLOAT_SHORTS = VectorSpecies.of(
+            short.class,
+            VectorShape.forBitSize(FLOATS.vectorBitSize() / 2)
+    );
+    // ints reinterpreted from the preferred short vector converted back to shorts
+    private static final VectorSpecies<Short> MONO_SHORTS = VectorSpecies.of(
+            short.class,
+            VectorShape.forBitSize(SHORTS.vectorBitSize() / 2)
+    );
+
+    private static final float SHORT_MAX = Short.MAX_VALUE;
+
+    /**
+     * Creates the vector ops and verifies them against the scalar implementation
+     *
+     * @throws IllegalStateException if vector ops are not supported on this platform
+     */
+    public static AudioOps create() {
+        if (ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN) {
+            throw new IllegalStateException("Vector ops are supported only on little-endian platforms");
+        }
+
+        VectorAudioOps ops = new VectorAudioOps();
+        verify(ops, new ScalarAudioOps());
+
+        return ops;
+    }
+
+    @Override
+    public void bytesToShorts(byte[] input, int offset, short[] output, int outputOffset, int samples) {
+        int bytes = samples * 2;
+        int bound = BYTES.loopBound(bytes);
+
+        int i = 0;
+        for (; i < bound; i += BYTES.length()) {
+            ByteVector.fromArray(BYTES, input, offset + i)
+                    .reinterpretAsShorts()
+                    .intoArray(output, outputOffset + i / 2);
+        }
+
+        for (; i < bytes; i += 2) {
+            output[outputOffset + i / 2] = AudioUtil.bytesToShort(input[offset + i], input[offset + i + 1]);
+        }
+    }
+
+    @Override
+    public void shortsToBytes(short[] input, int offset, byte[] output, int outputOffset, int samples) {
+        int bound = SHORTS.loopBound(samples);
+
+        int i = 0;
+        for (; i < bound; i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, input, offset + i)
+                    .reinterpretAsBytes()
+                    .intoArray(output, outputOffset + i * 2);
+        }
+
+        for (; i < samples; i++) {
+            short sample = input[offset + i];
+            output[outputOffset + i * 2] = (byte) (sample & 0xFF);
+            output[outputOffset + i * 2 + 1] = (byte) ((sample >> 8) & 0xFF);
+        }
+    }
+
+    @Override
+    public void shortsToFloats(short[] input, int offset, float[] output, int outputOffset, int samples) {
+        int bound = FLOAT_SHORTS.loopBound(samples);
+
+        int i = 0;
+        for (; i < bound; i += FLOAT_SHORTS.length()) {
+            ((FloatVector) ShortVector.fromArray(FLOAT_SHORTS, input, offset + i)
+                    .convertShape(VectorOperators.S2F, FLOATS, 0))
+                    .intoArray(output, outputOffset + i);
+        }
+
+        for (; i < samples; i++) {
+            output[outputOffset + i] = input[offset + i];
+        }
+    }
+
+    @Override
+    public void convertToMono(short[] input, int offset, short[] output, int outputOffset, int monoSamples) {
+        int stereoSamples = monoSamples * 2;
+        int bound = SHORTS.loopBound(stereoSamples);
+
+        int i = 0;
+        for (; i < bound; i += SHORTS.length()) {
+            // every int lane contains left sample in the low half and right sample in the high half
+            IntVector pairs = ShortVector.fromArray(SHORTS, input, offset + i).reinterpretAsInts();
+            IntVector left = pairs.lanewise(VectorOperators.LSHL, 16).lanewise(VectorOperators.ASHR, 16);
+            IntVector right = pairs.lanewise(VectorOperators.ASHR, 16);
+
+            ((ShortVector) left.add(right)
+                    .lanewise(VectorOperators.DIV, 2)
+                    .convertShape(VectorOperators.I2S, MONO_SHORTS, 0))
+                    .intoArray(output, outputOffset + i / 2);
+        }
+
+        for (; i < stereoSamples; i += 2) {
+            output[outputOffset + i / 2] = (short) ((input[offset + i] + input[offset + i + 1]) / 2);
+        }
+    }
+
+    @Override
+    public double sumOfSquares(short[] samples, int from, int to) {
+        int length = Math.max(0, to - from);
+        int bound = FLOAT_SHORTS.loopBound(length);
+
+        FloatVector sum = FloatVector.zero(FLOATS);
+
+        int i = 0;
+        for (; i < bound; i += FLOAT_SHORTS.length()) {
+            FloatVector sample = (FloatVector) ShortVector.fromArray(FLOAT_SHORTS, samples, from + i)
+                    .convertShape(VectorOperators.S2F, FLOATS, 0);
+            sample = sample.div(SHORT_MAX);
+
+            sum = sample.fma(sample, sum);
+        }
+
+        double rms = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            double sample = (double) samples[from + i] / Short.MAX_VALUE;
+            rms += sample * sample;
+        }
+
+        return rms;
+    }
+
+    private static void verify(AudioOps vector, AudioOps scalar) {
+        short[] samples = new short[999];
+        Random random = new Random(0L);
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) random.nextInt();
+        }
+
+        byte[] vectorBytes = new byte[samples.length * 2];
+        byte[] scalarBytes = new byte[samples.length * 2];
+        vector.shortsToBytes(samples, 0, vectorBytes, 0, samples.length);
+        scalar.shortsToBytes(samples, 0, scalarBytes, 0, samples.length);
+        check(Arrays.equals(vectorBytes, scalarBytes), "shortsToBytes");
+
+        short[] vectorShorts = new short[samples.length];
+        vector.bytesToShorts(scalarBytes, 0, vectorShorts, 0, samples.length);
+        check(Arrays.equals(vectorShorts, samples), "bytesToShorts");
+
+        float[] vectorFloats = new float[samples.length];
+        float[] scalarFloats = new float[samples.length];
+        vector.shortsToFloats(samples, 0, vectorFloats, 0, samples.length);
+        scalar.shortsToFloats(samples, 0, scalarFloats, 0, samples.length);
+        check(Arrays.equals(vectorFloats, scalarFloats), "shortsToFloats");
+
+        short[] vectorMono = new short[samples.length / 2];
+        short[] scalarMono = new short[samples.length / 2];
+        vector.convertToMono(samples, 0, vectorMono, 0, vectorMono.length);
+        scalar.convertToMono(samples, 0, scalarMono, 0, scalarMono.length);
+        check(Arrays.equals(vectorMono, scalarMono), "convertToMono");
+
+        double vectorRms = vector.sumOfSquares(samples, 0, samples.length);
+        double scalarRms = scalar.sumOfSquares(samples, 0, samples.length);
+        check(Math.abs(vectorRms - scalarRms) <= scalarRms * 1e-4, "sumOfSquares");
+    }
+
+    private static void check(boolean result, String operation) {
+        if (!result) throw new IllegalStateException("Vector " + operation + " result doesn't match the scalar one");
+    }
+}
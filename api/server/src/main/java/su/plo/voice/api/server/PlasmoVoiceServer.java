@@ -101,7 +101,9 @@ public interface PlasmoVoiceServer extends PlasmoBaseVoiceServer {
     /**
      * Gets a default encryption
      * <br/>
-     * AES/CBC/PKCS5Padding used by default
+     * Encrypts with the most preferred registered algorithm (AES/GCM/NoPadding by default)
+     * and decrypts frames encrypted with any registered algorithm,
+     * see {@link su.plo.voice.api.encryption.EncryptionManager#createSuite}
      * <br/>
      * Can be changed if server is behind the proxy,
      * so don't store reference to this in addons
@@ -158,6 +158,12 @@ tasks {
 
         relocate("su.plo.ustats", "su.plo.voice.ustats")
 
+        // keeps Vector API audio ops from api:common in META-INF/versions/17
+        // and FFM opus classes from common in META-INF/versions/22
+        manifest {
+            attributes("Multi-Release" to "true")
+        }
+
         dependencies {
             exclude(dependency("net.java.dev.jna:jna"))
             exclude(dependency("org.slf4j:slf4j-api"))
@@ -9,37 +9,62 @@ import com.mojang.authlib.properties.Property;
 import com.mojang.blaze3d.platform.NativeImage;
 import com.mojang.blaze3d.systems.RenderSystem;
 import su.plo.voice.universal.UMinecraft;
+import net.minecraft.client.multiplayer.ClientPacketListener;
 import net.minecraft.client.multiplayer.PlayerInfo;
 import net.minecraft.client.renderer.texture.DynamicTexture;
 import net.minecraft.client.resources.DefaultPlayerSkin;
 import net.minecraft.client.resources.SkinManager;
 import net.minecraft.resources.ResourceLocation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import su.plo.voice.proto.data.player.MinecraftGameProfile;
 
-import java.io.IOException;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import static su.plo.lib.mod.client.render.TextureUtilKt.registerBase64Texture;
 
+/**
+ * Non-blocking cache of the player skins
+ * <br/>
+ * {@link #getSkin(UUID, String)} returns the default skin until the skin is loaded.
+ * Textures information is fetched in the background, and requests of the same player are coalesced
+ */
 public final class ModPlayerSkins {
 
+    private static final Logger LOGGER = LogManager.getLogger(ModPlayerSkins.class);
+
     private static final Cache<String, ResourceLocation> skins = CacheBuilder
             .newBuilder()
-            .expireAfterAccess(15L, TimeUnit.SECONDS)
+            // prefetched skins can be shown long after they are loaded
+            .expireAfterAccess(5L, TimeUnit.MINUTES)
             .build();
 
-    public static synchronized void loadSkin(@NotNull UUID playerId,
-                                                           @NotNull String nick,
-                                                           @Nullable String fallback) {
-        PlayerInfo playerInfo = UMinecraft.getNetHandler().getPlayerInfo(playerId);
-        if (playerInfo != null) return;
-
-        ResourceLocation skinLocation = skins.getIfPresent(nick);
-        if (skinLocation != null) return;
+    private static final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+    private static final Executor EXECUTOR = Executors.newSingleThreadExecutor((runnable) -> {
+        Thread thread = new Thread(runnable, "Voice Skins Loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Loads the player skin in the background
+     * <br/>
+     * Can be called from any thread
+     *
+     * @param fallback base64 texture used until the skin is loaded
+     */
+    public static void loadSkin(@NotNull UUID playerId,
+                                @NotNull String nick,
+                                @Nullable String fallback) {
+        if (skins.getIfPresent(nick) != null) return;
 
         if (fallback != null) {
             ResourceLocation fallbackIdentifier = new ResourceLocation(
@@ -51,39 +76,16 @@ public final class ModPlayerSkins {
             skins.put(nick, fallbackIdentifier);
         }
 
-        GameProfile profile = new GameProfile(playerId, nick);
-
-        SkinManager skinManager = UMinecraft.getMinecraft().getSkinManager();
-
-        //#if MC>=12002
-        //$$ skinLocation = skinManager.getInsecureSkin(profile).texture();
-        //$$ skins.put(profile.getName(), skinLocation);
-        //#else
-        Map<MinecraftProfileTexture.Type, MinecraftProfileTexture> textures = skinManager
-                .getInsecureSkinInformation(profile);
-        if (textures.isEmpty()) {
-            skinManager.registerSkins(
-                    profile,
-                    (type, identifier, texture) -> {
-                        if (type.equals(MinecraftProfileTexture.Type.SKIN)) {
-                            skins.put(profile.getName(), identifier);
-                        }
-                    }, false
-            );
-        } else {
-            String hash = Hashing.sha1().hashUnencodedChars(textures.get(MinecraftProfileTexture.Type.SKIN).getHash()).toString();
-            ResourceLocation identifier = new ResourceLocation("skins/" + hash);
-            skins.put(profile.getName(), identifier);
-        }
-        //#endif
+        load(new GameProfile(playerId, nick));
     }
 
-    public static synchronized void loadSkin(@NotNull MinecraftGameProfile gameProfile) {
-        PlayerInfo playerInfo = UMinecraft.getNetHandler().getPlayerInfo(gameProfile.getId());
-        if (playerInfo != null) return;
-
-        ResourceLocation skinLocation = skins.getIfPresent(gameProfile.getName());
-        if (skinLocation != null) return;
+    /**
+     * Loads the player skin in the background
+     * <br/>
+     * Can be called from any thread
+     */
+    public static void loadSkin(@NotNull MinecraftGameProfile gameProfile) {
+        if (skins.getIfPresent(gameProfile.getName()) != null) return;
 
         GameProfile profile = new GameProfile(
                 gameProfile.getId(),
@@ -97,15 +99,10 @@ public final class ModPlayerSkins {
             ));
         });
 
-        //#if MC>=12002
-        //$$ skinLocation = UMinecraft.getMinecraft().getSkinManager().getInsecureSkin(profile).texture();
-        //#else
-        skinLocation = UMinecraft.getMinecraft().getSkinManager().getInsecureSkinLocation(profile);
-        //#endif
-        skins.put(gameProfile.getName(), skinLocation);
+        load(profile);
     }
 
-    public static synchronized @NotNull ResourceLocation getSkin(@NotNull UUID playerId, @NotNull String nick) {
+    public static @NotNull ResourceLocation getSkin(@NotNull UUID playerId, @NotNull String nick) {
         PlayerInfo playerInfo = UMinecraft.getNetHandler().getPlayerInfo(playerId);
         if (playerInfo != null) {
             //#if MC>=12002
@@ -129,6 +126,84 @@ public final class ModPlayerSkins {
         //#endif
     }
 
+    private static void load(@NotNull GameProfile profile) {
+        if (!pending.add(profile.getId())) return;
+
+        // tab list is accessed only on the main thread
+        UMinecraft.getMinecraft().execute(() -> {
+            // players from the tab list already have the skin
+            if (isInTabList(profile.getId())) {
+                pending.remove(profile.getId());
+                return;
+            }
+
+            EXECUTOR.execute(() -> {
+                GameProfile filledProfile = fetchTextures(profile);
+
+                UMinecraft.getMinecraft().execute(() -> {
+                    try {
+                        register(filledProfile);
+                    } finally {
+                        pending.remove(profile.getId());
+                    }
+                });
+            });
+        });
+    }
+
+    /**
+     * Fetches textures information, so it will be taken from the skin manager cache on the main thread
+     * <br/>
+     * Should be called only from the loader thread
+     */
+    private static @NotNull GameProfile fetchTextures(@NotNull GameProfile profile) {
+        //#if MC<12002
+        try {
+            // profiles without properties don't have textures, so they are requested from the session server here
+            if (profile.getProperties().isEmpty()) {
+                profile = UMinecraft.getMinecraft().getMinecraftSessionService().fillProfileProperties(profile, false);
+            }
+
+            UMinecraft.getMinecraft().getSkinManager().getInsecureSkinInformation(profile);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to load skin of {}", profile.getName(), e);
+        }
+        //#endif
+
+        return profile;
+    }
+
+    private static boolean isInTabList(@NotNull UUID playerId) {
+        ClientPacketListener connection = UMinecraft.getNetHandler();
+        return connection != null && connection.getPlayerInfo(playerId) != null;
+    }
+
+    private static void register(@NotNull GameProfile profile) {
+        // player could join the tab list while the skin was loading
+        if (isInTabList(profile.getId())) return;
+
+        SkinManager skinManager = UMinecraft.getMinecraft().getSkinManager();
+
+        //#if MC>=12002
+        //$$ skins.put(profile.getName(), skinManager.getInsecureSkin(profile).texture());
+        //#else
+        Map<MinecraftProfileTexture.Type, MinecraftProfileTexture> textures = skinManager
+                .getInsecureSkinInformation(profile);
+        if (textures.containsKey(MinecraftProfileTexture.Type.SKIN)) {
+            skins.put(profile.getName(), skinManager.getInsecureSkinLocation(profile));
+        } else {
+            skinManager.registerSkins(
+                    profile,
+                    (type, identifier, texture) -> {
+                        if (type.equals(MinecraftProfileTexture.Type.SKIN)) {
+                            skins.put(profile.getName(), identifier);
+                        }
+                    }, false
+            );
+        }
+        //#endif
+    }
+
     private ModPlayerSkins() {
     }
 }
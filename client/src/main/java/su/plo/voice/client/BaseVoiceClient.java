@@ -6,6 +6,7 @@ import com.google.inject.Module;
 import lombok.Getter;
 import lombok.Setter;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import su.plo.config.provider.ConfigurationProvider;
 import su.plo.config.provider.toml.TomlConfiguration;
 import su.plo.lib.api.chat.MinecraftTextClickEvent;
@@ -38,10 +39,13 @@ import su.plo.voice.api.client.event.socket.UdpClientConnectedEvent;
 import su.plo.voice.api.client.render.DistanceVisualizer;
 import su.plo.voice.api.client.socket.UdpClient;
 import su.plo.voice.api.event.EventSubscribe;
+import su.plo.voice.audio.codec.AudioDecoderPool;
+import su.plo.voice.client.audio.OcclusionService;
 import su.plo.voice.client.audio.capture.VoiceAudioCapture;
 import su.plo.voice.client.audio.capture.VoiceClientActivationManager;
 import su.plo.voice.client.audio.device.VoiceDeviceFactoryManager;
 import su.plo.voice.client.audio.device.VoiceDeviceManager;
+import su.plo.voice.client.audio.mixer.SoftwareMixer;
 import su.plo.voice.client.audio.line.VoiceClientSourceLineManager;
 import su.plo.voice.client.audio.source.VoiceClientSourceManager;
 import su.plo.voice.client.config.VoiceClientConfig;
@@ -57,6 +61,7 @@ import su.plo.voice.client.render.voice.HudIconRenderer;
 import su.plo.voice.client.render.voice.OverlayRenderer;
 import su.plo.voice.client.render.voice.SourceIconRenderer;
 import su.plo.voice.client.render.voice.VoiceDistanceVisualizer;
+import su.plo.voice.encryption.EncryptionBenchmark;
 import su.plo.voice.util.version.ModrinthLoader;
 import su.plo.voice.util.version.ModrinthVersion;
 import su.plo.voice.util.version.SemanticVersion;
@@ -65,16 +70,27 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 // todo: merge with ModVoiceClient
 public abstract class BaseVoiceClient extends BaseVoice implements PlasmoVoiceClient {
 
     protected static final ConfigurationProvider toml = ConfigurationProvider.getProvider(TomlConfiguration.class);
 
+    // how long audio devices and codecs are kept after disconnecting from the server
+    private static final long AUDIO_RETAIN_TIMEOUT_MS = 10_000L;
+
     @Getter
     private final DeviceFactoryManager deviceFactoryManager = new VoiceDeviceFactoryManager();
     @Getter
     private final UdpClientManager udpClientManager = new VoiceUdpClientManager();
+    @Getter
+    private final EncryptionBenchmark encryptionBenchmark = new EncryptionBenchmark();
+    @Getter
+    private final AudioDecoderPool decoderPool = new AudioDecoderPool(codecs, 32);
+    @Getter
+    private final OcclusionService occlusionService = new OcclusionService();
 
     @Setter
     private ServerInfo serverInfo;
@@ -91,6 +107,8 @@ public abstract class BaseVoiceClient extends BaseVoice implements PlasmoVoiceCl
     private ClientSourceManager sourceManager;
     @Getter
     private DistanceVisualizer distanceVisualizer;
+    @Getter
+    private SoftwareMixer softwareMixer;
 
     @Getter
     protected VoiceClientConfig config;
@@ -100,6 +118,10 @@ public abstract class BaseVoiceClient extends BaseVoice implements PlasmoVoiceCl
     protected VoiceSettingsScreen settingsScreen;
 
     private boolean updatesChecked;
+    private @Nullable ScheduledFuture<?> audioRelease;
+    // incremented when the audio is retained or the release is cancelled,
+    // scheduled release of the older generation does nothing
+    private long audioGeneration;
 
     protected BaseVoiceClient(@NotNull ModrinthLoader loader) {
         super(loader);
@@ -185,6 +207,9 @@ public abstract class BaseVoiceClient extends BaseVoice implements PlasmoVoiceCl
 
         loadConfig();
 
+        // measure encryption algorithms to pick the fastest one when connecting to the server
+        backgroundExecutor.execute(() -> encryptionBenchmark.run(encryption));
+
         if (!config.getDisableCrowdin().value()) {
             PlasmoCrowdinMod.INSTANCE.downloadTranslations(
                     new File(getConfigFolder(), PlasmoCrowdinMod.INSTANCE.getFolderName())
@@ -194,12 +219,14 @@ public abstract class BaseVoiceClient extends BaseVoice implements PlasmoVoiceCl
         this.distanceVisualizer = new VoiceDistanceVisualizer(this, config);
 
         this.deviceManager = new VoiceDeviceManager(this, config);
+        this.softwareMixer = new SoftwareMixer(this, config);
         this.sourceLineManager = new VoiceClientSourceLineManager(config);
         this.activationManager = new VoiceClientActivationManager(this, config);
         this.sourceManager = new VoiceClientSourceManager(this, config);
         this.audioCapture = new VoiceAudioCapture(this, config);
 
         eventBus.register(this, sourceManager);
+        eventBus.register(this, softwareMixer);
 
         // hotkey actions
         new HotkeyActions(this, getKeyBindings(), config).register();
@@ -222,6 +249,9 @@ public abstract class BaseVoiceClient extends BaseVoice implements PlasmoVoiceCl
 
         eventBus.unregister(this);
 
+        cancelAudioRelease();
+        releaseAudio();
+
         super.onShutdown();
 
         getEventBus().call(new VoiceClientShutdownEvent(this));
@@ -231,11 +261,65 @@ public abstract class BaseVoiceClient extends BaseVoice implements PlasmoVoiceCl
         config.save(true);
         udpClientManager.removeClient(UdpClientClosedEvent.Reason.DISCONNECT);
         getServerConnection().ifPresent(ServerConnection::close);
+        occlusionService.clear();
+        softwareMixer.clear();
 
         DeveloperCapeManager.INSTANCE.clearLoadedCapes();
         this.updatesChecked = false;
     }
 
+    /**
+     * Keeps the audio devices, the audio capture and the codecs after the server connection is closed
+     * <br/>
+     * If the client connects to another server in {@link #AUDIO_RETAIN_TIMEOUT_MS}
+     * (e.g. switching servers behind the proxy), they are reused if the audio format is the same,
+     * otherwise they are released
+     */
+    public synchronized void retainAudio() {
+        cancelAudioRelease();
+
+        long generation = ++audioGeneration;
+        this.audioRelease = backgroundExecutor.schedule(
+                () -> releaseAudio(generation),
+                AUDIO_RETAIN_TIMEOUT_MS,
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Cancels the scheduled release of the retained audio devices and codecs
+     * <br/>
+     * Should be called when the client starts connecting to the server.
+     * If the release is already running, waits until it's finished
+     */
+    public synchronized void cancelAudioRelease() {
+        audioGeneration++;
+        if (audioRelease == null) return;
+
+        audioRelease.cancel(false);
+        this.audioRelease = null;
+    }
+
+    private synchronized void releaseAudio(long generation) {
+        // release was cancelled while it was waiting for the lock
+        if (generation != audioGeneration) return;
+
+        releaseAudio();
+    }
+
+    private synchronized void releaseAudio() {
+        this.audioRelease = null;
+
+        if (audioCapture != null) audioCapture.stop();
+        if (deviceManager != null) {
+            deviceManager.clear(null);
+            deviceManager.stopJob();
+        }
+        decoderPool.clear();
+
+        DEBUG_LOGGER.log("Retained audio devices and codecs released");
+    }
+
     @Override
     public Module createInjectModule() {
         return new AbstractModule() {
@@ -24,6 +24,7 @@ import su.plo.voice.util.version.ModrinthLoader;
 //#if FABRIC
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.fabricmc.fabric.api.client.keybinding.v1.KeyBindingHelper;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
@@ -42,6 +43,7 @@ import net.fabricmc.loader.api.ModContainer;
 //$$ import net.minecraftforge.fml.ModList;
 //$$ import net.minecraftforge.network.event.EventNetworkChannel;
 //$$ import net.minecraftforge.client.event.RegisterKeyMappingsEvent;
+//$$ import net.minecraftforge.event.TickEvent;
 //#endif
 
 import java.io.File;
@@ -133,7 +135,15 @@ public final class ModVoiceClient extends BaseVoiceClient
         super.onInitialize();
 
         ClientLifecycleEvents.CLIENT_STOPPING.register((minecraft) -> onShutdown());
+        ClientTickEvents.END_CLIENT_TICK.register((minecraft) -> {
+            getOcclusionService().tick(
+                    !config.getVoice().getSoundOcclusion().isDisabled() && config.getVoice().getSoundOcclusion().value(),
+                    config.getVoice().getMultiRayOcclusion().value()
+            );
+            getSoftwareMixer().updateListener();
+        });
         HudRenderCallback.EVENT.register(hudRenderer::render);
+        WorldRenderEvents.BEFORE_ENTITIES.register((context) -> levelRenderer.renderStart());
         WorldRenderEvents.END.register(
                 (context) -> levelRenderer.render(context.world(), context.matrixStack(), context.camera(), context.tickDelta())
         );
@@ -170,6 +180,12 @@ public final class ModVoiceClient extends BaseVoiceClient
     //$$
     //$$ @SubscribeEvent
     //$$ public void onWorldRender(RenderLevelStageEvent event) {
+    //$$     // entities are rendered right after the cutout blocks
+    //$$     if (event.getStage() == RenderLevelStageEvent.Stage.AFTER_CUTOUT_BLOCKS) {
+    //$$         levelRenderer.renderStart();
+    //$$         return;
+    //$$     }
+    //$$
     //$$     if (event.getStage() != RenderLevelStageEvent.Stage.AFTER_PARTICLES ||
     //$$             UMinecraft.getWorld() == null
     //$$     ) return;
@@ -177,6 +193,16 @@ public final class ModVoiceClient extends BaseVoiceClient
     //$$ }
     //$$
     //$$ @SubscribeEvent
+    //$$ public void onClientTick(TickEvent.ClientTickEvent event) {
+    //$$     if (event.phase != TickEvent.Phase.END) return;
+    //$$     getOcclusionService().tick(
+    //$$             !config.getVoice().getSoundOcclusion().isDisabled() && config.getVoice().getSoundOcclusion().value(),
+    //$$             config.getVoice().getMultiRayOcclusion().value()
+    //$$     );
+    //$$     getSoftwareMixer().updateListener();
+    //$$ }
+    //$$
+    //$$ @SubscribeEvent
     //$$ public void onDisconnect(ClientPlayerNetworkEvent.LoggingOut event) {
     //$$     onServerDisconnect();
     //$$ }
@@ -0,0 +1,422 @@
+package su.plo.voice.client.audio;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import net.minecraft.client.Minecraft;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Calculates sound occlusion of all sources off the render and audio threads
+ * <br/>
+ * On the client tick, sections crossed by the rays of the queried sources are captured into the shared section map,
+ * then occlusion of all queried sources is calculated in parallel in the common fork-join pool.
+ * Audio threads only read the last calculated value
+ * <br/>
+ * Only sections crossed by the rays are captured, and not more than {@link #CAPTURE_BUDGET} per tick.
+ * Captured section is replaced in the map as a whole, so the map is shared with the pass without copying
+ * <br/>
+ * Source is recalculated only if the source block, the listener block or the sections crossed by its rays changed
+ * <br/>
+ * In the multi-ray mode, additional rays are cast around the direct ray and the results are blended.
+ * Additional rays are limited by {@link #RAY_BUDGET} per pass and are given to the nearest sources first,
+ * so every source still gets the direct ray every pass and the rest of the fan is refreshed over the next passes
+ */
+public final class OcclusionService {
+
+    // sections captured per tick, dirty sections are captured first
+    private static final int CAPTURE_BUDGET = 16;
+    // sections not crossed by any ray for this time are evicted
+    private static final int SECTION_IDLE_TICKS = 100;
+    private static final int PASS_INTERVAL_TICKS = 2;
+    private static final long ENTRY_IDLE_MS = 1_000L;
+
+    // additional rays per pass shared by all sources
+    private static final int RAY_BUDGET = 64;
+    // additional rays per source per pass
+    private static final int RAYS_PER_ENTRY = 4;
+    private static final double RAY_SPREAD = 0.6D;
+    // offsets of the additional rays in the plane perpendicular to the direct ray
+    private static final double[][] RAY_OFFSETS = {
+            {1D, 0D}, {-1D, 0D}, {0D, 1D}, {0D, -1D},
+            {0.7D, 0.7D}, {-0.7D, -0.7D}, {0.7D, -0.7D}, {-0.7D, 0.7D}
+    };
+    // rays are walked with 1 block step, so every block of the ray is within this distance of some step
+    private static final double RAY_SECTIONS_MARGIN = 1D;
+
+    private final Set<Entry> entries = ConcurrentHashMap.newKeySet();
+
+    // section maps are accessed only from the main thread, except the blocks read by the pass
+    private Map<Long, long[]> sections = new ConcurrentHashMap<>();
+    private final Map<Long, SectionState> sectionStates = Maps.newHashMap();
+    private final Set<Long> dirtySections = Sets.newLinkedHashSet();
+    private final Deque<Long> missingSections = new ArrayDeque<>();
+    private long sectionVersion;
+
+    private OcclusionSnapshot snapshot = OcclusionSnapshot.EMPTY;
+    private @Nullable Level level;
+    private int ticks;
+    private @Nullable Future<?> pass;
+
+    public @NotNull Entry createEntry() {
+        Entry entry = new Entry();
+        entries.add(entry);
+        return entry;
+    }
+
+    /**
+     * Marks the section of the block as dirty, so it will be captured again
+     * <br/>
+     * Should be called only from the main thread
+     */
+    public void onBlockChanged(@NotNull BlockPos pos) {
+        long sectionPos = SectionPos.asLong(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4);
+        if (sections.containsKey(sectionPos)) dirtySections.add(sectionPos);
+    }
+
+    /**
+     * Captures sections and schedules the occlusion pass
+     * <br/>
+     * Should be called on the client tick
+     *
+     * @param enabled whether sound occlusion is enabled
+     * @param multiRay whether additional rays should be cast around the direct ray
+     */
+    public void tick(boolean enabled, boolean multiRay) {
+        Minecraft minecraft = Minecraft.getInstance();
+        Player player = minecraft.player;
+        Level level = minecraft.level;
+
+        if (!enabled || player == null || level == null) {
+            if (this.level != null) clear();
+            return;
+        }
+
+        if (this.level != level) {
+            clear();
+            this.level = level;
+            this.snapshot = new OcclusionSnapshot(level, sections);
+        }
+
+        ticks++;
+        if (ticks % PASS_INTERVAL_TICKS != 0 || (pass != null && !pass.isDone())) {
+            captureSections(level);
+            return;
+        }
+
+        Vec3 listener = player.getEyePosition();
+        long now = System.currentTimeMillis();
+
+        // entries are updated only between the passes
+        List<Entry> queried = Lists.newArrayList();
+        for (Entry entry : entries) {
+            Vec3 position = entry.position;
+            if (position == null || now - entry.lastQuery >= ENTRY_IDLE_MS) continue;
+
+            entry.passPosition = position;
+            queried.add(entry);
+        }
+        queried.sort(Comparator.comparingDouble((entry) -> entry.passPosition.distanceToSqr(listener)));
+
+        updateRaySections(queried, listener, multiRay);
+        captureSections(level);
+        if (queried.isEmpty()) return;
+
+        for (Entry entry : queried) {
+            entry.updateSections();
+        }
+
+        if (multiRay) {
+            distributeRays(queried);
+        } else {
+            queried.forEach((entry) -> entry.rays = 0);
+        }
+
+        OcclusionSnapshot snapshot = this.snapshot;
+        this.pass = ForkJoinPool.commonPool().submit(() ->
+                queried.parallelStream().forEach((entry) -> entry.calculate(snapshot, listener, multiRay))
+        );
+    }
+
+    private void distributeRays(@NotNull List<Entry> queried) {
+        int budget = RAY_BUDGET;
+        for (Entry entry : queried) {
+            int rays = Math.min(RAYS_PER_ENTRY, budget);
+            entry.rays = rays;
+            budget -= rays;
+        }
+    }
+
+    public void clear() {
+        // running pass keeps reading the old map
+        this.sections = new ConcurrentHashMap<>();
+        sectionStates.clear();
+        dirtySections.clear();
+        missingSections.clear();
+        this.snapshot = OcclusionSnapshot.EMPTY;
+        this.level = null;
+    }
+
+    /**
+     * Collects sections crossed by the rays of the queried sources, nearest sources first,
+     * and evicts sections which are not crossed by any ray for {@link #SECTION_IDLE_TICKS}
+     */
+    private void updateRaySections(@NotNull List<Entry> queried, @NotNull Vec3 listener, boolean multiRay) {
+        missingSections.clear();
+
+        double margin = RAY_SECTIONS_MARGIN + (multiRay ? RAY_SPREAD : 0D);
+        Set<Long> missing = Sets.newHashSet();
+        Set<Long> raySections = Sets.newLinkedHashSet();
+
+        for (Entry entry : queried) {
+            raySections.clear();
+            collectRaySections(entry.passPosition, listener, margin, raySections);
+
+            long[] entrySections = new long[raySections.size()];
+            int i = 0;
+            for (long sectionPos : raySections) {
+                entrySections[i++] = sectionPos;
+
+                SectionState state = sectionStates.get(sectionPos);
+                if (state != null) {
+                    state.lastRayTick = ticks;
+                } else if (missing.add(sectionPos)) {
+                    missingSections.add(sectionPos);
+                }
+            }
+            entry.sections = entrySections;
+        }
+
+        Iterator<Map.Entry<Long, SectionState>> iterator = sectionStates.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, SectionState> state = iterator.next();
+            if (ticks - state.getValue().lastRayTick <= SECTION_IDLE_TICKS) continue;
+
+            iterator.remove();
+            sections.remove(state.getKey());
+            dirtySections.remove(state.getKey());
+        }
+    }
+
+    private static void collectRaySections(@NotNull Vec3 from, @NotNull Vec3 to, double margin, @NotNull Set<Long> raySections) {
+        double dx = to.x - from.x;
+        double dy = to.y - from.y;
+        double dz = to.z - from.z;
+        if (Double.isNaN(dx) || Double.isNaN(dy) || Double.isNaN(dz)) return;
+
+        int steps = Math.max(1, (int) Math.ceil(Math.sqrt(dx * dx + dy * dy + dz * dz)));
+        for (int step = 0; step <= steps; step++) {
+            double t = (double) step / steps;
+            double x = from.x + dx * t;
+            double y = from.y + dy * t;
+            double z = from.z + dz * t;
+
+            int minX = (int) Math.floor(x - margin) >> 4;
+            int minY = (int) Math.floor(y - margin) >> 4;
+            int minZ = (int) Math.floor(z - margin) >> 4;
+            int maxX = (int) Math.floor(x + margin) >> 4;
+            int maxY = (int) Math.floor(y + margin) >> 4;
+            int maxZ = (int) Math.floor(z + margin) >> 4;
+
+            for (int sectionX = minX; sectionX <= maxX; sectionX++) {
+                for (int sectionY = minY; sectionY <= maxY; sectionY++) {
+                    for (int sectionZ = minZ; sectionZ <= maxZ; sectionZ++) {
+                        raySections.add(SectionPos.asLong(sectionX, sectionY, sectionZ));
+                    }
+                }
+            }
+        }
+    }
+
+    private void captureSections(@NotNull Level level) {
+        int budget = CAPTURE_BUDGET;
+
+        Iterator<Long> dirtyIterator = dirtySections.iterator();
+        while (dirtyIterator.hasNext() && budget > 0) {
+            long sectionPos = dirtyIterator.next();
+            dirtyIterator.remove();
+
+            if (captureSection(level, sectionPos)) budget--;
+        }
+
+        while (!missingSections.isEmpty() && budget > 0) {
+            long sectionPos = missingSections.poll();
+            if (sections.containsKey(sectionPos)) continue;
+
+            // section will be captured on the next pass once the chunk is loaded
+            if (captureSection(level, sectionPos)) budget--;
+        }
+    }
+
+    private boolean captureSection(@NotNull Level level, long sectionPos) {
+        int sectionX = SectionPos.x(sectionPos);
+        int sectionY = SectionPos.y(sectionPos);
+        int sectionZ = SectionPos.z(sectionPos);
+        if (!level.getChunkSource().hasChunk(sectionX, sectionZ)) return false;
+
+        sections.put(sectionPos, OcclusionSnapshot.captureSection(level, sectionX, sectionY, sectionZ));
+
+        SectionState state = sectionStates.computeIfAbsent(sectionPos, (pos) -> new SectionState());
+        state.version = ++sectionVersion;
+        state.lastRayTick = ticks;
+        return true;
+    }
+
+    private static final class SectionState {
+
+        private long version;
+        private int lastRayTick;
+    }
+
+    /**
+     * Occlusion of the single source
+     */
+    public final class Entry {
+
+        private volatile @Nullable Vec3 position;
+        private volatile long lastQuery;
+        private volatile double occlusion = -1D;
+
+        // written on the main thread before the pass is submitted
+        private Vec3 passPosition;
+        private long[] sections;
+        private boolean captured;
+        private long sectionsVersion;
+        private int rays;
+
+        // accessed only by the pass
+        private long soundBlock;
+        private long listenerBlock;
+        private long calculatedVersion = -1L;
+        private boolean calculatedMultiRay;
+        private double directOcclusion;
+        private final double[] rayOcclusion = new double[RAY_OFFSETS.length];
+        private int calculatedRays;
+        private int refreshedRays;
+        private int nextRay;
+
+        /**
+         * Updates the source position used by the next pass
+         *
+         * @return the last calculated occlusion or -1 if it's not calculated yet
+         */
+        public double query(@NotNull Vec3 position) {
+            this.position = position;
+            this.lastQuery = System.currentTimeMillis();
+
+            return occlusion;
+        }
+
+        public void close() {
+            entries.remove(this);
+        }
+
+        private void updateSections() {
+            long version = 0L;
+            for (long sectionPos : sections) {
+                SectionState state = sectionStates.get(sectionPos);
+                if (state == null) {
+                    this.captured = false;
+                    return;
+                }
+
+                version = Math.max(version, state.version);
+            }
+
+            this.captured = true;
+            this.sectionsVersion = version;
+        }
+
+        private void calculate(@NotNull OcclusionSnapshot snapshot, @NotNull Vec3 listener, boolean multiRay) {
+            // sections crossed by the rays are not captured yet, keep the last value instead of treating them as air
+            if (!captured) return;
+
+            Vec3 position = passPosition;
+            long soundBlock = BlockPos.asLong(
+                    (int) Math.floor(position.x),
+                    (int) Math.floor(position.y),
+                    (int) Math.floor(position.z)
+            );
+            long listenerBlock = BlockPos.asLong(
+                    (int) Math.floor(listener.x),
+                    (int) Math.floor(listener.y),
+                    (int) Math.floor(listener.z)
+            );
+
+            boolean changed = soundBlock != this.soundBlock
+                    || listenerBlock != this.listenerBlock
+                    || sectionsVersion != calculatedVersion
+                    || multiRay != calculatedMultiRay;
+            if (!changed && (!multiRay || refreshedRays >= RAY_OFFSETS.length)) return;
+
+            if (changed) {
+                this.soundBlock = soundBlock;
+                this.listenerBlock = listenerBlock;
+                this.calculatedVersion = sectionsVersion;
+                this.calculatedMultiRay = multiRay;
+                this.refreshedRays = 0;
+                this.directOcclusion = SoundOcclusion.getOccludedPercent(snapshot, position, listener);
+            }
+
+            if (!multiRay) {
+                this.calculatedRays = 0;
+                this.nextRay = 0;
+                this.occlusion = directOcclusion;
+                return;
+            }
+
+            if (rays > 0) calculateRays(snapshot, position, listener);
+
+            double sum = directOcclusion;
+            for (int i = 0; i < calculatedRays; i++) {
+                sum += rayOcclusion[i];
+            }
+
+            this.occlusion = sum / (calculatedRays + 1);
+        }
+
+        private void calculateRays(@NotNull OcclusionSnapshot snapshot, @NotNull Vec3 position, @NotNull Vec3 listener) {
+            Vec3 direction = listener.subtract(position);
+            if (direction.lengthSqr() < 1.0E-4D) return;
+            direction = direction.normalize();
+
+            // basis of the plane perpendicular to the direct ray
+            Vec3 right = direction.cross(Math.abs(direction.y) > 0.99D ? new Vec3(1D, 0D, 0D) : new Vec3(0D, 1D, 0D))
+                    .normalize();
+            Vec3 up = right.cross(direction);
+
+            for (int i = 0; i < rays; i++) {
+                int ray = nextRay;
+                this.nextRay = (nextRay + 1) % RAY_OFFSETS.length;
+
+                Vec3 offset = right.scale(RAY_OFFSETS[ray][0] * RAY_SPREAD)
+                        .add(up.scale(RAY_OFFSETS[ray][1] * RAY_SPREAD));
+
+                rayOcclusion[ray] = SoundOcclusion.getOccludedPercent(
+                        snapshot,
+                        position.add(offset),
+                        listener.add(offset)
+                );
+                this.calculatedRays = Math.max(calculatedRays, ray + 1);
+                this.refreshedRays++;
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package su.plo.voice.client.audio;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.phys.shapes.Shapes;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Blocks occlusion of the sections captured by {@link OcclusionService}
+ * <br/>
+ * Sections map is shared with the service, captured section is never modified and is replaced as a whole,
+ * so readers see every section either before or after the capture
+ * <br/>
+ * Every block is stored as 2 bits, see {@link #NONE}, {@link #NON_SOLID} and {@link #SOLID}.
+ * Blocks of the sections which are not captured are treated as {@link #NONE}
+ */
+public final class OcclusionSnapshot {
+
+    public static final int NONE = 0;
+    public static final int NON_SOLID = 1;
+    public static final int SOLID = 2;
+
+    public static final OcclusionSnapshot EMPTY = new OcclusionSnapshot(null, Collections.emptyMap());
+
+    // 4096 blocks * 2 bits
+    private static final int SECTION_LONGS = 128;
+    static final long[] EMPTY_SECTION = new long[SECTION_LONGS];
+
+    private final @Nullable Level level;
+    private final Map<Long, long[]> sections;
+
+    OcclusionSnapshot(@Nullable Level level, @NotNull Map<Long, long[]> sections) {
+        this.level = level;
+        this.sections = sections;
+    }
+
+    public @Nullable Level getLevel() {
+        return level;
+    }
+
+    /**
+     * @return the occlusion type of the block
+     */
+    public int getBlock(int x, int y, int z) {
+        long[] section = sections.get(SectionPos.asLong(x >> 4, y >> 4, z >> 4));
+        if (section == null) return NONE;
+
+        int bit = blockIndex(x, y, z) << 1;
+        return (int) ((section[bit >>> 6] >>> (bit & 63)) & 0x3L);
+    }
+
+    /**
+     * Captures blocks of the section
+     * <br/>
+     * Should be called only from the main thread
+     */
+    static long[] captureSection(@NotNull Level level, int sectionX, int sectionY, int sectionZ) {
+        long[] section = null;
+
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    pos.set((sectionX << 4) + x, (sectionY << 4) + y, (sectionZ << 4) + z);
+
+                    int block = getOcclusionType(level, pos);
+                    if (block == NONE) continue;
+
+                    if (section == null) section = new long[SECTION_LONGS];
+
+                    int bit = blockIndex(x, y, z) << 1;
+                    section[bit >>> 6] |= (long) block << (bit & 63);
+                }
+            }
+        }
+
+        return section == null ? EMPTY_SECTION : section;
+    }
+
+    private static int getOcclusionType(@NotNull Level level, @NotNull BlockPos pos) {
+        BlockState state = level.getBlockState(pos);
+        if (state.isAir()) return NONE;
+
+        if (state.getShape(level, pos).isEmpty()
+                || state.getCollisionShape(level, pos) == Shapes.empty()) return NONE;
+
+        //#if MC>=12000
+        //$$ boolean isSolid = state.isSolidRender(level, pos);
+        //#else
+        boolean isSolid = state.getMaterial().isSolid();
+        //#endif
+
+        return isSolid ? SOLID : NON_SOLID;
+    }
+
+    private static int blockIndex(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+}
@@ -1,98 +1,91 @@
 package su.plo.voice.client.audio;
 
-import net.minecraft.core.BlockPos;
-import net.minecraft.world.level.Level;
-import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.phys.BlockHitResult;
 import net.minecraft.world.phys.Vec3;
-import net.minecraft.world.phys.shapes.Shapes;
-import net.minecraft.world.phys.shapes.VoxelShape;
 
 public final class SoundOcclusion {
 
     private static final double OCCLUSION_MULTIPLIER = 0.5D;
     private static final double OCCLUSION_MAX = 0.98D;
 
-    public static double getOccludedPercent(Level world, Vec3 sound, Vec3 listener) {
+    public static double getOccludedPercent(OcclusionSnapshot snapshot, Vec3 sound, Vec3 listener) {
         double occludedPercent = 0D;
-        sound = sound.add(0.01D, 0.01D, 0.01D);
 
-        if (Double.isNaN(sound.x) || Double.isNaN(sound.y) || Double.isNaN(sound.z)) return occludedPercent;
+        double soundX = sound.x + 0.01D;
+        double soundY = sound.y + 0.01D;
+        double soundZ = sound.z + 0.01D;
+
+        if (Double.isNaN(soundX) || Double.isNaN(soundY) || Double.isNaN(soundZ)) return occludedPercent;
         if (Double.isNaN(listener.x) || Double.isNaN(listener.y) || Double.isNaN(listener.z)) return occludedPercent;
 
-        BlockPos listenerPos = new BlockPos((int) Math.floor(listener.x), (int) Math.floor(listener.y), (int) Math.floor(listener.z));
-        BlockPos soundPos = new BlockPos((int) Math.floor(sound.x), (int) Math.floor(sound.y), (int) Math.floor(sound.z));
+        int listenerX = (int) Math.floor(listener.x);
+        int listenerY = (int) Math.floor(listener.y);
+        int listenerZ = (int) Math.floor(listener.z);
+
+        int soundBlockX = (int) Math.floor(soundX);
+        int soundBlockY = (int) Math.floor(soundY);
+        int soundBlockZ = (int) Math.floor(soundZ);
+
         int i = 0;
 
         while (i++ < 200) {
-            Vec3 prevSound = sound;
-            BlockPos prevSoundPos = soundPos;
+            int prevSoundBlockX = soundBlockX;
+            int prevSoundBlockY = soundBlockY;
+            int prevSoundBlockZ = soundBlockZ;
 
-            if (Double.isNaN(sound.x) || Double.isNaN(sound.y) || Double.isNaN(sound.z)) {
+            if (Double.isNaN(soundX) || Double.isNaN(soundY) || Double.isNaN(soundZ)) {
                 return occludedPercent;
             }
 
-            if (soundPos.equals(listenerPos)) {
+            if (soundBlockX == listenerX && soundBlockY == listenerY && soundBlockZ == listenerZ) {
                 return occludedPercent;
             }
 
-            boolean shouldChangeX = listenerPos.getX() != soundPos.getX();
-            boolean shouldChangeY = listenerPos.getY() != soundPos.getY();
-            boolean shouldChangeZ = listenerPos.getZ() != soundPos.getZ();
+            boolean shouldChangeX = listenerX != soundBlockX;
+            boolean shouldChangeY = listenerY != soundBlockY;
+            boolean shouldChangeZ = listenerZ != soundBlockZ;
 
-            int nextX = soundPos.getX() + (listenerPos.getX() > soundPos.getX() ? 1 : 0);
-            int nextY = soundPos.getY() + (listenerPos.getY() > soundPos.getY() ? 1 : 0);
-            int nextZ = soundPos.getZ() + (listenerPos.getZ() > soundPos.getZ() ? 1 : 0);
+            int nextX = soundBlockX + (listenerX > soundBlockX ? 1 : 0);
+            int nextY = soundBlockY + (listenerY > soundBlockY ? 1 : 0);
+            int nextZ = soundBlockZ + (listenerZ > soundBlockZ ? 1 : 0);
 
-            double xDifference = listener.x - sound.x;
-            double yDifference = listener.y - sound.y;
-            double zDifference = listener.z - sound.z;
+            double xDifference = listener.x - soundX;
+            double yDifference = listener.y - soundY;
+            double zDifference = listener.z - soundZ;
 
-            double xPercentChange = shouldChangeX ? ((double) nextX - sound.x) / xDifference : Double.POSITIVE_INFINITY;
-            double yPercentChange = shouldChangeY ? ((double) nextY - sound.y) / yDifference : Double.POSITIVE_INFINITY;
-            double zPercentChange = shouldChangeZ ? ((double) nextZ - sound.z) / zDifference : Double.POSITIVE_INFINITY;
+            double xPercentChange = shouldChangeX ? ((double) nextX - soundX) / xDifference : Double.POSITIVE_INFINITY;
+            double yPercentChange = shouldChangeY ? ((double) nextY - soundY) / yDifference : Double.POSITIVE_INFINITY;
+            double zPercentChange = shouldChangeZ ? ((double) nextZ - soundZ) / zDifference : Double.POSITIVE_INFINITY;
 
-            BlockPos soundPosOffset = null;
+            int offsetX = 0;
+            int offsetY = 0;
+            int offsetZ = 0;
             if (xPercentChange < yPercentChange && xPercentChange < zPercentChange) {
-                sound = new Vec3(nextX, sound.y + yDifference * xPercentChange, sound.z + zDifference * xPercentChange);
-                if (listenerPos.getX() < soundPos.getX()) {
-                    soundPosOffset = new BlockPos(-1, 0, 0);
-                }
+                soundX = nextX;
+                soundY += yDifference * xPercentChange;
+                soundZ += zDifference * xPercentChange;
+                if (listenerX < soundBlockX) offsetX = -1;
             } else if (yPercentChange < zPercentChange) {
-                sound = new Vec3(sound.x + xDifference * yPercentChange, nextY, sound.z + zDifference * yPercentChange);
-                if (listenerPos.getY() < soundPos.getY()) {
-                    soundPosOffset = new BlockPos(0, -1, 0);
-                }
+                soundX += xDifference * yPercentChange;
+                soundY = nextY;
+                soundZ += zDifference * yPercentChange;
+                if (listenerY < soundBlockY) offsetY = -1;
             } else {
-                sound = new Vec3(sound.x + xDifference * zPercentChange, sound.y + yDifference * zPercentChange, nextZ);
-                if (listenerPos.getZ() < soundPos.getZ()) {
-                    soundPosOffset = new BlockPos(0, 0, -1);
-                }
+                soundX += xDifference * zPercentChange;
+                soundY += yDifference * zPercentChange;
+                soundZ = nextZ;
+                if (listenerZ < soundBlockZ) offsetZ = -1;
             }
 
-            soundPos = new BlockPos((int) Math.floor(sound.x), (int) Math.floor(sound.y), (int) Math.floor(sound.z));
-            if (soundPosOffset != null) {
-                soundPos = soundPos.offset(soundPosOffset);
-            }
+            soundBlockX = (int) Math.floor(soundX) + offsetX;
+            soundBlockY = (int) Math.floor(soundY) + offsetY;
+            soundBlockZ = (int) Math.floor(soundZ) + offsetZ;
 
             if (i <= 1) continue;
 
-            BlockState state = world.getBlockState(prevSoundPos);
-            //#if MC>=12000
-            //$$ boolean isSolid = state.isSolidRender(world, prevSoundPos);
-            //#else
-            boolean isSolid = state.getMaterial().isSolid();
-            //#endif
-            VoxelShape collisionShape = state.getCollisionShape(world, prevSoundPos);
-
-            if (state.isAir()
-                    || state.getShape(world, prevSoundPos).isEmpty()
-                    || collisionShape == Shapes.empty()) continue;
-
-            BlockHitResult rayTrace = collisionShape.clip(prevSound, listener, prevSoundPos);
-            if (rayTrace == null) continue;
+            int block = snapshot.getBlock(prevSoundBlockX, prevSoundBlockY, prevSoundBlockZ);
+            if (block == OcclusionSnapshot.NONE) continue;
 
-            double newOcclusion = isSolid ? OCCLUSION_MULTIPLIER : OCCLUSION_MULTIPLIER / 2.0D;
+            double newOcclusion = block == OcclusionSnapshot.SOLID ? OCCLUSION_MULTIPLIER : OCCLUSION_MULTIPLIER / 2.0D;
 
             if (occludedPercent > 0) {
                 occludedPercent += newOcclusion / 4;
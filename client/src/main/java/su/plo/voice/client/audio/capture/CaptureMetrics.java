@@ -0,0 +1,145 @@
+package su.plo.voice.client.audio.capture;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timings of the capture thread
+ * <br/>
+ * Metrics are written only by the capture thread and can be read from any thread
+ */
+public final class CaptureMetrics {
+
+    @Getter
+    private final Histogram frameInterval = new Histogram();
+    @Getter
+    private final Histogram encodeTime = new Histogram();
+    @Getter
+    private final Histogram encryptTime = new Histogram();
+    @Getter
+    private final Histogram sendTime = new Histogram();
+
+    private final AtomicLong capturedFrames = new AtomicLong();
+    private final AtomicLong sentPackets = new AtomicLong();
+
+    private long lastCaptureTime;
+
+    /**
+     * Records the captured frame
+     *
+     * @param captureTime time in {@link System#nanoTime()} when the frame was captured
+     */
+    public void frameCaptured(long captureTime) {
+        capturedFrames.incrementAndGet();
+
+        if (lastCaptureTime != 0L) {
+            frameInterval.record(captureTime - lastCaptureTime);
+        }
+        this.lastCaptureTime = captureTime;
+    }
+
+    public void packetSent(long sendTimeNanos) {
+        sentPackets.incrementAndGet();
+        sendTime.record(sendTimeNanos);
+    }
+
+    public long getCapturedFrames() {
+        return capturedFrames.get();
+    }
+
+    public long getSentPackets() {
+        return sentPackets.get();
+    }
+
+    public void reset() {
+        frameInterval.reset();
+        encodeTime.reset();
+        encryptTime.reset();
+        sendTime.reset();
+        capturedFrames.set(0L);
+        sentPackets.set(0L);
+        this.lastCaptureTime = 0L;
+    }
+
+    /**
+     * Lock-free histogram with 0.25 ms buckets up to 64 ms, longer timings are counted in the last bucket
+     */
+    public static final class Histogram {
+
+        private static final int BUCKET_MICROS = 250;
+        private static final int BUCKETS = 257;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long nanos) {
+            long micros = Math.max(0L, nanos / 1_000L);
+
+            buckets.incrementAndGet((int) Math.min(BUCKETS - 1, micros / BUCKET_MICROS));
+            count.incrementAndGet();
+            sum.addAndGet(micros);
+
+            long currentMax;
+            do {
+                currentMax = max.get();
+            } while (micros > currentMax && !max.compareAndSet(currentMax, micros));
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public double getMeanMillis() {
+            long count = this.count.get();
+            return count == 0L ? 0D : sum.get() / (double) count / 1_000D;
+        }
+
+        public double getMaxMillis() {
+            return max.get() / 1_000D;
+        }
+
+        /**
+         * @param percentile percentile in range [0;1]
+         * @return upper bound of the bucket containing the percentile in milliseconds
+         */
+        public double getPercentileMillis(double percentile) {
+            long count = this.count.get();
+            if (count == 0L) return 0D;
+
+            long threshold = (long) Math.ceil(count * percentile);
+            long accumulated = 0L;
+            for (int i = 0; i < BUCKETS; i++) {
+                accumulated += buckets.get(i);
+                if (accumulated >= threshold) {
+                    return Math.min((i + 1L) * BUCKET_MICROS, max.get()) / 1_000D;
+                }
+            }
+
+            return getMaxMillis();
+        }
+
+        public void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0L);
+            }
+            count.set(0L);
+            sum.set(0L);
+            max.set(0L);
+        }
+
+        @Override
+        public @NotNull String toString() {
+            return String.format(
+                    "avg %.2f ms, p99 %.2f ms, max %.2f ms",
+                    getMeanMillis(),
+                    getPercentileMillis(0.99D),
+                    getMaxMillis()
+            );
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package su.plo.voice.client.audio.capture;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.sun.jna.Platform;
+import lombok.Data;
+import lombok.Getter;
 import lombok.Setter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -31,6 +34,7 @@ import su.plo.voice.api.util.AudioUtil;
 import su.plo.voice.api.util.Params;
 import su.plo.voice.client.audio.filter.StereoToMonoFilter;
 import su.plo.voice.client.config.VoiceClientConfig;
+import su.plo.voice.client.connection.VoiceServerInfo;
 import su.plo.voice.client.mac.AVAuthorizationStatus;
 import su.plo.voice.client.mac.AVCaptureDevice;
 import su.plo.voice.proto.data.audio.capture.CaptureInfo;
@@ -39,14 +43,18 @@ import su.plo.voice.proto.data.audio.codec.CodecInfo;
 import su.plo.voice.proto.data.player.VoicePlayerInfo;
 import su.plo.voice.proto.packets.tcp.serverbound.PlayerAudioEndPacket;
 import su.plo.voice.proto.packets.udp.serverbound.PlayerAudioPacket;
+import su.plo.voice.proto.packets.udp.serverbound.PlayerMultiAudioPacket;
 
 import javax.sound.sampled.AudioFormat;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.locks.LockSupport;
 
 public final class VoiceAudioCapture implements AudioCapture {
 
     private static final Logger LOGGER = LogManager.getLogger(VoiceAudioCapture.class);
-    private long lastExecutionTime = System.currentTimeMillis();
+    private static final long MIN_FRAME_WAIT_NANOS = 500_000L;
 
     private final PlasmoVoiceClient voiceClient;
     private final DeviceManager devices;
@@ -58,10 +66,23 @@ public final class VoiceAudioCapture implements AudioCapture {
 
     private AudioEncoder monoEncoder;
     private AudioEncoder stereoEncoder;
+    // format of the default encoders, encoders are reused if the new server uses the same format
+    private @Nullable EncoderFormat encoderFormat;
     @Setter
     private volatile Encryption encryption;
 
+    // reusable encode & encrypt buffers, used by the capture thread under captureLock
+    private byte[] encodeBuffer = new byte[0];
+    private ByteBuffer encryptBuffer = ByteBuffer.allocate(0);
+
+    @Getter
+    private final CaptureMetrics metrics = new CaptureMetrics();
+
     private Thread thread;
+    // notified when capture is started again while the capture thread is waiting for the connection
+    private final Object readyLock = new Object();
+    // held by the capture thread while the frame is read and processed
+    private final Object captureLock = new Object();
 
     public VoiceAudioCapture(@NotNull PlasmoVoiceClient voiceClient,
                              @NotNull VoiceClientConfig config) {
@@ -119,10 +140,19 @@ public final class VoiceAudioCapture implements AudioCapture {
                 config.getVoice().getStereoCapture().value()
         );
 
-        if (!getDevice().isPresent() && !config.getVoice().getDisableInputDevice().value()) {
+        // input device is kept open after switching servers if the format is the same
+        boolean deviceReusable = getDevice()
+                .map((device) -> device.isOpen() && device.getFormat().matches(format))
+                .orElse(false);
+
+        if (!deviceReusable && !config.getVoice().getDisableInputDevice().value()) {
             try {
                 InputDevice device = voiceClient.getDeviceManager().openInputDevice(format, Params.EMPTY);
-                devices.replace(null, device);
+                // capture thread can be still running after switching servers,
+                // so the device is replaced between the frames
+                synchronized (captureLock) {
+                    devices.replace(null, device);
+                }
             } catch (Exception e) {
                 LOGGER.error("Failed to open input device", e);
             }
@@ -130,14 +160,38 @@ public final class VoiceAudioCapture implements AudioCapture {
 
         // initialize encoder
         CaptureInfo capture = serverInfo.getVoiceInfo().getCaptureInfo();
-        if (capture.getEncoderInfo() != null) {
-            CodecInfo codec = capture.getEncoderInfo();
+        // encoders and encode buffer are used by the capture thread
+        synchronized (captureLock) {
+            if (capture.getEncoderInfo() != null) {
+                CodecInfo codec = capture.getEncoderInfo();
+
+                Params.Builder params = Params.builder();
+                codec.getParams().forEach(params::set);
+
+                EncoderFormat encoderFormat = new EncoderFormat(
+                        codec.getName(),
+                        codec.getParams(),
+                        capture.getSampleRate(),
+                        capture.getMtuSize()
+                );
 
-            Params.Builder params = Params.builder();
-            codec.getParams().forEach(params::set);
+                if (encoderFormat.equals(this.encoderFormat)
+                        && monoEncoder != null && monoEncoder.isOpen()
+                        && stereoEncoder != null && stereoEncoder.isOpen()
+                ) {
+                    monoEncoder.reset();
+                    stereoEncoder.reset();
+                } else {
+                    if (monoEncoder != null) monoEncoder.close();
+                    if (stereoEncoder != null) stereoEncoder.close();
+
+                    this.monoEncoder = serverInfo.createOpusEncoder(false);
+                    this.stereoEncoder = serverInfo.createOpusEncoder(true);
+                    this.encoderFormat = encoderFormat;
+                }
+            }
 
-            this.monoEncoder = serverInfo.createOpusEncoder(false);
-            this.stereoEncoder = serverInfo.createOpusEncoder(true);
+            this.encodeBuffer = new byte[capture.getMtuSize()];
         }
 
         // initialize encryption
@@ -154,6 +208,14 @@ public final class VoiceAudioCapture implements AudioCapture {
         voiceClient.getEventBus().call(event);
         if (event.isCancelled()) return;
 
+        // capture thread is still running after switching servers, so it's only woken up
+        if (thread != null && thread.isAlive() && !thread.isInterrupted()) {
+            synchronized (readyLock) {
+                readyLock.notifyAll();
+            }
+            return;
+        }
+
         if (thread != null) {
             thread.interrupt();
             try {
@@ -163,6 +225,8 @@ public final class VoiceAudioCapture implements AudioCapture {
             }
         }
 
+        metrics.reset();
+
         this.thread = new Thread(this::run);
         thread.setName("Voice Audio Capture");
         thread.start();
@@ -203,106 +267,160 @@ public final class VoiceAudioCapture implements AudioCapture {
                         || !serverInfo.isPresent()
                         || !activations.getParentActivation().isPresent()
                 ) {
-                    Thread.sleep(1_000L);
-                    continue;
-                }
+                    // don't buffer audio while there is no connection
+                    device.filter((d) -> d.isOpen() && d.isStarted()).ifPresent(InputDevice::stop);
 
-                device.get().start();
-                if (!device.get().isStarted()) {
-                    Thread.sleep(1_000L);
+                    synchronized (readyLock) {
+                        readyLock.wait(1_000L);
+                    }
                     continue;
                 }
 
-                short[] samples = device.get().read();
-                if (samples == null) {
-                    Thread.sleep(5L);
-                    continue;
+                // input device is replaced by initialize() only between the frames
+                boolean started;
+                long frameWaitNanos = 0L;
+                synchronized (captureLock) {
+                    InputDevice inputDevice = device.get();
+                    if (!inputDevice.isOpen()) continue;
+
+                    inputDevice.start();
+                    started = inputDevice.isStarted();
+                    if (started) {
+                        short[] samples = inputDevice.read();
+                        if (samples != null) {
+                            processFrame(inputDevice, samples);
+                        } else {
+                            frameWaitNanos = getFrameWaitNanos(inputDevice);
+                        }
+                    }
                 }
 
-                AudioCaptureEvent captureEvent = new AudioCaptureEvent(this, device.get(), samples);
-                if (!voiceClient.getEventBus().call(captureEvent)) continue;
+                if (!started) {
+                    Thread.sleep(1_000L);
+                } else if (frameWaitNanos > 0L) {
+                    // the device can be replaced while the capture thread is parked
+                    LockSupport.parkNanos(this, frameWaitNanos);
+                }
+            } catch (InterruptedException ignored) {
+                break;
+            } catch (Exception e) {
+                e.printStackTrace();
+                break;
+            }
+        }
 
-                ClientActivation parentActivation = activations.getParentActivation().get();
+        cleanup();
+    }
 
-                if (captureEvent.isSendEnd()
-                        || config.getVoice().getMicrophoneDisabled().value()
-                        || config.getVoice().getDisabled().value()
-                        || isServerMuted()
-                ) {
-                    if (parentActivation.isActive()) {
-                        parentActivation.reset();
-                        sendVoiceEndPacket(parentActivation);
-                    }
+    private void processFrame(@NotNull InputDevice device, short[] samples) {
+        long captureTime = getFrameCaptureTime(device);
+        metrics.frameCaptured(captureTime);
 
-                    activations.getActivations().forEach((activation) -> {
-                        if (activation.isActive()) {
-                            activation.reset();
-                            sendVoiceEndPacket(activation);
-                        }
-                    });
+        AudioCaptureEvent captureEvent = new AudioCaptureEvent(
+                this,
+                device,
+                samples,
+                captureTime
+        );
+        if (!voiceClient.getEventBus().call(captureEvent)) return;
+
+        ClientActivation parentActivation = activations.getParentActivation().get();
+
+        if (captureEvent.isSendEnd()
+                || config.getVoice().getMicrophoneDisabled().value()
+                || config.getVoice().getDisabled().value()
+                || isServerMuted()
+        ) {
+            if (parentActivation.isActive()) {
+                parentActivation.reset();
+                sendVoiceEndPacket(parentActivation);
+            }
 
-                    voiceClient.getEventBus().call(new AudioCaptureProcessedEvent(
-                            this,
-                            device.get(),
-                            samples,
-                            null
-                    ));
-                    continue;
+            activations.getActivations().forEach((activation) -> {
+                if (activation.isActive()) {
+                    activation.reset();
+                    sendVoiceEndPacket(activation);
                 }
+            });
+
+            voiceClient.getEventBus().call(new AudioCaptureProcessedEvent(
+                    this,
+                    device,
+                    samples,
+                    null
+            ));
+            return;
+        }
 
-                ClientActivation.Result parentResult = parentActivation.process(samples, null);
+        ClientActivation.Result parentResult = parentActivation.process(samples, null);
 
-                EncodedCapture encoded = new EncodedCapture();
-                boolean transitiveReached = false;
+        EncodedCapture encoded = new EncodedCapture();
+        boolean transitiveReached = false;
 
-                for (ClientActivation activation : activations.getActivations()) {
-                    if ((activation.isDisabled() && !activation.isActive()) ||
-                            activation.equals(parentActivation)
-                    ) continue;
+        for (ClientActivation activation : activations.getActivations()) {
+            if ((activation.isDisabled() && !activation.isActive()) ||
+                    activation.equals(parentActivation)
+            ) continue;
 
-                    if (transitiveReached) {
-                        activation.reset();
-                        continue;
-                    }
+            if (transitiveReached) {
+                activation.reset();
+                continue;
+            }
 
-                    ClientActivation.Result activationResult = activation.process(samples, parentResult);
+            ClientActivation.Result activationResult = activation.process(samples, parentResult);
 
-                    if (activation.getType() == ClientActivation.Type.INHERIT) {
-                        processActivation(device.get(), activation, activationResult, samples, encoded);
-                    } else if (activation.getType() == ClientActivation.Type.VOICE) {
-                        processActivation(device.get(), activation, activationResult, samples, encoded);
-                    } else {
-                        processActivation(device.get(), activation, activationResult, samples, encoded);
-                    }
-
-                    if (activationResult.isActivated() && !activation.isTransitive()) {
-                        transitiveReached = true;
-                    }
-                }
+            if (activation.getType() == ClientActivation.Type.INHERIT) {
+                processActivation(device, activation, activationResult, samples, encoded);
+            } else if (activation.getType() == ClientActivation.Type.VOICE) {
+                processActivation(device, activation, activationResult, samples, encoded);
+            } else {
+                processActivation(device, activation, activationResult, samples, encoded);
+            }
 
-                if (parentActivation.getId().equals(VoiceActivation.PROXIMITY_ID)) {
-                    if (!transitiveReached) {
-                        processActivation(device.get(), parentActivation, parentResult, samples, encoded);
-                    } else if (activationStreams.remove(parentActivation.getId())) {
-                        processActivation(device.get(), parentActivation, ClientActivation.Result.END, null, encoded);
-                    }
-                }
+            if (activationResult.isActivated() && !activation.isTransitive()) {
+                transitiveReached = true;
+            }
+        }
 
-                voiceClient.getEventBus().call(new AudioCaptureProcessedEvent(
-                        this,
-                        device.get(),
-                        samples,
-                        encoded.monoProcessed
-                ));
-            } catch (InterruptedException ignored) {
-                break;
-            } catch (Exception e) {
-                e.printStackTrace();
-                break;
+        if (parentActivation.getId().equals(VoiceActivation.PROXIMITY_ID)) {
+            if (!transitiveReached) {
+                processActivation(device, parentActivation, parentResult, samples, encoded);
+            } else if (activationStreams.remove(parentActivation.getId())) {
+                processActivation(device, parentActivation, ClientActivation.Result.END, null, encoded);
             }
         }
 
-        cleanup();
+        sendPackets(encoded);
+
+        voiceClient.getEventBus().call(new AudioCaptureProcessedEvent(
+                this,
+                device,
+                samples,
+                encoded.monoProcessed
+        ));
+    }
+
+    /**
+     * @return time until the device is expected to have the whole frame
+     */
+    private long getFrameWaitNanos(@NotNull InputDevice device) {
+        int missingSamples = device.getBufferSize() - device.available();
+
+        return Math.max(samplesToNanos(device, missingSamples), MIN_FRAME_WAIT_NANOS);
+    }
+
+    /**
+     * Calculates the capture time of the first sample of the frame which was just read
+     * using the samples still buffered by the device
+     */
+    private long getFrameCaptureTime(@NotNull InputDevice device) {
+        int bufferedSamples = device.getBufferSize() + device.available();
+
+        return System.nanoTime() - samplesToNanos(device, bufferedSamples);
+    }
+
+    private long samplesToNanos(@NotNull InputDevice device, int samples) {
+        return samples * 1_000_000_000L / (long) device.getFormat().getSampleRate();
     }
 
     private void cleanup() {
@@ -325,90 +443,157 @@ public final class VoiceAudioCapture implements AudioCapture {
                                    short[] samples,
                                    @NotNull EncodedCapture encoded) {
         boolean isStereo = config.getVoice().getStereoCapture().value() && activation.isStereoSupported();
+        EncoderKey encoderKey = EncoderKey.of(activation, isStereo);
 
-        if (result.isActivated() && samples != null) {
-            if (isStereo && encoded.stereo == null) {
-                short[] processedSamples = new short[samples.length];
-                System.arraycopy(samples, 0, processedSamples, 0, samples.length);
-
+        // activations with the same encoder params share the encoded frame
+        if (result.isActivated() && samples != null && !encoded.frames.containsKey(encoderKey)) {
+            if (isStereo) {
                 AudioEncoder stereoEncoder = activation.getStereoEncoder().orElse(this.stereoEncoder);
 
-                processedSamples = device.processFilters(
-                        processedSamples,
-                        (filter) -> (filter instanceof StereoToMonoFilter)
-                );
-                encoded.stereoProcessed = processedSamples;
-                encoded.stereo = encode(stereoEncoder, processedSamples);
-            } else if (!isStereo && encoded.mono == null) {
-                short[] processedSamples = new short[samples.length];
-                System.arraycopy(samples, 0, processedSamples, 0, samples.length);
-
+                // filters don't modify the original samples, so they can be shared between stereo and mono
+                if (encoded.stereoProcessed == null) {
+                    encoded.stereoProcessed = device.processFilters(
+                            samples,
+                            (filter) -> (filter instanceof StereoToMonoFilter)
+                    );
+                }
+                encoded.frames.put(encoderKey, encode(stereoEncoder, encoded.stereoProcessed));
+            } else {
                 AudioEncoder monoEncoder = activation.getMonoEncoder().orElse(this.monoEncoder);
 
-                processedSamples = device.processFilters(processedSamples);
-                encoded.monoProcessed = processedSamples;
-                encoded.mono = encode(monoEncoder, processedSamples);
+                if (encoded.monoProcessed == null) {
+                    encoded.monoProcessed = device.processFilters(samples);
+                }
+                encoded.frames.put(encoderKey, encode(monoEncoder, encoded.monoProcessed));
             }
         }
 
-        byte[] encodedData = isStereo ? encoded.stereo : encoded.mono;
-
         if (result == ClientActivation.Result.ACTIVATED) {
-            sendVoicePacket(activation, isStereo, encodedData);
+            encoded.addPacket(encoderKey, activation);
             activationStreams.add(activation.getId());
         } else if (result == ClientActivation.Result.END) {
-            if (encodedData != null) sendVoicePacket(activation, isStereo, encodedData);
-            sendVoiceEndPacket(activation);
+            encoded.addPacket(encoderKey, activation);
+            encoded.ended.add(activation);
             activationStreams.remove(activation.getId());
         }
     }
 
+    /**
+     * Sends audio packets queued by the activations and end packets of the ended activations
+     * <br/>
+     * Activations sharing the same encoded frame are sent in the single {@link PlayerMultiAudioPacket}
+     */
+    private void sendPackets(@NotNull EncodedCapture encoded) {
+        encoded.packets.forEach((encoderKey, activations) -> {
+            byte[] frame = encoded.frames.get(encoderKey);
+            if (frame == null) return;
+
+            sendVoicePacket(activations, encoderKey.isStereo(), frame);
+        });
+
+        encoded.ended.forEach(this::sendVoiceEndPacket);
+    }
+
     private byte[] encode(@Nullable AudioEncoder encoder, short[] samples) {
         byte[] encoded;
+        int encodedLength;
         if (encoder != null) {
             try {
-                encoded = encoder.encode(samples);
+                long startTime = System.nanoTime();
+                encoded = encodeBuffer;
+                encodedLength = encoder.encode(samples, 0, samples.length, encoded, 0, encoded.length);
+                metrics.getEncodeTime().record(System.nanoTime() - startTime);
             } catch (CodecException e) {
                 LOGGER.error("Failed to encode audio data", e);
                 return null;
             }
         } else {
             encoded = AudioUtil.shortsToBytes(samples);
+            encodedLength = encoded.length;
         }
 
+        Encryption encryption = this.encryption;
         if (encryption != null) {
             try {
-                encoded = encryption.encrypt(encoded);
+                long startTime = System.nanoTime();
+                byte[] encrypted = encrypt(encryption, encoded, encodedLength);
+                metrics.getEncryptTime().record(System.nanoTime() - startTime);
+
+                return encrypted;
             } catch (EncryptionException e) {
                 LOGGER.error("Failed to encrypt audio data", e);
                 return null;
             }
         }
 
-        return encoded;
+        // packet can outlive the reusable buffer
+        return encoded == encodeBuffer ? Arrays.copyOf(encoded, encodedLength) : encoded;
     }
 
-    private void sendVoicePacket(@NotNull ClientActivation activation,
-                                boolean isStereo,
-                                byte[] encoded) {
-        if (activation.getTranslation().equals("pv.activation.parent")) return;
+    private byte[] encrypt(@NotNull Encryption encryption, byte[] encoded, int encodedLength) throws EncryptionException {
+        int maxLength = encryption.getMaxEncryptedLength(encodedLength);
+        // encryption overhead is unknown, so the reusable buffer can't be sized
+        if (maxLength < 0) return encryption.encrypt(Arrays.copyOf(encoded, encodedLength));
+
+        if (encryptBuffer.capacity() < maxLength) {
+            this.encryptBuffer = ByteBuffer.allocate(maxLength);
+        }
 
-        long currentTime = System.currentTimeMillis();
-        long delay = currentTime - lastExecutionTime;
-        System.out.println("Delay between function executions: " + delay + " milliseconds");
-        lastExecutionTime = currentTime;
+        try {
+            encryptBuffer.clear();
+            int encryptedLength = encryption.encrypt(ByteBuffer.wrap(encoded, 0, encodedLength), encryptBuffer);
+
+            return Arrays.copyOf(encryptBuffer.array(), encryptedLength);
+        } catch (BufferOverflowException e) {
+            // encryption reported the wrong overhead
+            return encryption.encrypt(Arrays.copyOf(encoded, encodedLength));
+        }
+    }
 
+    private void sendVoicePacket(@NotNull List<ClientActivation> activations,
+                                 boolean isStereo,
+                                 byte[] encoded) {
         voiceClient.getUdpClientManager()
                 .getClient()
-                .ifPresent(udpClient ->
-                        udpClient.sendPacket(new PlayerAudioPacket(
-                                getSequenceNumber(activation),
-                                encoded,
-                                activation.getId(),
-                                (short) activation.getDistance(),
-                                isStereo
-                        ))
-                );
+                .ifPresent(udpClient -> {
+                    long startTime = System.nanoTime();
+                    if (activations.size() == 1 || !isMultiAudioSupported()) {
+                        for (ClientActivation activation : activations) {
+                            udpClient.sendPacket(new PlayerAudioPacket(
+                                    getSequenceNumber(activation),
+                                    encoded,
+                                    activation.getId(),
+                                    (short) activation.getDistance(),
+                                    isStereo
+                            ));
+                        }
+                    } else {
+                        for (List<ClientActivation> chunk : Lists.partition(activations, PlayerMultiAudioPacket.MAX_ACTIVATIONS)) {
+                            List<PlayerMultiAudioPacket.ActivationEntry> entries = new ArrayList<>(chunk.size());
+                            for (ClientActivation activation : chunk) {
+                                entries.add(new PlayerMultiAudioPacket.ActivationEntry(
+                                        activation.getId(),
+                                        getSequenceNumber(activation),
+                                        (short) activation.getDistance()
+                                ));
+                            }
+
+                            udpClient.sendPacket(new PlayerMultiAudioPacket(encoded, isStereo, entries));
+                        }
+                    }
+                    metrics.packetSent(System.nanoTime() - startTime);
+                });
+    }
+
+    /**
+     * {@link PlayerMultiAudioPacket} is supported since protocol version 1,
+     * older servers (e.g. behind the proxy) would drop it
+     */
+    private boolean isMultiAudioSupported() {
+        return voiceClient.getServerInfo()
+                .filter((serverInfo) -> serverInfo instanceof VoiceServerInfo)
+                .map((serverInfo) -> ((VoiceServerInfo) serverInfo).getProtocolVersion() >= 1)
+                .orElse(false);
     }
 
     private void sendVoiceEndPacket(ClientActivation activation) {
@@ -434,9 +619,39 @@ public final class VoiceAudioCapture implements AudioCapture {
 
     static class EncodedCapture {
 
-        private byte[] mono;
+        private final Map<EncoderKey, byte[]> frames = Maps.newHashMap();
+        private final Map<EncoderKey, List<ClientActivation>> packets = Maps.newLinkedHashMap();
+        private final List<ClientActivation> ended = new ArrayList<>();
         private short[] monoProcessed;
-        private byte[] stereo;
         private short[] stereoProcessed;
+
+        private void addPacket(@NotNull EncoderKey encoderKey, @NotNull ClientActivation activation) {
+            if (activation.getTranslation().equals("pv.activation.parent")) return;
+
+            packets.computeIfAbsent(encoderKey, (key) -> new ArrayList<>()).add(activation);
+        }
+    }
+
+    @Data
+    private static class EncoderFormat {
+
+        private final String codecName;
+        private final Map<String, String> codecParams;
+        private final int sampleRate;
+        private final int mtuSize;
+    }
+
+    @Data
+    static class EncoderKey {
+
+        private final boolean stereo;
+        private final @Nullable String codecName;
+        private final @Nullable Map<String, String> codecParams;
+
+        static EncoderKey of(@NotNull ClientActivation activation, boolean stereo) {
+            return activation.getEncoderInfo()
+                    .map((codecInfo) -> new EncoderKey(stereo, codecInfo.getName(), codecInfo.getParams()))
+                    .orElseGet(() -> new EncoderKey(stereo, null, null));
+        }
     }
 }
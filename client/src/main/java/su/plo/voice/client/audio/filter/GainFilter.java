@@ -25,10 +25,33 @@ public final class GainFilter implements AudioFilter {
 
     @Override
     public short[] process(short[] samples) {
+        updateVolume(AudioUtil.getHighestAbsoluteSample(samples));
+        for (int i = 0; i < samples.length; i ++) {
+            samples[i] *= volume;
+        }
+
+        return samples;
+    }
+
+    @Override
+    public int process(float[] samples, int length) {
+        float highestValue = 0F;
+        for (int i = 0; i < length; i++) {
+            highestValue = Math.max(highestValue, Math.min(Math.abs(samples[i]), Short.MAX_VALUE));
+        }
+
+        updateVolume(highestValue);
+        for (int i = 0; i < length; i++) {
+            samples[i] *= volume;
+        }
+
+        return length;
+    }
+
+    private void updateVolume(float highestValue) {
         this.volume = entry.value().floatValue();
 
-        short highestValue = AudioUtil.getHighestAbsoluteSample(samples);
-        float highestPossibleMultiplier = (float) (Short.MAX_VALUE - 1) / (float) highestValue;
+        float highestPossibleMultiplier = (float) (Short.MAX_VALUE - 1) / highestValue;
         if (volume > highestPossibleMultiplier) {
             volume = highestPossibleMultiplier;
         }
@@ -53,11 +76,6 @@ public final class GainFilter implements AudioFilter {
         }
 
         volume = Math.min(minVolume, volume);
-        for (int i = 0; i < samples.length; i ++) {
-            samples[i] *= volume;
-        }
-
-        return samples;
     }
 
     @Override
@@ -48,12 +48,20 @@ public class LimiterFilter implements AudioFilter {
 
     @Override
     public short[] process(short[] samples) {
-        float[] floatSamples = AudioUtil.shortsToFloatsRange(samples);
+        float[] floatSamples = AudioUtil.shortsToFloats(samples);
+        process(floatSamples, floatSamples.length);
 
-        analyzeEnvelope(floatSamples);
-        limit(floatSamples);
+        short[] processed = new short[floatSamples.length];
+        AudioUtil.floatsToShorts(floatSamples, 0, floatSamples.length, processed, 0);
+        return processed;
+    }
+
+    @Override
+    public synchronized int process(float[] samples, int length) {
+        analyzeEnvelope(samples, length);
+        limit(samples, length);
 
-        return AudioUtil.floatsRangeToShort(floatSamples);
+        return length;
     }
 
     @Override
@@ -66,7 +74,7 @@ public class LimiterFilter implements AudioFilter {
         return 1;
     }
 
-    public synchronized void limit(float[] samples) {
+    public synchronized void limit(float[] samples, int length) {
         float limiterThreshold;
 
         if (thresholdEntry != null) {
@@ -78,7 +86,7 @@ public class LimiterFilter implements AudioFilter {
         }
 
 
-        for (int i = 0; i < samples.length; i++) {
+        for (int i = 0; i < length; i++) {
             float envDB = AudioUtil.mulToDB(this.envelopeBuf[i]);
 
             float limiterGain = SLOPE * (limiterThreshold - envDB);
@@ -88,23 +96,26 @@ public class LimiterFilter implements AudioFilter {
         }
     }
 
-    private synchronized void analyzeEnvelope(float[] samples) {
-        this.envelopeBuf = new float[samples.length];
+    private synchronized void analyzeEnvelope(float[] samples, int length) {
+        if (length == 0) return;
+        if (envelopeBuf.length < length) {
+            this.envelopeBuf = new float[length];
+        }
 
         float attackGain = AudioUtil.gainCoefficient(sampleRate, 0.001F / 1000F);
         float releaseGain = AudioUtil.gainCoefficient(sampleRate, 60F / 1000F);
 
         float env = this.envelope;
-        for (int i = 0; i < samples.length; i++) {
-            float envIn = Math.abs(samples[i]);
+        for (int i = 0; i < length; i++) {
+            float envIn = Math.abs(samples[i]) / 0x8000;
             if (env < envIn) {
                 env = envIn + attackGain * (env - envIn);
             } else {
                 env = envIn + releaseGain * (env - envIn);
             }
 
-            this.envelopeBuf[i] = Math.max(this.envelopeBuf[i], env);
+            this.envelopeBuf[i] = env;
         }
-        this.envelope = envelopeBuf[samples.length - 1];
+        this.envelope = envelopeBuf[length - 1];
     }
 }
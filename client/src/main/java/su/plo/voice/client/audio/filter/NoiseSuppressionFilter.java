@@ -6,6 +6,8 @@ import su.plo.voice.BaseVoice;
 import su.plo.voice.api.util.AudioUtil;
 import su.plo.voice.rnnoise.Denoiser;
 
+import java.util.Arrays;
+
 import static su.plo.voice.util.NativesKt.isNativesSupported;
 
 public final class NoiseSuppressionFilter extends LimiterFilter {
@@ -57,6 +59,19 @@ public final class NoiseSuppressionFilter extends LimiterFilter {
         return samples;
     }
 
+    @Override
+    public int process(float[] samples, int length) {
+        // limiter output is discarded by the short implementation, so only the denoiser is processed here
+        float[] denoised = instance.process(length == samples.length ? samples : Arrays.copyOf(samples, length));
+
+        int denoisedLength = Math.min(denoised.length, samples.length);
+        if (denoised != samples) {
+            System.arraycopy(denoised, 0, samples, 0, denoisedLength);
+        }
+
+        return denoisedLength;
+    }
+
     @Override
     public boolean isEnabled() {
         return instance != null && activeEntry.value();
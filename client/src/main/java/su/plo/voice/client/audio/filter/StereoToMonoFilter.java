@@ -21,6 +21,16 @@ public final class StereoToMonoFilter implements AudioFilter {
         return AudioUtil.convertToMonoShorts(samples);
     }
 
+    @Override
+    public int process(float[] samples, int length) {
+        int monoLength = length / 2;
+        for (int i = 0; i < monoLength; i++) {
+            samples[i] = (samples[i * 2] + samples[i * 2 + 1]) / 2F;
+        }
+
+        return monoLength;
+    }
+
     @Override
     public boolean isEnabled() {
         return activeEntry.value();
@@ -275,6 +275,9 @@ public final class VoiceClientConfig implements ClientConfig {
         @ConfigField
         private BooleanConfigEntry soundOcclusion = new BooleanConfigEntry(false);
 
+        @ConfigField
+        private BooleanConfigEntry multiRayOcclusion = new BooleanConfigEntry(false);
+
         @ConfigField
         private BooleanConfigEntry directionalSources = new BooleanConfigEntry(false);
 
@@ -399,6 +402,9 @@ public final class VoiceClientConfig implements ClientConfig {
 
         @ConfigField
         private BooleanConfigEntry exponentialDistanceGain = new BooleanConfigEntry(true);
+
+        @ConfigField
+        private BooleanConfigEntry softwareMixer = new BooleanConfigEntry(false);
     }
 
     @Config
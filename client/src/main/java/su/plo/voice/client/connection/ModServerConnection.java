@@ -16,8 +16,10 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import su.plo.lib.mod.client.MinecraftUtil;
 import su.plo.lib.mod.client.render.RenderUtil;
+import su.plo.lib.mod.client.render.texture.ModPlayerSkins;
 import su.plo.voice.api.client.audio.capture.AudioCapture;
 import su.plo.voice.api.client.audio.capture.ClientActivationManager;
+import su.plo.voice.api.client.audio.device.DeviceType;
 import su.plo.voice.api.client.audio.device.OutputDevice;
 import su.plo.voice.api.client.audio.device.source.AlSource;
 import su.plo.voice.api.client.audio.line.ClientSourceLineManager;
@@ -29,11 +31,13 @@ import su.plo.voice.api.client.event.socket.UdpClientClosedEvent;
 import su.plo.voice.api.client.event.socket.UdpClientConnectEvent;
 import su.plo.voice.api.client.socket.UdpClient;
 import su.plo.voice.api.encryption.Encryption;
+import su.plo.voice.api.encryption.EncryptionSupplier;
 import su.plo.voice.api.event.EventSubscribe;
 import su.plo.voice.api.util.Params;
 import su.plo.voice.client.BaseVoiceClient;
 import su.plo.voice.client.config.VoiceClientConfig;
 import su.plo.voice.client.event.language.LanguageChangedEvent;
+import su.plo.voice.client.event.line.SourceLineUpdatedEvent;
 import su.plo.voice.client.socket.NettyUdpClient;
 import su.plo.voice.proto.data.audio.source.PlayerSourceInfo;
 import su.plo.voice.proto.data.encryption.EncryptionInfo;
@@ -53,9 +57,14 @@ import java.net.SocketAddress;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 //#if MC>=12002
 //$$ import net.minecraft.resources.ResourceLocation;
@@ -65,6 +74,11 @@ import java.util.UUID;
 public final class ModServerConnection implements ServerConnection, ClientPacketTcpHandler {
 
     private static final Logger LOGGER = LogManager.getLogger(ModServerConnection.class);
+    private static final Executor BOOTSTRAP_EXECUTOR = Executors.newCachedThreadPool((runnable) -> {
+        Thread thread = new Thread(runnable, "Voice Connection Bootstrap");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private final BaseVoiceClient voiceClient;
     private final VoiceClientConfig config;
@@ -82,6 +96,7 @@ public final class ModServerConnection implements ServerConnection, ClientPacket
     @Getter
     private @NotNull Map<String, String> language = Maps.newHashMap();
     private @Nullable EncryptionInfo encryptionInfo;
+    private volatile boolean closed;
 
     public ModServerConnection(@NotNull BaseVoiceClient voiceClient,
                                @NotNull Connection connection) {
@@ -160,12 +175,11 @@ public final class ModServerConnection implements ServerConnection, ClientPacket
 
     @Override
     public void close() {
+        this.closed = true;
+
         // cleanup server connection
         playerById.clear();
 
-        // cleanup audio capture
-        voiceClient.getAudioCapture().stop();
-
         // cleanup sources
         voiceClient.getSourceManager().clear();
 
@@ -175,9 +189,49 @@ public final class ModServerConnection implements ServerConnection, ClientPacket
         // cleanup activations
         voiceClient.getActivationManager().clear();
 
-        // cleanup devices
-        voiceClient.getDeviceManager().clear(null);
+        // audio capture, devices and codecs are kept for a while,
+        // so they can be reused if the client connects to another server
         voiceClient.getDeviceManager().stopJob();
+        voiceClient.retainAudio();
+    }
+
+    private void fireLineUpdated(@NotNull UUID lineId) {
+        voiceClient.getEventBus().call(new SourceLineUpdatedEvent(lineId));
+    }
+
+    private Encryption createEncryption(@NotNull EncryptionInfo encryptionInfo, byte[] encryptionData) {
+        List<String> algorithms = encryptionInfo.getAlgorithms();
+        if (algorithms.isEmpty()) {
+            return voiceClient.getEncryptionManager().create(
+                    encryptionInfo.getAlgorithm(),
+                    encryptionData
+            );
+        }
+
+        List<String> supportedAlgorithms = voiceClient.getEncryptionManager().getAlgorithms()
+                .stream()
+                .map(EncryptionSupplier::getName)
+                .filter(algorithms::contains)
+                .collect(Collectors.toList());
+        if (supportedAlgorithms.isEmpty()) {
+            throw new IllegalStateException("None of the server encryption algorithms are supported: " + algorithms);
+        }
+
+        // if benchmark is not finished yet, use the first supported algorithm in the server preference order
+        String encryptAlgorithm = voiceClient.getEncryptionBenchmark()
+                .getFastest(supportedAlgorithms)
+                .orElseGet(() -> algorithms.stream()
+                        .filter(supportedAlgorithms::contains)
+                        .findFirst()
+                        .get()
+                );
+        LOGGER.info("Using {} encryption", encryptAlgorithm);
+
+        return voiceClient.getEncryptionManager().createSuite(
+                algorithms,
+                encryptAlgorithm,
+                encryptionData
+        );
     }
 
     public void generateKeyPair() throws Exception {
@@ -243,6 +297,8 @@ public final class ModServerConnection implements ServerConnection, ClientPacket
             return;
         }
 
+        voiceClient.cancelAudioRelease();
+
         // initialize encryption
         this.encryptionInfo = packet.getEncryption();
         Encryption encryption = null;
@@ -252,10 +308,7 @@ public final class ModServerConnection implements ServerConnection, ClientPacket
                 decryptCipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
                 byte[] encryptionData = decryptCipher.doFinal(encryptionInfo.getData());
 
-                encryption = voiceClient.getEncryptionManager().create(
-                        encryptionInfo.getAlgorithm(),
-                        encryptionData
-                );
+                encryption = createEncryption(encryptionInfo, encryptionData);
             } catch (Exception e) {
                 LOGGER.error("Failed to initialize encryption with name {}", encryptionInfo.getAlgorithm(), e);
                 return;
@@ -285,15 +338,37 @@ public final class ModServerConnection implements ServerConnection, ClientPacket
         voiceClient.getSourceLineManager()
                 .register(serverInfo.getVoiceInfo().getSourceLines());
 
-        // register activations
-        voiceClient.getActivationManager()
-                .register(serverInfo.getVoiceInfo().getActivations());
+        // request language, the response doesn't depend on the rest of the initialization
+        sendPacket(new LanguageRequestPacket(UMinecraft.getSettings().languageCode));
+
+        // activations are registered on the packet thread,
+        // so ActivationRegisterPacket and ActivationUnregisterPacket are handled after them
+        voiceClient.getActivationManager().register(serverInfo.getVoiceInfo().getActivations());
 
-        // initialize capture
         AudioCapture audioCapture = voiceClient.getAudioCapture();
-        audioCapture.start();
-        audioCapture.initialize(serverInfo);
 
+        // steps below can take a while (e.g. opening devices), so they are executed concurrently
+        CompletableFuture<Void> capture = runBootstrapStep(serverInfo, "initialize capture", () ->
+                audioCapture.initialize(serverInfo)
+        );
+
+        // sources are created once the event is fired, so it's fired after the output device is opened
+        runBootstrapStep(serverInfo, "open primary output device", () -> openPrimaryOutputDevice(serverInfo))
+                .thenRun(() -> {
+                    if (!isBootstrapping(serverInfo)) return;
+
+                    ServerInfoInitializedEvent event = new ServerInfoInitializedEvent(serverInfo, packet);
+                    voiceClient.getEventBus().call(event);
+                });
+
+        // capture is started as soon as the input device is ready
+        capture.thenRun(() -> {
+            if (!isBootstrapping(serverInfo)) return;
+            audioCapture.start();
+        });
+    }
+
+    private void openPrimaryOutputDevice(@NotNull ServerInfo serverInfo) {
         // clear & initialize primary output device
         AudioFormat format = new AudioFormat(
                 (float) serverInfo.getVoiceInfo().getCaptureInfo().getSampleRate(),
@@ -303,20 +378,50 @@ public final class ModServerConnection implements ServerConnection, ClientPacket
                 false
         );
 
+        // output device retained from the previous server is reused if the format is the same
+        Collection<OutputDevice<AlSource>> outputDevices = voiceClient.getDeviceManager().getDevices(DeviceType.OUTPUT);
+        boolean deviceReusable = outputDevices.stream()
+                .findFirst()
+                .map((device) -> device.isOpen() && device.getFormat().matches(format))
+                .orElse(false);
+
         try {
-            OutputDevice<AlSource> outputDevice = voiceClient.getDeviceManager().openOutputDevice(format, Params.EMPTY);
-            voiceClient.getDeviceManager().add(outputDevice);
+            if (!deviceReusable) {
+                OutputDevice<AlSource> outputDevice = voiceClient.getDeviceManager().openOutputDevice(format, Params.EMPTY);
+                if (!isBootstrapping(serverInfo)) {
+                    outputDevice.close();
+                    return;
+                }
+
+                voiceClient.getDeviceManager().replace(null, outputDevice);
+            }
         } catch (Exception e) {
             LOGGER.error("Failed to open primary OpenAL output device", e);
         }
 
-        voiceClient.getDeviceManager().startJob();
+        if (isBootstrapping(serverInfo)) voiceClient.getDeviceManager().startJob();
+    }
 
-        ServerInfoInitializedEvent event = new ServerInfoInitializedEvent(serverInfo, packet);
-        voiceClient.getEventBus().call(event);
+    private CompletableFuture<Void> runBootstrapStep(@NotNull ServerInfo serverInfo,
+                                                     @NotNull String name,
+                                                     @NotNull Runnable step) {
+        return CompletableFuture.runAsync(() -> {
+            if (!isBootstrapping(serverInfo)) return;
 
-        // request language
-        sendPacket(new LanguageRequestPacket(UMinecraft.getSettings().languageCode));
+            try {
+                step.run();
+            } catch (Exception e) {
+                // failed step shouldn't prevent the steps depending on it
+                LOGGER.error("Failed to {}", name, e);
+            }
+        }, BOOTSTRAP_EXECUTOR);
+    }
+
+    /**
+     * @return true if the connection is not closed and the server info wasn't replaced by the newer config
+     */
+    private boolean isBootstrapping(@NotNull ServerInfo serverInfo) {
+        return !closed && voiceClient.getServerInfo().orElse(null) == serverInfo;
     }
 
     @Override
@@ -346,8 +451,12 @@ public final class ModServerConnection implements ServerConnection, ClientPacket
 
     @Override
     public void handle(@NotNull PlayerListPacket packet) {
-        packet.getPlayers()
-                .forEach((player) -> playerById.put(player.getPlayerId(), player));
+        packet.getPlayers().forEach((player) -> {
+            playerById.put(player.getPlayerId(), player);
+            // prefetch skins of players which can be shown in the overlay or in the settings,
+            // players from the tab list are skipped by the loader
+            ModPlayerSkins.loadSkin(player.getPlayerId(), player.getPlayerNick(), null);
+        });
     }
 
     @Override
@@ -390,34 +499,42 @@ public final class ModServerConnection implements ServerConnection, ClientPacket
             playerById.put(sourceInfo.getPlayerInfo().getPlayerId(), sourceInfo.getPlayerInfo());
         }
 
+        // output device is not opened yet, source info will be requested again with the first audio packet
+        if (!voiceClient.getUdpClientManager().isConnected()) return;
+
         sources.update(packet.getSourceInfo());
     }
 
     @Override
     public void handle(@NotNull SelfSourceInfoPacket packet) {
         sources.updateSelfSourceInfo(packet.getSourceInfo());
+        fireLineUpdated(packet.getSourceInfo().getSourceInfo().getLineId());
     }
 
     @Override
     public void handle(@NotNull SourceLineRegisterPacket packet) {
         sourceLines.register(packet.getSourceLine());
+        fireLineUpdated(packet.getSourceLine().getId());
     }
 
     @Override
     public void handle(@NotNull SourceLineUnregisterPacket packet) {
         sourceLines.unregister(packet.getLineId());
+        fireLineUpdated(packet.getLineId());
     }
 
     @Override
     public void handle(@NotNull SourceLinePlayerAddPacket packet) {
         sourceLines.getLineById(packet.getLineId())
                 .ifPresent((line) -> line.addPlayer(packet.getPlayer()));
+        fireLineUpdated(packet.getLineId());
     }
 
     @Override
     public void handle(@NotNull SourceLinePlayerRemovePacket packet) {
         sourceLines.getLineById(packet.getLineId())
                 .ifPresent((line) -> line.removePlayer(packet.getPlayerId()));
+        fireLineUpdated(packet.getLineId());
     }
 
     @Override
@@ -427,6 +544,7 @@ public final class ModServerConnection implements ServerConnection, ClientPacket
                     sourceLine.clearPlayers();
                     packet.getPlayers().forEach(sourceLine::addPlayer);
                 });
+        fireLineUpdated(packet.getLineId());
     }
 
     @Override
@@ -13,6 +13,7 @@ import su.plo.voice.proto.data.audio.capture.CaptureInfo;
 import su.plo.voice.proto.data.audio.codec.CodecInfo;
 import su.plo.voice.proto.data.audio.codec.opus.OpusDecoderInfo;
 import su.plo.voice.proto.data.audio.line.SourceLine;
+import su.plo.voice.proto.packets.tcp.PacketTcpCodec;
 import su.plo.voice.proto.packets.tcp.clientbound.ConfigPacket;
 
 import javax.sound.sampled.AudioFormat;
@@ -47,6 +48,12 @@ public final class VoiceServerInfo implements ServerInfo {
     @Setter
     private @Nullable Encryption encryption;
 
+    /**
+     * Protocol version of the voice server, see {@link PacketTcpCodec#PROTOCOL_VERSION}
+     */
+    @Getter
+    private final int protocolVersion;
+
     public VoiceServerInfo(@NonNull PlasmoVoiceClient voiceClient,
                            @NonNull UUID serverId,
                            @NonNull UUID secret,
@@ -64,6 +71,7 @@ public final class VoiceServerInfo implements ServerInfo {
                 new ArrayList<>(config.getActivations())
         );
         this.playerInfo = new VoiceServerPlayerInfo(config.getPermissions());
+        this.protocolVersion = config.getProtocolVersion();
     }
 
     @Override
@@ -0,0 +1,21 @@
+package su.plo.voice.client.event.line;
+
+import lombok.Getter;
+import lombok.NonNull;
+import su.plo.voice.api.event.Event;
+
+import java.util.UUID;
+
+/**
+ * This event is fired once the source line was registered, unregistered
+ * or its players or self sources were updated
+ */
+public final class SourceLineUpdatedEvent implements Event {
+
+    @Getter
+    private final UUID lineId;
+
+    public SourceLineUpdatedEvent(@NonNull UUID lineId) {
+        this.lineId = lineId;
+    }
+}
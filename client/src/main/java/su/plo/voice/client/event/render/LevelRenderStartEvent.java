@@ -0,0 +1,13 @@
+package su.plo.voice.client.event.render;
+
+import su.plo.voice.api.event.Event;
+
+/**
+ * Called before the entities of the main level pass are rendered
+ * <br/>
+ * Entities rendered before this event (e.g. in the shader shadow passes) or outside the level render
+ * (e.g. in the GUI previews) are not part of the main pass.
+ * The main pass ends with {@link LevelRenderEvent}
+ */
+public final class LevelRenderStartEvent implements Event {
+}
@@ -76,11 +76,8 @@ public final class MicrophoneTestController {
         if (event.getMonoSamplesProcessed() != null) {
             samples = event.getMonoSamplesProcessed();
         } else {
-            samples = new short[event.getSamples().length];
-            System.arraycopy(event.getSamples(), 0, samples, 0, event.getSamples().length);
-
             samples = event.getDevice().processFilters(
-                    samples,
+                    event.getSamples(),
                     (filter) -> isStereoSupported() && (filter instanceof StereoToMonoFilter)
             );
         }
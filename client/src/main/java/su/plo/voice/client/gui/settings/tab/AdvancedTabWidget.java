@@ -1,14 +1,22 @@
 package su.plo.voice.client.gui.settings.tab;
 
 import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
 import su.plo.lib.api.chat.MinecraftTextComponent;
+import su.plo.lib.mod.client.render.RenderUtil;
 import su.plo.voice.api.client.PlasmoVoiceClient;
 import su.plo.voice.api.client.audio.device.DeviceManager;
 import su.plo.voice.api.client.audio.device.DeviceType;
 import su.plo.voice.api.client.audio.device.OutputDevice;
+import su.plo.voice.api.client.audio.source.ClientAudioSource;
+import su.plo.voice.client.BaseVoiceClient;
+import su.plo.voice.client.audio.capture.CaptureMetrics;
+import su.plo.voice.client.audio.capture.VoiceAudioCapture;
 import su.plo.voice.client.config.VoiceClientConfig;
 import su.plo.voice.client.gui.settings.VoiceSettingsScreen;
 import su.plo.voice.client.gui.settings.widget.ToggleButton;
+import su.plo.voice.universal.UGraphics;
+import su.plo.voice.universal.UMatrixStack;
 
 import java.util.List;
 
@@ -55,6 +63,7 @@ public final class AdvancedTabWidget extends TabWidget {
         ));
         addEntry(createStereoToMonoSources());
         addEntry(createPanning());
+        addEntry(createSoftwareMixer());
 
         addEntry(new CategoryEntry(MinecraftTextComponent.translatable("gui.plasmovoice.advanced.exponential_volume")));
         addEntry(createToggleEntry(
@@ -68,6 +77,11 @@ public final class AdvancedTabWidget extends TabWidget {
                 config.getAdvanced().getExponentialDistanceGain()
         ));
 
+        if (voiceClient.getAudioCapture() instanceof VoiceAudioCapture) {
+            addEntry(new CategoryEntry(MinecraftTextComponent.translatable("gui.plasmovoice.advanced.capture_metrics")));
+            addEntry(new CaptureMetricsEntry(((VoiceAudioCapture) voiceClient.getAudioCapture()).getMetrics()));
+        }
+
 //        addEntry(new CategoryEntry(MinecraftTextComponent.translatable("gui.plasmovoice.advanced.compressor")));
 //        addEntry(createIntSliderWidget(
 //                "gui.plasmovoice.advanced.compressor_threshold",
@@ -107,6 +121,73 @@ public final class AdvancedTabWidget extends TabWidget {
         );
     }
 
+    private OptionEntry<ToggleButton> createSoftwareMixer() {
+        // sources are recreated with the new output on the next packet
+        Runnable onUpdate = () -> {
+            voiceClient.getSourceManager().getSources().forEach(ClientAudioSource::closeAsync);
+            if (!config.getAdvanced().getSoftwareMixer().value() && voiceClient instanceof BaseVoiceClient) {
+                ((BaseVoiceClient) voiceClient).getSoftwareMixer().clear();
+            }
+        };
+
+        ToggleButton toggleButton = new ToggleButton(
+                config.getAdvanced().getSoftwareMixer(),
+                0,
+                0,
+                ELEMENT_WIDTH,
+                20,
+                (toggled) -> onUpdate.run()
+        );
+
+        return new OptionEntry<>(
+                MinecraftTextComponent.translatable("gui.plasmovoice.advanced.software_mixer"),
+                toggleButton,
+                config.getAdvanced().getSoftwareMixer(),
+                MinecraftTextComponent.translatable("gui.plasmovoice.advanced.software_mixer.tooltip"),
+                (button, element) -> onUpdate.run()
+        );
+    }
+
+    private final class CaptureMetricsEntry extends Entry {
+
+        private static final int LINES = 5;
+
+        private final CaptureMetrics metrics;
+
+        CaptureMetricsEntry(@NotNull CaptureMetrics metrics) {
+            super(LINES * (UGraphics.getFontHeight() + 2) + 4);
+
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void render(@NotNull UMatrixStack stack, int index, int x, int y, int entryWidth, int mouseX, int mouseY, boolean hovered, float delta) {
+            int lineY = y + 2;
+            lineY = renderLine(stack, x, lineY, MinecraftTextComponent.translatable(
+                    "gui.plasmovoice.advanced.capture_metrics.frames",
+                    String.valueOf(metrics.getCapturedFrames()),
+                    String.valueOf(metrics.getSentPackets())
+            ));
+            lineY = renderHistogram(stack, x, lineY, "frame_interval", metrics.getFrameInterval());
+            lineY = renderHistogram(stack, x, lineY, "encode_time", metrics.getEncodeTime());
+            lineY = renderHistogram(stack, x, lineY, "encrypt_time", metrics.getEncryptTime());
+            renderHistogram(stack, x, lineY, "send_time", metrics.getSendTime());
+        }
+
+        private int renderHistogram(@NotNull UMatrixStack stack, int x, int y,
+                                    @NotNull String name, @NotNull CaptureMetrics.Histogram histogram) {
+            return renderLine(stack, x, y, MinecraftTextComponent.translatable(
+                    "gui.plasmovoice.advanced.capture_metrics." + name,
+                    histogram.toString()
+            ));
+        }
+
+        private int renderLine(@NotNull UMatrixStack stack, int x, int y, @NotNull MinecraftTextComponent text) {
+            RenderUtil.drawString(stack, text, x, y, 0xA0A0A0);
+            return y + UGraphics.getFontHeight() + 2;
+        }
+    }
+
     private OptionEntry<ToggleButton> createPanning() {
         ToggleButton toggleButton = new ToggleButton(
                 config.getAdvanced().getPanning(),
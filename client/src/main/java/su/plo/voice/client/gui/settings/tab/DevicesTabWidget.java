@@ -83,6 +83,11 @@ public final class DevicesTabWidget extends TabWidget {
                 MinecraftTextComponent.translatable("gui.plasmovoice.devices.occlusion.tooltip"),
                 config.getVoice().getSoundOcclusion()
         ));
+        addEntry(createToggleEntry(
+                MinecraftTextComponent.translatable("gui.plasmovoice.devices.multi_ray_occlusion"),
+                MinecraftTextComponent.translatable("gui.plasmovoice.devices.multi_ray_occlusion.tooltip"),
+                config.getVoice().getMultiRayOcclusion()
+        ));
         addEntry(createToggleEntry(
                 MinecraftTextComponent.translatable("gui.plasmovoice.devices.directional_sources"),
                 MinecraftTextComponent.translatable("gui.plasmovoice.devices.directional_sources.tooltip"),
@@ -0,0 +1,19 @@
+package su.plo.voice.client.mixin;
+
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.block.state.BlockState;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import su.plo.voice.client.ModVoiceClient;
+
+@Mixin(ClientLevel.class)
+public abstract class MixinClientLevel {
+
+    @Inject(method = "sendBlockUpdated", at = @At(value = "HEAD"))
+    public void sendBlockUpdated(BlockPos pos, BlockState oldState, BlockState newState, int flags, CallbackInfo ci) {
+        ModVoiceClient.INSTANCE.getOcclusionService().onBlockChanged(pos);
+    }
+}
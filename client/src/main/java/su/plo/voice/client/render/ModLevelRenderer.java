@@ -8,6 +8,7 @@ import net.minecraft.client.renderer.LevelRenderer;
 import net.minecraft.core.BlockPos;
 import org.jetbrains.annotations.NotNull;
 import su.plo.voice.client.event.render.LevelRenderEvent;
+import su.plo.voice.client.event.render.LevelRenderStartEvent;
 import su.plo.voice.api.client.PlasmoVoiceClient;
 import su.plo.voice.proto.data.pos.Pos3d;
 
@@ -21,6 +22,10 @@ public final class ModLevelRenderer extends ModRenderer {
         super(voiceClient);
     }
 
+    public void renderStart() {
+        voiceClient.getEventBus().call(new LevelRenderStartEvent());
+    }
+
     public void render(@NotNull ClientLevel level, @NotNull PoseStack poseStack, @NotNull Camera camera, float delta) {
         if (!Objects.equals(this.level, level)) {
             this.level = level;
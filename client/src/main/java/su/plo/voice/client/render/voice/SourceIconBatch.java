@@ -0,0 +1,147 @@
+package su.plo.voice.client.render.voice;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.mojang.blaze3d.vertex.DefaultVertexFormat;
+import lombok.AllArgsConstructor;
+import net.minecraft.client.renderer.GameRenderer;
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.NotNull;
+import su.plo.lib.mod.client.render.RenderUtil;
+import su.plo.voice.universal.UGraphics;
+import su.plo.voice.universal.UMatrixStack;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Source icons collected during the main level pass
+ * <br/>
+ * Icons are drawn at once after the level is rendered,
+ * with a single buffer per texture for the depth tested pass and for the see-through pass
+ */
+final class SourceIconBatch {
+
+    private final Map<ResourceLocation, List<Icon>> iconsByTexture = Maps.newLinkedHashMap();
+    private int size;
+
+    /**
+     * Adds the icon transformed by the current pose of the stack
+     *
+     * @param alpha alpha of the depth tested quad
+     * @param seeThrough whether the icon should also be drawn through the blocks
+     */
+    public void add(@NotNull UMatrixStack stack,
+                    @NotNull ResourceLocation texture,
+                    int light,
+                    int alpha,
+                    boolean seeThrough) {
+        iconsByTexture.computeIfAbsent(texture, (key) -> Lists.newArrayList())
+                .add(new Icon(stack.fork(), light, alpha, seeThrough));
+        size++;
+    }
+
+    public void render() {
+        if (size == 0) return;
+
+        UGraphics.color4f(1F, 1F, 1F, 1F);
+        // TRANSLUCENT_TRANSPARENCY
+        UGraphics.enableBlend();
+        UGraphics.tryBlendFuncSeparate(
+                770, // SourceFactor.SRC_ALPHA
+                771, // DestFactor.ONE_MINUS_SRC_ALPHA
+                1, // SourceFactor.ONE
+                771 // DestFactor.ONE_MINUS_SRC_ALPHA
+        );
+        // LIGHT
+        RenderUtil.turnOnLightLayer();
+
+        renderPass(false);
+        renderPass(true);
+
+        // TRANSLUCENT_TRANSPARENCY
+        UGraphics.disableBlend();
+        RenderUtil.defaultBlendFunc();
+        UGraphics.depthMask(true);
+
+        UGraphics.enableDepth();
+        UGraphics.depthFunc(515);
+
+        clear();
+    }
+
+    public void clear() {
+        // lists are kept to avoid allocations in the next frames
+        iconsByTexture.values().forEach(List::clear);
+        if (iconsByTexture.size() > 64) iconsByTexture.clear();
+        this.size = 0;
+    }
+
+    private void renderPass(boolean seeThrough) {
+        if (seeThrough) {
+            UGraphics.disableDepth();
+            UGraphics.depthMask(false);
+        } else {
+            UGraphics.enableDepth();
+            UGraphics.depthMask(true);
+        }
+
+        for (Map.Entry<ResourceLocation, List<Icon>> entry : iconsByTexture.entrySet()) {
+            List<Icon> icons = entry.getValue();
+            if (icons.isEmpty()) continue;
+            if (seeThrough && icons.stream().noneMatch((icon) -> icon.seeThrough)) continue;
+
+            UGraphics.bindTexture(0, entry.getKey());
+
+            UGraphics buffer = UGraphics.getFromTessellator();
+
+            //#if MC>=11700
+            if (seeThrough) {
+                UGraphics.setShader(GameRenderer::getRendertypeTextSeeThroughShader);
+            } else {
+                UGraphics.setShader(GameRenderer::getRendertypeTextShader);
+            }
+
+            buffer.beginWithActiveShader(
+                    UGraphics.DrawMode.QUADS,
+                    DefaultVertexFormat.POSITION_COLOR_TEX_LIGHTMAP
+            );
+            //#endif
+
+            for (Icon icon : icons) {
+                if (seeThrough && !icon.seeThrough) continue;
+
+                int alpha = seeThrough ? 40 : icon.alpha;
+
+                vertex(icon.stack, buffer, 0F, 10F, 0F, 0F, 1F, alpha, icon.light);
+                vertex(icon.stack, buffer, 10F, 10F, 0F, 1F, 1F, alpha, icon.light);
+                vertex(icon.stack, buffer, 10F, 0F, 0F, 1F, 0F, alpha, icon.light);
+                vertex(icon.stack, buffer, 0F, 0F, 0F, 0F, 0F, alpha, icon.light);
+            }
+
+            buffer.drawDirect();
+        }
+    }
+
+    private void vertex(@NotNull UMatrixStack stack,
+                        @NotNull UGraphics buffer,
+                        float x, float y, float z, float u, float v, int alpha, int light) {
+        buffer.pos(stack, x, y, z);
+        buffer.color(255, 255, 255, alpha);
+        buffer.tex(u, v);
+        buffer.overlay(0, 10);
+        buffer.light(light & '\uffff', light >> 16 & '\uffff');
+        buffer.norm(stack, 0F, 0F, -1F);
+
+        buffer.endVertex();
+    }
+
+    @AllArgsConstructor
+    private static final class Icon {
+
+        private final UMatrixStack stack;
+        private final int light;
+        private final int alpha;
+        private final boolean seeThrough;
+    }
+}
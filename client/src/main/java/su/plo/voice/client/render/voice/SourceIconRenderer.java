@@ -1,13 +1,12 @@
 package su.plo.voice.client.render.voice;
 
-import com.mojang.blaze3d.vertex.DefaultVertexFormat;
+import com.google.common.collect.Maps;
 import net.minecraft.world.scores.Objective;
 import su.plo.voice.universal.UGraphics;
 import su.plo.voice.universal.UMatrixStack;
 import su.plo.voice.universal.UMinecraft;
 import lombok.NonNull;
 import net.minecraft.client.player.LocalPlayer;
-import net.minecraft.client.renderer.GameRenderer;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.player.Player;
@@ -24,16 +23,19 @@ import su.plo.voice.api.event.EventSubscribe;
 import su.plo.voice.client.config.VoiceClientConfig;
 import su.plo.voice.client.event.render.EntityRenderEvent;
 import su.plo.voice.client.event.render.LevelRenderEvent;
+import su.plo.voice.client.event.render.LevelRenderStartEvent;
 import su.plo.voice.client.event.render.PlayerRenderEvent;
 import su.plo.voice.client.gui.PlayerVolumeAction;
 import su.plo.voice.client.render.ModCamera;
+import su.plo.voice.proto.data.audio.source.EntitySourceInfo;
+import su.plo.voice.proto.data.audio.source.PlayerSourceInfo;
 import su.plo.voice.proto.data.audio.source.StaticSourceInfo;
 import su.plo.voice.proto.data.player.VoicePlayerInfo;
 import su.plo.voice.proto.data.pos.Pos3d;
 
-import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.UUID;
 
 //#if MC>=12002
 //$$ import net.minecraft.world.scores.DisplaySlot;
@@ -45,6 +47,12 @@ public final class SourceIconRenderer {
     private final VoiceClientConfig config;
     private final PlayerVolumeAction volumeAction;
 
+    private final SourceIconBatch batch = new SourceIconBatch();
+    private final SourceIndex index = new SourceIndex();
+    private boolean indexed;
+    // icons are batched only in the main level pass
+    private boolean levelRendering;
+
     public SourceIconRenderer(@NotNull PlasmoVoiceClient voiceClient,
                               @NotNull VoiceClientConfig config,
                               @NotNull PlayerVolumeAction volumeAction) {
@@ -54,31 +62,21 @@ public final class SourceIconRenderer {
     }
 
     @EventSubscribe
-    public void onLevelRender(@NotNull LevelRenderEvent event) {
-        if (isIconHidden() ||
-                !config.getOverlay().getShowStaticSourceIcons().value()
-        ) return;
-
-        for (ClientAudioSource<?> source : voiceClient.getSourceManager().getSources()) {
-            if (!(source.getSourceInfo() instanceof StaticSourceInfo)
-                    || !source.getSourceInfo().isIconVisible()
-                    || !source.isActivated()
-            ) continue;
+    public void onLevelRenderStart(@NotNull LevelRenderStartEvent event) {
+        this.levelRendering = true;
+    }
 
-            Optional<ClientSourceLine> sourceLine = voiceClient.getSourceLineManager()
-                    .getLineById(source.getSourceInfo().getLineId());
-            if (!sourceLine.isPresent()) return;
+    @EventSubscribe
+    public void onLevelRender(@NotNull LevelRenderEvent event) {
+        if (!isIconHidden() && config.getOverlay().getShowStaticSourceIcons().value()) {
+            collectStaticIcons(event);
+        }
 
-            Pos3d sourcePosition = ((StaticSourceInfo) source.getSourceInfo()).getPosition();
+        batch.render();
+        this.levelRendering = false;
 
-            renderStatic(
-                    event.getStack(),
-                    event.getCamera(),
-                    event.getLightSupplier().getLight(sourcePosition),
-                    new ResourceLocation(sourceLine.get().getIcon()),
-                    sourcePosition
-            );
-        }
+        // sources will be indexed again on the next frame
+        this.indexed = false;
     }
 
     @EventSubscribe
@@ -110,12 +108,6 @@ public final class SourceIconRenderer {
         } else if (playerInfo.get().isVoiceDisabled()) { // client disabled voicechat
             iconLocation = "plasmovoice:textures/icons/headset_disabled.png";
         } else {
-            Collection<ClientAudioSource<?>> sources = voiceClient.getSourceManager()
-                    .getPlayerSources(player.getUUID())
-                    .stream()
-                    .map(source -> (ClientAudioSource<?>) source) // todo: waytoodank
-                    .collect(Collectors.toList());;
-
             hasPercent = volumeAction.isShown(player);
             if (hasPercent) {
                 renderPercent(
@@ -127,9 +119,7 @@ public final class SourceIconRenderer {
                 );
             }
 
-            if (sources.isEmpty()) return;
-
-            ClientSourceLine highestSourceLine = getHighestActivatedSourceLine(sources);
+            ClientSourceLine highestSourceLine = getIndex().playerLines.get(player.getUUID());
             if (highestSourceLine == null) return;
 
             // speaking
@@ -159,13 +149,7 @@ public final class SourceIconRenderer {
 
         if (isIconHidden() || entity.isInvisibleTo(clientPlayer)) return;
 
-        Collection<ClientAudioSource<?>> sources = voiceClient.getSourceManager()
-                .getEntitySources(entity.getId())
-                .stream()
-                .map(source -> (ClientAudioSource<?>) source) // todo: waytoodank
-                .collect(Collectors.toList());
-
-        ClientSourceLine highestSourceLine = getHighestActivatedSourceLine(sources);
+        ClientSourceLine highestSourceLine = getIndex().entityLines.get(entity.getId());
         if (highestSourceLine == null) return;
 
         renderEntity(
@@ -191,45 +175,18 @@ public final class SourceIconRenderer {
         double distance = camera.position().distanceToSqr(position);
         if (distance > 4096D) return;
 
-        UGraphics buffer = UGraphics.getFromTessellator();
-
         stack.push();
 
         if (hasPercent) stack.translate(0D, 0.3D, 0D);
         translateEntityMatrix(stack, camera, entity, distance, hasLabel);
 
-        UGraphics.bindTexture(0, iconLocation);
-        UGraphics.color4f(1F, 1F, 1F, 1F);
-        // TRANSLUCENT_TRANSPARENCY
-        UGraphics.enableBlend();
-        UGraphics.tryBlendFuncSeparate(
-                770, // SourceFactor.SRC_ALPHA
-                771, // DestFactor.ONE_MINUS_SRC_ALPHA
-                1, // SourceFactor.ONE
-                771 // DestFactor.ONE_MINUS_SRC_ALPHA
-        );
-        // LIGHT
-        RenderUtil.turnOnLightLayer();
-
         if (entity.isDescending()) {
-            vertices(stack, buffer, 40, light, false);
+            addIcon(stack, iconLocation, light, 40, false);
         } else {
-            vertices(stack, buffer, 255, light, false);
-            vertices(stack, buffer, 40, light, true);
+            addIcon(stack, iconLocation, light, 255, true);
         }
 
         stack.pop();
-
-        // TRANSLUCENT_TRANSPARENCY
-        UGraphics.disableBlend();
-        RenderUtil.defaultBlendFunc();
-        UGraphics.depthMask(true);
-
-        // LIGHT
-//        RenderUtil.turnOffLightLayer();
-
-        UGraphics.enableDepth();
-        UGraphics.depthFunc(515);
     }
 
     private void renderPercent(@NonNull UMatrixStack stack,
@@ -325,31 +282,38 @@ public final class SourceIconRenderer {
         stack.translate(-5D, -1D, 0D);
     }
 
-    private void renderStatic(@NonNull UMatrixStack stack,
-                              @NonNull ModCamera camera,
-                              int light,
-                              @NotNull ResourceLocation iconLocation,
-                              @NotNull Pos3d position) {
+    private void collectStaticIcons(@NotNull LevelRenderEvent event) {
+        for (ClientAudioSource<?> source : voiceClient.getSourceManager().getSources()) {
+            if (!(source.getSourceInfo() instanceof StaticSourceInfo)
+                    || !source.getSourceInfo().isIconVisible()
+                    || !source.isActivated()
+            ) continue;
+
+            Optional<ClientSourceLine> sourceLine = voiceClient.getSourceLineManager()
+                    .getLineById(source.getSourceInfo().getLineId());
+            if (!sourceLine.isPresent()) continue;
+
+            Pos3d sourcePosition = ((StaticSourceInfo) source.getSourceInfo()).getPosition();
+
+            addStatic(
+                    event.getStack(),
+                    event.getCamera(),
+                    event.getLightSupplier().getLight(sourcePosition),
+                    new ResourceLocation(sourceLine.get().getIcon()),
+                    sourcePosition
+            );
+        }
+    }
+
+    private void addStatic(@NonNull UMatrixStack stack,
+                           @NonNull ModCamera camera,
+                           int light,
+                           @NotNull ResourceLocation iconLocation,
+                           @NotNull Pos3d position) {
         if (camera.position().distanceToSqr(new Vec3(
                 position.getX(), position.getY(), position.getZ()
         )) > 4096D) return;
 
-        // TEXTURE
-        UGraphics.bindTexture(0, iconLocation);
-        UGraphics.color4f(1F, 1F, 1F, 1F);
-        // TRANSLUCENT_TRANSPARENCY
-        UGraphics.enableBlend();
-        UGraphics.tryBlendFuncSeparate(
-                770, // SourceFactor.SRC_ALPHA
-                771, // DestFactor.ONE_MINUS_SRC_ALPHA
-                1, // SourceFactor.ONE
-                771 // DestFactor.ONE_MINUS_SRC_ALPHA
-        );
-        // LIGHT
-        RenderUtil.turnOnLightLayer();
-
-        UGraphics buffer = UGraphics.getFromTessellator();
-
         stack.push();
         stack.translate(
                 position.getX() - camera.position().x,
@@ -361,69 +325,24 @@ public final class SourceIconRenderer {
         stack.scale(-0.025F, -0.025F, 0.025F);
         stack.translate(-5D, 0D, 0D);
 
-
-        vertices(stack, buffer, 255, light, false);
-        vertices(stack, buffer, 40, light, true);
+        addIcon(stack, iconLocation, light, 255, true);
 
         stack.pop();
-
-        // TRANSLUCENT_TRANSPARENCY
-        UGraphics.disableBlend();
-        RenderUtil.defaultBlendFunc();
-        UGraphics.depthMask(true);
-
-        // LIGHT
-//        RenderUtil.turnOffLightLayer();
-
-        UGraphics.enableDepth();
-        UGraphics.depthFunc(515);
-    }
-
-    private void vertices(@NonNull UMatrixStack stack,
-                          @NonNull UGraphics buffer,
-                          int alpha,
-                          int light,
-                          boolean seeThrough) {
-        if (seeThrough) {
-            UGraphics.disableDepth();
-            UGraphics.depthMask(false);
-        } else {
-            UGraphics.enableDepth();
-            UGraphics.depthMask(true);
-        }
-
-        //#if MC>=11700
-        if (seeThrough) {
-            UGraphics.setShader(GameRenderer::getRendertypeTextSeeThroughShader);
-        } else {
-            UGraphics.setShader(GameRenderer::getRendertypeTextShader);
-        }
-
-        buffer.beginWithActiveShader(
-                UGraphics.DrawMode.QUADS,
-                DefaultVertexFormat.POSITION_COLOR_TEX_LIGHTMAP
-        );
-        //#endif
-
-        vertex(stack, buffer, 0F, 10F, 0F, 0F, 1F, alpha, light);
-        vertex(stack, buffer, 10F, 10F, 0F, 1F, 1F, alpha, light);
-        vertex(stack, buffer, 10F, 0F, 0F, 1F, 0F, alpha, light);
-        vertex(stack, buffer, 0F, 0F, 0F, 0F, 0F, alpha, light);
-
-        buffer.drawDirect();
     }
 
-    private void vertex(@NonNull UMatrixStack stack,
-                        @NonNull UGraphics buffer,
-                        float x, float y, float z, float u, float v, int alpha, int light) {
-        buffer.pos(stack, x, y, z);
-        buffer.color(255, 255, 255, alpha);
-        buffer.tex(u, v);
-        buffer.overlay(0, 10);
-        buffer.light(light & '\uffff', light >> 16 & '\uffff');
-        buffer.norm(stack, 0F, 0F, -1F);
-
-        buffer.endVertex();
+    /**
+     * Adds the icon to the batch drawn after the level is rendered
+     * <br/>
+     * Icons rendered outside the main level pass (e.g. GUI previews or shader shadow passes)
+     * are drawn immediately, because the batch would draw them with the level pose
+     */
+    private void addIcon(@NotNull UMatrixStack stack,
+                         @NotNull ResourceLocation iconLocation,
+                         int light,
+                         int alpha,
+                         boolean seeThrough) {
+        batch.add(stack, iconLocation, light, alpha, seeThrough);
+        if (!levelRendering) batch.render();
     }
 
     private boolean isIconHidden() {
@@ -431,22 +350,51 @@ public final class SourceIconRenderer {
         return showIcons == 2 || (UMinecraft.getSettings().hideGui && showIcons == 0);
     }
 
-    private ClientSourceLine getHighestActivatedSourceLine(@NotNull Collection<ClientAudioSource<?>> sources) {
-        ClientSourceLine highestSourceLine = null;
-        for (ClientAudioSource<?> source : sources) {
+    private SourceIndex getIndex() {
+        if (indexed) return index;
+        this.indexed = true;
+
+        index.playerLines.clear();
+        index.entityLines.clear();
+
+        for (ClientAudioSource<?> source : voiceClient.getSourceManager().getSources()) {
             if (!source.isActivated() || !source.getSourceInfo().isIconVisible()) continue;
 
             Optional<ClientSourceLine> sourceLine = voiceClient.getSourceLineManager()
                     .getLineById(source.getSourceInfo().getLineId());
             if (!sourceLine.isPresent()) continue;
 
-            if (highestSourceLine == null ||
-                    highestSourceLine.getWeight() < sourceLine.get().getWeight()
-            ) {
-                highestSourceLine = sourceLine.get();
+            if (source.getSourceInfo() instanceof PlayerSourceInfo) {
+                PlayerSourceInfo sourceInfo = (PlayerSourceInfo) source.getSourceInfo();
+                index.playerLines.merge(
+                        sourceInfo.getPlayerInfo().getPlayerId(),
+                        sourceLine.get(),
+                        SourceIconRenderer::getHighestSourceLine
+                );
+            } else if (source.getSourceInfo() instanceof EntitySourceInfo) {
+                EntitySourceInfo sourceInfo = (EntitySourceInfo) source.getSourceInfo();
+                index.entityLines.merge(
+                        sourceInfo.getEntityId(),
+                        sourceLine.get(),
+                        SourceIconRenderer::getHighestSourceLine
+                );
             }
         }
 
-        return highestSourceLine;
+        return index;
+    }
+
+    private static ClientSourceLine getHighestSourceLine(@NotNull ClientSourceLine first,
+                                                         @NotNull ClientSourceLine second) {
+        return first.getWeight() < second.getWeight() ? second : first;
+    }
+
+    /**
+     * Highest activated source lines of players and entities, built once per frame
+     */
+    private static final class SourceIndex {
+
+        private final Map<UUID, ClientSourceLine> playerLines = Maps.newHashMap();
+        private final Map<Integer, ClientSourceLine> entityLines = Maps.newHashMap();
     }
 }
@@ -29,6 +29,8 @@ public final class VoiceDistanceVisualizer implements DistanceVisualizer {
 
     private static final int SPHERE_STACK = 18;
     private static final int SPHERE_SLICE = 36;
+    // triangle strip of the unit sphere, entries are rendered by scaling it to the radius
+    private static final float[] SPHERE_VERTICES = createSphereVertices();
 
     private final PlasmoVoiceClient voiceClient;
     private final VoiceClientConfig config;
@@ -139,33 +141,12 @@ public final class VoiceDistanceVisualizer implements DistanceVisualizer {
         int g = (entry.color() >> 8) & 0xFF;
         int b = entry.color() & 0xFF;
 
-        float r0, r1, alpha0, alpha1, x0, x1, y0, y1, z0, z1, beta;
-        float stackStep = (float) (Math.PI / SPHERE_STACK);
-        float sliceStep = (float) (Math.PI / SPHERE_SLICE);
-        for (int i = 0; i < SPHERE_STACK; ++i) {
-            alpha0 = (float) (-Math.PI / 2 + i * stackStep);
-            alpha1 = alpha0 + stackStep;
-            r0 = (float) (entry.radius() * Math.cos(alpha0));
-            r1 = (float) (entry.radius() * Math.cos(alpha1));
-
-            y0 = (float) (entry.radius() * Math.sin(alpha0));
-            y1 = (float) (entry.radius() * Math.sin(alpha1));
+        stack.scale(entry.radius(), entry.radius(), entry.radius());
 
-            for (int j = 0; j < (SPHERE_SLICE << 1); ++j) {
-                beta = j * sliceStep;
-                x0 = (float) (r0 * Math.cos(beta));
-                x1 = (float) (r1 * Math.cos(beta));
-
-                z0 = (float) (-r0 * Math.sin(beta));
-                z1 = (float) (-r1 * Math.sin(beta));
-
-                buffer.pos(stack, x0, y0, z0)
-                        .color(r, g, b, entry.alpha())
-                        .endVertex();
-                buffer.pos(stack, x1, y1, z1)
-                        .color(r, g, b, entry.alpha())
-                        .endVertex();
-            }
+        for (int i = 0; i < SPHERE_VERTICES.length; i += 3) {
+            buffer.pos(stack, SPHERE_VERTICES[i], SPHERE_VERTICES[i + 1], SPHERE_VERTICES[i + 2])
+                    .color(r, g, b, entry.alpha())
+                    .endVertex();
         }
 
         buffer.drawDirect();
@@ -182,6 +163,38 @@ public final class VoiceDistanceVisualizer implements DistanceVisualizer {
         UGraphics.depthMask(true);
     }
 
+    private static float[] createSphereVertices() {
+        float[] vertices = new float[SPHERE_STACK * (SPHERE_SLICE << 1) * 2 * 3];
+        int index = 0;
+
+        float r0, r1, alpha0, alpha1, y0, y1, beta;
+        float stackStep = (float) (Math.PI / SPHERE_STACK);
+        float sliceStep = (float) (Math.PI / SPHERE_SLICE);
+        for (int i = 0; i < SPHERE_STACK; ++i) {
+            alpha0 = (float) (-Math.PI / 2 + i * stackStep);
+            alpha1 = alpha0 + stackStep;
+            r0 = (float) Math.cos(alpha0);
+            r1 = (float) Math.cos(alpha1);
+
+            y0 = (float) Math.sin(alpha0);
+            y1 = (float) Math.sin(alpha1);
+
+            for (int j = 0; j < (SPHERE_SLICE << 1); ++j) {
+                beta = j * sliceStep;
+
+                vertices[index++] = (float) (r0 * Math.cos(beta));
+                vertices[index++] = y0;
+                vertices[index++] = (float) (-r0 * Math.sin(beta));
+
+                vertices[index++] = (float) (r1 * Math.cos(beta));
+                vertices[index++] = y1;
+                vertices[index++] = (float) (-r1 * Math.sin(beta));
+            }
+        }
+
+        return vertices;
+    }
+
     @Data
     @Accessors(fluent = true)
     private static final class VisualizeEntry {
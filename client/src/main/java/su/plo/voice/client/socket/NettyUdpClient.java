@@ -46,8 +46,9 @@ public final class NettyUdpClient implements UdpClient {
 
     @Getter
     private boolean closed;
+    // set on the voice connection bootstrap thread, see ServerInfoInitializedEvent
     @Getter
-    private boolean connected;
+    private volatile boolean connected;
     @Getter
     private boolean timedOut;
 
@@ -43,6 +43,7 @@ class AlOutputDevice
     OutputDevice<AlSource> {
 
     val coroutineScope: CoroutineScope
+    val streamScheduler: AlStreamScheduler
 
     private val listener: AlListener = AlListener()
 
@@ -69,6 +70,7 @@ class AlOutputDevice
             if (thread.priority != Thread.NORM_PRIORITY) thread.priority = Thread.NORM_PRIORITY
             thread
         }.asCoroutineDispatcher())
+        streamScheduler = AlStreamScheduler(coroutineScope)
 
         open()
     }
@@ -232,6 +234,7 @@ class AlOutputDevice
             )
         )
         listener.start()
+        streamScheduler.start()
 
         voiceClient.eventBus.call(DeviceOpenEvent(this@AlOutputDevice))
     }
@@ -239,6 +242,7 @@ class AlOutputDevice
     private suspend fun closeSync() {
         closeSources()
         listener.stop()
+        streamScheduler.stop()
 
         EXTThreadLocalContext.alcSetThreadContext(0L)
 
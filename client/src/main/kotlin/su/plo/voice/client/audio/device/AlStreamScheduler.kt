@@ -0,0 +1,132 @@
+package su.plo.voice.client.audio.device
+
+import kotlinx.coroutines.*
+import kotlinx.coroutines.channels.Channel
+import su.plo.voice.BaseVoice
+import su.plo.voice.client.audio.device.source.StreamAlSource
+import java.util.concurrent.ConcurrentLinkedQueue
+
+/**
+ * Services all stream sources of the device from the single coroutine
+ *
+ * Only sources with queued samples or buffers in flight are serviced every tick,
+ * idle sources are parked until [wake] is called by the source write
+ *
+ * Source params updated from other threads are applied in one pass at the start of the tick
+ *
+ * All methods except [wake] must be called in the device context
+ */
+class AlStreamScheduler(private val coroutineScope: CoroutineScope) {
+
+    private val sources: MutableSet<StreamAlSource> = LinkedHashSet()
+    private val active: MutableSet<StreamAlSource> = LinkedHashSet()
+    private val tickSources: MutableList<StreamAlSource> = ArrayList()
+
+    private val pending = ConcurrentLinkedQueue<StreamAlSource>()
+    private val dirty = ConcurrentLinkedQueue<StreamAlSource>()
+    private val wakeup = Channel<Unit>(Channel.CONFLATED)
+
+    private var job: Job? = null
+    private var lastTimeoutCheck = 0L
+
+    val sourcesCount: Int
+        get() = sources.size
+
+    val activeSourcesCount: Int
+        get() = active.size
+
+    fun start() {
+        job = coroutineScope.launch { run() }
+    }
+
+    fun stop() {
+        job?.cancel()
+        job = null
+
+        sources.clear()
+        active.clear()
+        pending.clear()
+        dirty.clear()
+    }
+
+    fun register(source: StreamAlSource) {
+        sources.add(source)
+        active.add(source)
+    }
+
+    fun unregister(source: StreamAlSource) {
+        sources.remove(source)
+        active.remove(source)
+    }
+
+    /**
+     * Schedules parked source to be serviced on the next tick
+     *
+     * Can be called from any thread
+     */
+    fun wake(source: StreamAlSource) {
+        pending.offer(source)
+        wakeup.trySend(Unit)
+    }
+
+    /**
+     * Schedules source params to be applied on the next tick
+     *
+     * Can be called from any thread
+     */
+    fun markDirty(source: StreamAlSource) {
+        dirty.offer(source)
+        wakeup.trySend(Unit)
+    }
+
+    private suspend fun run() {
+        while (true) {
+            if (active.isEmpty() && pending.isEmpty() && dirty.isEmpty()) {
+                withTimeoutOrNull(TIMEOUT_CHECK_INTERVAL_MS) { wakeup.receive() }
+            } else {
+                delay(TICK_MS)
+            }
+
+            while (true) {
+                val source = dirty.poll() ?: break
+                source.applyParams()
+            }
+
+            while (true) {
+                val source = pending.poll() ?: break
+                if (sources.contains(source)) active.add(source)
+            }
+
+            // source can be stopped or closed by the event listeners while servicing
+            tickSources.addAll(active)
+            for (source in tickSources) {
+                if (!source.service() && source.park()) {
+                    active.remove(source)
+                }
+            }
+            tickSources.clear()
+
+            val now = System.currentTimeMillis()
+            if (now - lastTimeoutCheck >= TIMEOUT_CHECK_INTERVAL_MS) {
+                lastTimeoutCheck = now
+                closeTimedOut(now)
+            }
+        }
+    }
+
+    private suspend fun closeTimedOut(now: Long) {
+        tickSources.addAll(sources)
+        for (source in tickSources) {
+            if (!source.isTimedOut(now)) continue
+
+            BaseVoice.DEBUG_LOGGER.log("Stream timed out. Closing...")
+            source.close()
+        }
+        tickSources.clear()
+    }
+
+    companion object {
+        private const val TICK_MS = 5L
+        private const val TIMEOUT_CHECK_INTERVAL_MS = 1000L
+    }
+}
@@ -7,6 +7,7 @@ import su.plo.voice.api.client.PlasmoVoiceClient
 import su.plo.voice.api.client.audio.device.AudioDevice
 import su.plo.voice.api.client.audio.device.DeviceException
 import su.plo.voice.api.client.audio.filter.AudioFilter
+import su.plo.voice.api.util.AudioUtil
 import java.util.function.Predicate
 import javax.sound.sampled.AudioFormat
 
@@ -23,6 +24,9 @@ abstract class BaseAudioDevice(
         Multimaps.newListMultimap(HashMap<AudioFilter.Priority, Collection<AudioFilter>>()) { ArrayList() }
     )
 
+    // float working buffer of the filter chain, filters are processed by the capture and source threads
+    private val filterBuffer = ThreadLocal.withInitial { FloatArray(0) }
+
     @Throws(DeviceException::class)
     override fun reload() {
         if (!isOpen()) throw DeviceException("Device is not open")
@@ -51,17 +55,37 @@ abstract class BaseAudioDevice(
         filters.values()
 
     override fun processFilters(samples: ShortArray, excludeFilter: Predicate<AudioFilter>?): ShortArray {
-        val channels = format.channels
+        if (filters.values().none { shouldProcess(it, excludeFilter) }) return samples
+
+        var buffer = filterBuffer.get()
+        if (buffer.size < samples.size) {
+            buffer = FloatArray(samples.size)
+            filterBuffer.set(buffer)
+        }
+
+        AudioUtil.shortsToFloats(samples, 0, samples.size, buffer, 0)
+        val length = processFilters(buffer, samples.size, excludeFilter)
+
+        return ShortArray(length).also {
+            AudioUtil.floatsToShorts(buffer, 0, length, it, 0)
+        }
+    }
 
-        var samples = samples
+    override fun processFilters(samples: FloatArray, length: Int, excludeFilter: Predicate<AudioFilter>?): Int {
+        var processedLength = length
         for (filter in filters.values()) {
-            if (!filter.isEnabled) continue
-            if (filter.supportedChannels > 0 && filter.supportedChannels != channels) continue
-            if (excludeFilter?.test(filter) == true) continue
+            if (!shouldProcess(filter, excludeFilter)) continue
 
-            samples = filter.process(samples)
+            processedLength = filter.process(samples, processedLength)
         }
-        return samples
+        return processedLength
+    }
+
+    private fun shouldProcess(filter: AudioFilter, excludeFilter: Predicate<AudioFilter>?): Boolean {
+        if (!filter.isEnabled) return false
+        if (filter.supportedChannels > 0 && filter.supportedChannels != format.channels) return false
+
+        return excludeFilter?.test(filter) != true
     }
 
     @Throws(DeviceException::class)
@@ -0,0 +1,110 @@
+package su.plo.voice.client.audio.device.source
+
+import org.lwjgl.system.MemoryUtil
+import java.nio.Buffer
+import java.nio.ByteBuffer
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Fixed-size ring of reusable direct buffers used to queue samples for OpenAL
+ *
+ * Slots are allocated on the first use and reused afterwards,
+ * so native memory is capped by [capacity] frames per source and freed on [close]
+ */
+internal class AlBufferRing(val capacity: Int) {
+
+    private val buffers = arrayOfNulls<ByteBuffer>(capacity)
+
+    private var head = 0
+    private var closed = false
+
+    var size = 0
+        @Synchronized get
+        private set
+
+    /**
+     * Copies remaining samples to the next free slot
+     *
+     * @return true if samples were queued
+     */
+    @Synchronized
+    fun offer(samples: ByteBuffer): Boolean {
+        if (closed || size == capacity) return false
+
+        val index = (head + size) % capacity
+        val buffer = getOrAllocate(index, samples.remaining())
+        buffer.put(samples)
+        (buffer as Buffer).flip()
+
+        size++
+        return true
+    }
+
+    /**
+     * @return the oldest queued buffer without removing it
+     */
+    @Synchronized
+    fun peek(): ByteBuffer? =
+        if (size == 0) null
+        else buffers[head]
+
+    /**
+     * Removes the oldest queued buffer, so its slot can be reused
+     */
+    @Synchronized
+    fun remove() {
+        if (size == 0) return
+
+        head = (head + 1) % capacity
+        size--
+    }
+
+    @Synchronized
+    fun clear() {
+        head = 0
+        size = 0
+    }
+
+    @Synchronized
+    fun close() {
+        if (closed) return
+        closed = true
+        clear()
+
+        for (i in buffers.indices) {
+            val buffer = buffers[i] ?: continue
+            ALLOCATED_BYTES.addAndGet(-buffer.capacity().toLong())
+            MemoryUtil.memFree(buffer)
+            buffers[i] = null
+        }
+    }
+
+    private fun getOrAllocate(index: Int, size: Int): ByteBuffer {
+        val buffer = buffers[index]
+        if (buffer != null && buffer.capacity() >= size) {
+            (buffer as Buffer).clear()
+            return buffer
+        }
+
+        val allocated =
+            if (buffer == null) MemoryUtil.memAlloc(size)
+            else MemoryUtil.memRealloc(buffer, size)
+
+        ALLOCATED_BYTES.addAndGet(allocated.capacity().toLong() - (buffer?.capacity() ?: 0))
+        (allocated as Buffer).clear()
+        buffers[index] = allocated
+
+        return allocated
+    }
+
+    companion object {
+
+        private val ALLOCATED_BYTES = AtomicLong()
+
+        /**
+         * @return native memory currently allocated by all rings in bytes
+         */
+        @JvmStatic
+        fun allocatedBytes(): Long = ALLOCATED_BYTES.get()
+    }
+}
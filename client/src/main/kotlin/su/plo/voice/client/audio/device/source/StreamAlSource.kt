@@ -1,10 +1,8 @@
 package su.plo.voice.client.audio.device.source
 
-import kotlinx.coroutines.*
 import kotlinx.coroutines.future.future
 import org.apache.logging.log4j.LogManager
 import org.lwjgl.openal.AL11
-import org.lwjgl.system.MemoryUtil
 import su.plo.voice.BaseVoice
 import su.plo.voice.api.client.PlasmoVoiceClient
 import su.plo.voice.api.client.audio.device.DeviceException
@@ -12,11 +10,10 @@ import su.plo.voice.api.client.audio.device.source.AlSource
 import su.plo.voice.api.client.event.audio.device.source.*
 import su.plo.voice.client.audio.AlUtil
 import su.plo.voice.client.audio.device.AlOutputDevice
-import java.nio.Buffer
 import java.nio.ByteBuffer
 import java.util.concurrent.CompletableFuture
-import java.util.concurrent.LinkedBlockingQueue
 import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicReference
 
 class StreamAlSource private constructor(
     client: PlasmoVoiceClient,
@@ -29,16 +26,22 @@ class StreamAlSource private constructor(
     private var closeTimeoutMs = 25000L
 
     private val numBuffers: Int
-    private val queue = LinkedBlockingQueue<ByteBuffer>()
+    private val queue = AlBufferRing(MAX_QUEUE_SIZE)
     private val isStreaming = AtomicBoolean(false)
     private val emptyBuffer: ByteArray
 
-    private var job: Job? = null
     private lateinit var buffers: IntArray
     private val availableBuffer = IntArray(1)
     private val emptyFilled = AtomicBoolean(false)
+    @Volatile
     private var lastBufferTime: Long = 0
 
+    // true if the source is serviced by the device stream scheduler
+    private val scheduled = AtomicBoolean(false)
+
+    // latest params which are not applied yet
+    private val pendingParams = AtomicReference<SourceParams?>(null)
+
     init {
         this.numBuffers = if (numBuffers == 0) DEFAULT_NUM_BUFFERS else numBuffers
         emptyBuffer = ByteArray(device.bufferSize)
@@ -58,11 +61,9 @@ class StreamAlSource private constructor(
             return
         } else if (isStreaming) {
             return
-        } else if (job?.isActive == false) {
-            stop()
         }
 
-        startStreamThread()
+        startStreaming()
     }
 
     override fun stop() {
@@ -90,22 +91,49 @@ class StreamAlSource private constructor(
             return
         }
 
-        if (queue.size > 100) {
+        if (queue.size >= queue.capacity) {
             BaseVoice.DEBUG_LOGGER.log("Queue overflow, dropping samples")
             return
         }
 
-        val buffer = MemoryUtil.memAlloc(samples.size)
-        buffer.put(samples)
-        (buffer as Buffer).flip()
-
+        // listeners are called before the ring is locked,
+        // so a slow listener doesn't block the stream scheduler
+        val buffer = ByteBuffer.wrap(if (samples === emptyBuffer) samples.copyOf() else samples)
         if (!client.eventBus.call(AlSourceWriteEvent(this, buffer))) return
 
-        queue.offer(buffer)
+        if (!queue.offer(buffer)) return
+
         if (samples != emptyBuffer) {
             emptyFilled.set(false)
             lastBufferTime = System.currentTimeMillis()
         }
+
+        if (scheduled.compareAndSet(false, true)) {
+            device.streamScheduler.wake(this)
+        }
+    }
+
+    /**
+     * Schedules gain, relative flag and position to be applied on the next streaming tick
+     *
+     * Can be called from any thread, only the latest params are applied
+     */
+    fun updateParamsAsync(volume: Float, relative: Boolean, position: FloatArray) {
+        if (pendingParams.getAndSet(SourceParams(volume, relative, position)) == null) {
+            device.streamScheduler.markDirty(this)
+        }
+    }
+
+    internal fun applyParams() {
+        val params = pendingParams.getAndSet(null) ?: return
+        if (isClosed) return
+
+        this.volume = params.volume
+        setInt(
+            0x202, // AL_SOURCE_RELATIVE
+            if (params.relative) 1 else 0
+        )
+        setFloatArray(0x1004, params.position) // AL_POSITION
     }
 
     override suspend fun close() {
@@ -126,6 +154,7 @@ class StreamAlSource private constructor(
 
     private fun closeSync() {
         stop()
+        device.streamScheduler.unregister(this)
 
         client.eventBus.call(AlSourceClosedEvent(this@StreamAlSource))
 
@@ -137,84 +166,108 @@ class StreamAlSource private constructor(
         AL11.alDeleteSources(intArrayOf(pointer))
         AlUtil.checkErrors("Delete source")
 
+        queue.close()
+        BaseVoice.DEBUG_LOGGER.log("Stream buffers allocated: {} bytes", AlBufferRing.allocatedBytes())
+
         pointer = 0
     }
 
-    private fun startStreamThread() {
+    private fun startStreaming() {
         isStreaming.set(true)
-        val alSource = this
 
-        device.coroutineScope.launch {
-            buffers = IntArray(numBuffers)
-            AL11.alGenBuffers(buffers)
-            AlUtil.checkErrors("Source gen buffers")
+        buffers = IntArray(numBuffers)
+        AL11.alGenBuffers(buffers)
+        AlUtil.checkErrors("Source gen buffers")
 
-            queueWithEmptyBuffers()
-            fillQueue()
+        queueWithEmptyBuffers()
+        fillQueue()
 
-            lastBufferTime = System.currentTimeMillis()
-            availableBuffer[0] = -1
+        lastBufferTime = System.currentTimeMillis()
+        availableBuffer[0] = -1
 
-            while (isStreaming.get()) {
-                val queueSize = queue.size
-
-                var processedBuffers = getInt(AL11.AL_BUFFERS_PROCESSED)
-                AlUtil.checkErrors("Get processed buffers")
-
-                while (processedBuffers > 0 || availableBuffer[0] != -1) {
-                    if (availableBuffer[0] == -1) {
-                        AL11.alSourceUnqueueBuffers(pointer, availableBuffer)
-                        AlUtil.checkErrors("Unqueue buffer")
-
-                        // Bits can be 0 if the format or parameters are corrupt, avoid division by zero
-                        val bits = AL11.alGetBufferi(availableBuffer[0], AL11.AL_BITS)
-                        AlUtil.checkErrors("Source get buffer int")
-                        if (bits == 0) {
-                            LOGGER.warn("Corrupted stream")
-                            continue
-                        }
-
-                        if (availableBuffer[0] != -1) {
-                            val unqueuedEvent = AlSourceBufferUnqueuedEvent(alSource, availableBuffer[0])
-                            client.eventBus.call(unqueuedEvent)
-                        }
-                    }
-
-                    if (availableBuffer[0] != -1 && fillAndPushBuffer(availableBuffer[0])) {
-                        availableBuffer[0] = -1
-                        processedBuffers--
-                    } else {
-                        break
-                    }
-                }
-                val state = state
-                if (state == AlSource.State.STOPPED && queueSize == 0 && !emptyFilled.get()) {
-                    removeProcessedBuffers()
-                    availableBuffer[0] = -1
-
-                    queueWithEmptyBuffers()
-                    fillQueue()
-
-                    client.eventBus.call(AlStreamSourceStoppedEvent(alSource))
-                    play()
-                    AL11.alSourcePlay(pointer)
-                    AlUtil.checkErrors("Source play")
-                } else if (state != AlSource.State.PLAYING && state != AlSource.State.PAUSED && queueSize > 0) {
-                    AL11.alSourcePlay(pointer)
-                    AlUtil.checkErrors("Source play")
+        scheduled.set(true)
+        device.streamScheduler.register(this)
+    }
+
+    /**
+     * Refills processed buffers and restarts the stopped source
+     *
+     * Called by the device stream scheduler in the device context
+     *
+     * @return true if the source still has samples to play and should be serviced on the next tick
+     */
+    internal fun service(): Boolean {
+        if (!isStreaming.get()) return false
+
+        val queueSize = queue.size
+
+        var processedBuffers = getInt(AL11.AL_BUFFERS_PROCESSED)
+        AlUtil.checkErrors("Get processed buffers")
+
+        while (processedBuffers > 0 || availableBuffer[0] != -1) {
+            if (availableBuffer[0] == -1) {
+                AL11.alSourceUnqueueBuffers(pointer, availableBuffer)
+                AlUtil.checkErrors("Unqueue buffer")
+
+                // Bits can be 0 if the format or parameters are corrupt, avoid division by zero
+                val bits = AL11.alGetBufferi(availableBuffer[0], AL11.AL_BITS)
+                AlUtil.checkErrors("Source get buffer int")
+                if (bits == 0) {
+                    LOGGER.warn("Corrupted stream")
+                    continue
                 }
 
-                if (closeTimeoutMs > 0L && System.currentTimeMillis() - lastBufferTime > closeTimeoutMs) {
-                    BaseVoice.DEBUG_LOGGER.log("Stream timed out. Closing...")
-                    close()
-                    break
+                if (availableBuffer[0] != -1) {
+                    val unqueuedEvent = AlSourceBufferUnqueuedEvent(this, availableBuffer[0])
+                    client.eventBus.call(unqueuedEvent)
                 }
+            }
 
-                delay(5L)
+            if (availableBuffer[0] != -1 && fillAndPushBuffer(availableBuffer[0])) {
+                availableBuffer[0] = -1
+                processedBuffers--
+            } else {
+                break
             }
         }
+
+        val state = state
+        if (state == AlSource.State.STOPPED && queueSize == 0 && !emptyFilled.get()) {
+            removeProcessedBuffers()
+            availableBuffer[0] = -1
+
+            queueWithEmptyBuffers()
+            fillQueue()
+
+            client.eventBus.call(AlStreamSourceStoppedEvent(this))
+            play()
+            AL11.alSourcePlay(pointer)
+            AlUtil.checkErrors("Source play")
+        } else if (state != AlSource.State.PLAYING && state != AlSource.State.PAUSED && queueSize > 0) {
+            AL11.alSourcePlay(pointer)
+            AlUtil.checkErrors("Source play")
+        }
+
+        // the source is idle once the written samples were played and replaced with the empty buffers
+        return isStreaming.get() && (queue.size > 0 || !emptyFilled.get())
     }
 
+    /**
+     * Marks the source as parked, so the next write will wake it up
+     *
+     * @return false if samples were written while parking and source should stay active
+     */
+    internal fun park(): Boolean {
+        scheduled.set(false)
+        if (!isStreaming.get() || queue.size == 0) return true
+
+        // if CAS fails, the writer has already woken up the source
+        return !scheduled.compareAndSet(false, true)
+    }
+
+    internal fun isTimedOut(now: Long): Boolean =
+        isStreaming.get() && closeTimeoutMs > 0L && now - lastBufferTime > closeTimeoutMs
+
     private fun queueWithEmptyBuffers() {
         for (i in 0 until numBuffers) {
             write(emptyBuffer)
@@ -229,15 +282,20 @@ class StreamAlSource private constructor(
     }
 
     private fun fillAndPushBuffer(buffer: Int): Boolean {
-        val byteBuffer = queue.poll() ?: return false
+        val byteBuffer = queue.peek() ?: return false
 
-        AL11.alBufferData(buffer, format, byteBuffer, device.format.sampleRate.toInt())
-        if (AlUtil.checkErrors("Assigning buffer data")) return false
+        // alBufferData copies the data, so the slot can be reused right after it
+        try {
+            AL11.alBufferData(buffer, format, byteBuffer, device.format.sampleRate.toInt())
+            if (AlUtil.checkErrors("Assigning buffer data")) return false
 
-        AL11.alSourceQueueBuffers(pointer, intArrayOf(buffer))
-        if (AlUtil.checkErrors("Queue buffer data")) return false
+            AL11.alSourceQueueBuffers(pointer, intArrayOf(buffer))
+            if (AlUtil.checkErrors("Queue buffer data")) return false
 
-        client.eventBus.call(AlSourceBufferQueuedEvent(this, byteBuffer, buffer))
+            client.eventBus.call(AlSourceBufferQueuedEvent(this, byteBuffer, buffer))
+        } finally {
+            queue.remove()
+        }
 
         return true
     }
@@ -256,10 +314,17 @@ class StreamAlSource private constructor(
         }
     }
 
+    private class SourceParams(
+        val volume: Float,
+        val relative: Boolean,
+        val position: FloatArray
+    )
+
     companion object {
 
         private val LOGGER = LogManager.getLogger(StreamAlSource::class.java)
         private const val DEFAULT_NUM_BUFFERS = 8
+        private const val MAX_QUEUE_SIZE = 100
 
         @JvmStatic
         fun create(device: AlOutputDevice, client: PlasmoVoiceClient, stereo: Boolean, numBuffers: Int): AlSource {
@@ -0,0 +1,74 @@
+package su.plo.voice.client.audio.mixer
+
+import net.minecraft.world.phys.Vec3
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Input of the [SoftwareMixer]
+ *
+ * Samples are written by the audio source and consumed by the mixer one frame per tick
+ */
+class MixerChannel internal constructor(
+    private val mixer: SoftwareMixer,
+    val stereo: Boolean,
+    private val onTimeout: () -> Unit
+) {
+
+    private val frames = ConcurrentLinkedQueue<ShortArray>()
+    private val closed = AtomicBoolean(false)
+
+    @Volatile
+    var gain: Float = 1f
+
+    /**
+     * Source position used for panning, null means source is played without panning
+     */
+    @Volatile
+    var position: Vec3? = null
+
+    @Volatile
+    internal var lastWrite = System.currentTimeMillis()
+        private set
+
+    /**
+     * Queues samples to be mixed
+     *
+     * Samples are copied, so the caller can reuse the array
+     */
+    fun write(samples: ShortArray) {
+        if (closed.get()) return
+
+        // drop the oldest frame to keep the latency low
+        if (frames.size >= MAX_QUEUED_FRAMES) frames.poll()
+
+        frames.offer(samples.copyOf())
+        lastWrite = System.currentTimeMillis()
+
+        mixer.onChannelWrite()
+    }
+
+    fun clear() {
+        frames.clear()
+    }
+
+    fun close() {
+        if (!closed.compareAndSet(false, true)) return
+
+        frames.clear()
+        mixer.removeChannel(this)
+    }
+
+    fun isClosed(): Boolean = closed.get()
+
+    internal fun poll(): ShortArray? = frames.poll()
+
+    internal fun timeout() {
+        close()
+        onTimeout()
+    }
+
+    companion object {
+        private const val MAX_QUEUED_FRAMES = 10
+    }
+}
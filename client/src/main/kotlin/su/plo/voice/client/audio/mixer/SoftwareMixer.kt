@@ -0,0 +1,317 @@
+package su.plo.voice.client.audio.mixer
+
+import kotlinx.coroutines.runBlocking
+import net.minecraft.client.Minecraft
+import net.minecraft.world.entity.Entity
+import net.minecraft.world.phys.Vec3
+import org.apache.logging.log4j.LogManager
+import org.lwjgl.openal.AL10
+import su.plo.voice.BaseVoice
+import su.plo.voice.api.client.audio.device.DeviceException
+import su.plo.voice.api.client.audio.device.DeviceType
+import su.plo.voice.api.client.audio.device.source.AlSource
+import su.plo.voice.api.client.audio.device.source.SourceGroup
+import su.plo.voice.api.client.event.audio.device.source.AlSourceBufferUnqueuedEvent
+import su.plo.voice.api.client.event.audio.device.source.AlSourceClosedEvent
+import su.plo.voice.api.event.EventPriority
+import su.plo.voice.api.event.EventSubscribe
+import su.plo.voice.api.util.AudioUtil
+import su.plo.voice.api.util.Params
+import su.plo.voice.client.BaseVoiceClient
+import su.plo.voice.client.config.VoiceClientConfig
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import kotlin.math.cos
+import kotlin.math.sin
+
+/**
+ * Mixes all audio sources in java into the single stereo OpenAL stream
+ *
+ * Sources are spatialized by applying gain and equal-power panning,
+ * so the device filters are processed once per frame regardless of the number of sources
+ * and the number of sources is not limited by OpenAL
+ *
+ * Frames are mixed when the output stream has played a buffer,
+ * so the mixer runs at the device rate instead of its own clock
+ */
+class SoftwareMixer(
+    private val voiceClient: BaseVoiceClient,
+    private val config: VoiceClientConfig
+) {
+
+    private val channels: MutableSet<MixerChannel> = ConcurrentHashMap.newKeySet()
+
+    @Volatile
+    private var executor: ScheduledExecutorService? = null
+
+    @Volatile
+    private var sourceGroup: SourceGroup? = null
+
+    // true if the last tick had nothing to mix, so the output stream won't request the next frame
+    private val idle = AtomicBoolean(true)
+
+    @Volatile
+    private var lastTick = 0L
+
+    // updated on the main thread
+    @Volatile
+    private var listener = Listener(Vec3.ZERO, Vec3.ZERO)
+
+    // accessed only by the mixer thread
+    private var mixBuffer = FloatArray(0)
+    private var filterBuffer = FloatArray(0)
+    private var mixed = ShortArray(0)
+    private var mixedBytes = ByteArray(0)
+
+    val isEnabled: Boolean
+        get() = config.advanced.softwareMixer.value()
+
+    val channelsCount: Int
+        get() = channels.size
+
+    @Synchronized
+    fun createChannel(stereo: Boolean, onTimeout: () -> Unit): MixerChannel {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor { r ->
+                val thread = Thread(null, r, "Voice Software Mixer", 0)
+                thread.isDaemon = true
+                thread
+            }.also {
+                it.scheduleWithFixedDelay(::watchdogSafe, WATCHDOG_MS, WATCHDOG_MS, TimeUnit.MILLISECONDS)
+            }
+        }
+
+        return MixerChannel(this, stereo, onTimeout).also { channels.add(it) }
+    }
+
+    /**
+     * Closes all channels, the output stream and stops the mixer thread
+     */
+    @Synchronized
+    fun clear() {
+        executor?.shutdownNow()
+        executor = null
+        idle.set(true)
+
+        channels.toList().forEach(MixerChannel::close)
+        sourceGroup?.clear()
+        sourceGroup = null
+    }
+
+    /**
+     * Updates the listener position used for panning
+     *
+     * Should be called on the main thread
+     */
+    fun updateListener() {
+        if (channels.isEmpty()) return
+
+        val entity = getListener()
+        val lookAngle = entity?.lookAngle ?: Vec3.ZERO
+
+        this.listener = Listener(
+            entity?.eyePosition ?: Vec3.ZERO,
+            Vec3(-lookAngle.z, 0.0, lookAngle.x).normalize()
+        )
+    }
+
+    internal fun removeChannel(channel: MixerChannel) {
+        channels.remove(channel)
+    }
+
+    /**
+     * Called when samples are written to the channel
+     *
+     * Starts mixing if the output stream is idle
+     */
+    internal fun onChannelWrite() {
+        if (idle.compareAndSet(true, false)) scheduleTick()
+    }
+
+    @EventSubscribe(priority = EventPriority.LOWEST)
+    fun onSourceClosed(event: AlSourceClosedEvent) {
+        val sourceGroup = sourceGroup ?: return
+        if (!sourceGroup.sources.contains(event.source)) return
+
+        // output devices were reloaded, so the output stream will be recreated on the next frame
+        this.sourceGroup = null
+    }
+
+    @EventSubscribe(priority = EventPriority.LOWEST)
+    fun onBufferUnqueued(event: AlSourceBufferUnqueuedEvent) {
+        // the first output stream is used as a clock, so the frames are not mixed twice with multiple devices
+        val sourceGroup = sourceGroup ?: return
+        if (sourceGroup.sources.firstOrNull() !== event.source) return
+
+        scheduleTick()
+    }
+
+    private fun scheduleTick() {
+        try {
+            executor?.execute(::tickSafe)
+        } catch (ignored: RejectedExecutionException) {
+            // mixer is cleared
+        }
+    }
+
+    private fun watchdogSafe() {
+        try {
+            watchdog()
+        } catch (e: Exception) {
+            LOGGER.error("Failed to tick software mixer", e)
+        }
+    }
+
+    private fun watchdog() {
+        val now = System.currentTimeMillis()
+        channels.filter { now - it.lastWrite > CHANNEL_TIMEOUT_MS }
+            .forEach(MixerChannel::timeout)
+
+        // output stream was stopped or recreated while there are frames to mix
+        if (!idle.get() && now - lastTick > WATCHDOG_MS) scheduleTick()
+    }
+
+    private fun tickSafe() {
+        try {
+            tick()
+        } catch (e: Exception) {
+            LOGGER.error("Failed to mix audio", e)
+        }
+    }
+
+    private fun tick() {
+        lastTick = System.currentTimeMillis()
+
+        val listener = listener
+        var frameLength = 0
+        for (channel in channels) {
+            val frame = channel.poll() ?: continue
+            val gain = channel.gain
+
+            val length = if (channel.stereo) frame.size / 2 else frame.size
+            if (length > frameLength) {
+                ensureMixBuffer(length * 2)
+                frameLength = length
+            }
+
+            if (channel.stereo) {
+                for (i in frame.indices) {
+                    mixBuffer[i] += frame[i] * gain
+                }
+                continue
+            }
+
+            var leftGain = CENTER_GAIN * gain
+            var rightGain = CENTER_GAIN * gain
+            channel.position?.let {
+                val pan = it.subtract(listener.position).normalize().dot(listener.right)
+                val angle = (pan + 1.0) * Math.PI / 4.0
+
+                leftGain = cos(angle).toFloat() * gain
+                rightGain = sin(angle).toFloat() * gain
+            }
+
+            for (i in 0 until length) {
+                val sample = frame[i].toFloat()
+                mixBuffer[i * 2] += sample * leftGain
+                mixBuffer[i * 2 + 1] += sample * rightGain
+            }
+        }
+
+        if (frameLength == 0) {
+            idle.set(true)
+            return
+        }
+
+        val mixedLength = frameLength * 2
+        val sourceGroup = getOrCreateSourceGroup()
+        if (sourceGroup == null) {
+            mixBuffer.fill(0f, 0, mixedLength)
+            idle.set(true)
+            return
+        }
+
+        if (filterBuffer.size < mixedLength) filterBuffer = FloatArray(mixedLength)
+
+        for (source in sourceGroup.sources) {
+            System.arraycopy(mixBuffer, 0, filterBuffer, 0, mixedLength)
+            val length = source.device.processFilters(filterBuffer, mixedLength, null)
+
+            // source copies the samples, so the arrays are reused
+            if (mixed.size != length) {
+                mixed = ShortArray(length)
+                mixedBytes = ByteArray(length * 2)
+            }
+            AudioUtil.floatsToShorts(filterBuffer, 0, length, mixed, 0)
+            AudioUtil.shortsToBytes(mixed, 0, length, mixedBytes, 0)
+
+            source.write(mixedBytes)
+        }
+
+        mixBuffer.fill(0f, 0, mixedLength)
+    }
+
+    private fun ensureMixBuffer(length: Int) {
+        if (mixBuffer.size >= length) return
+        mixBuffer = mixBuffer.copyOf(length)
+    }
+
+    private fun getOrCreateSourceGroup(): SourceGroup? {
+        sourceGroup?.let { return it }
+
+        return try {
+            runBlocking { createSourceGroup() }.also {
+                sourceGroup = it
+                BaseVoice.DEBUG_LOGGER.log("Software mixer output stream created")
+            }
+        } catch (e: DeviceException) {
+            LOGGER.warn("Failed to create software mixer output stream", e)
+            null
+        }
+    }
+
+    private suspend fun createSourceGroup(): SourceGroup =
+        voiceClient.deviceManager.createSourceGroup(DeviceType.OUTPUT).also {
+            it.create(true, Params.EMPTY)
+
+            for (source in it.sources) {
+                if (source !is AlSource) continue
+
+                source.device.runInContext {
+                    source.setFloat(0x100E, 4f) // AL_MAX_GAIN
+                    source.setInt(AL10.AL_DISTANCE_MODEL, AL10.AL_NONE)
+                    source.setInt(0x202, 1) // AL_SOURCE_RELATIVE
+                    source.setFloatArray(0x1004, POSITION_ZERO) // AL_POSITION
+                    source.setCloseTimeoutMs(0L)
+                    source.play()
+                }
+            }
+        }
+
+    private fun getListener(): Entity? =
+        if (config.advanced.cameraSoundListener.value()
+            && voiceClient.serverInfo.orElse(null)
+                ?.playerInfo
+                ?.get("pv.allow_freecam")
+                ?.orElse(true) == true
+        ) Minecraft.getInstance().cameraEntity
+        else Minecraft.getInstance().player
+
+    private class Listener(
+        val position: Vec3,
+        val right: Vec3
+    )
+
+    companion object {
+        private val LOGGER = LogManager.getLogger(SoftwareMixer::class.java)
+        private val POSITION_ZERO = floatArrayOf(0f, 0f, 0f)
+
+        private const val WATCHDOG_MS = 100L
+        private const val CHANNEL_TIMEOUT_MS = 25_000L
+        private val CENTER_GAIN = cos(Math.PI / 4.0).toFloat()
+    }
+}
@@ -5,7 +5,6 @@ import kotlinx.coroutines.future.future
 import kotlinx.coroutines.sync.Mutex
 import kotlinx.coroutines.sync.withLock
 import net.minecraft.client.Minecraft
-import net.minecraft.client.player.LocalPlayer
 import net.minecraft.world.entity.Entity
 import net.minecraft.world.phys.Vec3
 import org.apache.logging.log4j.LogManager
@@ -20,10 +19,11 @@ import su.plo.voice.api.client.audio.device.DeviceType
 import su.plo.voice.api.client.audio.device.source.AlSource
 import su.plo.voice.api.client.audio.device.source.SourceGroup
 import su.plo.voice.api.client.audio.source.ClientAudioSource
-import su.plo.voice.api.client.connection.ServerInfo.VoiceInfo
 import su.plo.voice.api.client.event.audio.device.source.AlSourceClosedEvent
 import su.plo.voice.api.client.event.audio.device.source.AlStreamSourceStoppedEvent
+import su.plo.voice.api.client.event.audio.source.AudioSourceActivatedEvent
 import su.plo.voice.api.client.event.audio.source.AudioSourceClosedEvent
+import su.plo.voice.api.client.event.audio.source.AudioSourceDeactivatedEvent
 import su.plo.voice.api.client.event.audio.source.AudioSourceInitializedEvent
 import su.plo.voice.api.encryption.Encryption
 import su.plo.voice.api.encryption.EncryptionException
@@ -33,7 +33,9 @@ import su.plo.voice.api.util.AudioUtil
 import su.plo.voice.api.util.Params
 import su.plo.voice.audio.codec.AudioDecoderPlc
 import su.plo.voice.client.BaseVoiceClient
-import su.plo.voice.client.audio.SoundOcclusion
+import su.plo.voice.client.audio.OcclusionService
+import su.plo.voice.client.audio.device.source.StreamAlSource
+import su.plo.voice.client.audio.mixer.MixerChannel
 import su.plo.voice.client.config.VoiceClientConfig
 import su.plo.voice.client.utils.diff
 import su.plo.voice.client.utils.level
@@ -42,6 +44,7 @@ import su.plo.voice.proto.data.audio.codec.CodecInfo
 import su.plo.voice.proto.data.audio.source.SourceInfo
 import su.plo.voice.proto.packets.tcp.clientbound.SourceAudioEndPacket
 import su.plo.voice.proto.packets.udp.clientbound.SourceAudioPacket
+import java.nio.ByteBuffer
 import java.util.*
 import java.util.concurrent.CompletableFuture
 import java.util.concurrent.Executors
@@ -55,7 +58,13 @@ abstract class BaseClientAudioSource<T> constructor(
     final override var sourceInfo: T
 ) : ClientAudioSource<T> where T : SourceInfo {
 
-    override var sourceGroup: SourceGroup = runBlocking { createSourceGroup(sourceInfo) }
+    // source is played through the software mixer instead of the own OpenAL sources
+    private val mixed = voiceClient.softwareMixer.isEnabled
+    private var mixerChannel: MixerChannel? = null
+
+    // device sources are created on the source lane by [initialize]
+    @Volatile
+    override var sourceGroup: SourceGroup = voiceClient.deviceManager.createSourceGroup(DeviceType.OUTPUT)
 
     private var lineVolume: DoubleConfigEntry
     private var lineMute: BooleanConfigEntry
@@ -66,6 +75,10 @@ abstract class BaseClientAudioSource<T> constructor(
     private var encryption: Encryption? = null
     private var decoder: AudioDecoder? = null
 
+    // reusable decrypt & decode buffers, accessed only under the mutex
+    private var decryptBuffer: ByteBuffer = ByteBuffer.allocate(0)
+    private var decodeBuffer: ShortArray = ShortArray(0)
+
     private var endRequest: Job? = null
 
     override var closeTimeoutMs: Long = 500
@@ -73,6 +86,7 @@ abstract class BaseClientAudioSource<T> constructor(
     private var lastSequenceNumbers: MutableMap<UUID, Long> = HashMap()
     private var lastActivation = 0L
     private var lastOcclusion = -1.0
+    private var occlusionEntry: OcclusionService.Entry? = null
 
     private val closed = AtomicBoolean(false)
     private val resetted = AtomicBoolean(false)
@@ -81,15 +95,16 @@ abstract class BaseClientAudioSource<T> constructor(
 
     private val mutex = Mutex()
 
+    // all source tasks are executed on the same lane to keep packets order
+    private val scope = LANES[Math.floorMod(sourceInfo.id.hashCode(), LANES.size)]
+
     init {
         val serverInfo = voiceClient.serverInfo
             .orElseThrow { IllegalStateException("Not connected") }
-        val voiceInfo = serverInfo.voiceInfo
 
-        // initialize decoder
-        sourceInfo.decoderInfo?.let {
-            decoder = createDecoder(sourceInfo, voiceInfo, it)
-        }
+        // decoder is leased from the pool on the first audio packet
+
+        if (mixed) mixerChannel = createMixerChannel(sourceInfo)
 
         // initialize encryption
         serverInfo.encryption.ifPresent {
@@ -99,77 +114,117 @@ abstract class BaseClientAudioSource<T> constructor(
         // initialize volumes
         lineVolume = getLineVolume(sourceInfo)
         lineMute = getLineMute(sourceInfo)
-        BaseVoice.DEBUG_LOGGER.log(
-            "Source {} initialized in {}",
-            sourceInfo,
-            if (isStereo(sourceInfo)) "stereo" else "mono"
-        )
+    }
 
-        voiceClient.eventBus.call(AudioSourceInitializedEvent(this))
+    /**
+     * Creates device sources on the source lane
+     *
+     * Audio packets received before the source is initialized are queued on the same lane,
+     * so they are processed after the device sources are created.
+     * Should be called once after the source is constructed
+     */
+    fun initialize() {
+        scope.launch {
+            try {
+                mutex.withLock {
+                    if (closed.get()) return@launch
+
+                    sourceGroup = createSourceGroup(sourceInfo)
+                    BaseVoice.DEBUG_LOGGER.log(
+                        "Source {} initialized in {}",
+                        sourceInfo,
+                        if (isStereo(sourceInfo)) "stereo" else "mono"
+                    )
+
+                    voiceClient.eventBus.call(AudioSourceInitializedEvent(this@BaseClientAudioSource))
+                }
+            } catch (e: Exception) {
+                LOGGER.error("Failed to initialize audio source {}", sourceInfo, e)
+                close()
+            }
+        }
     }
 
-    override fun update(sourceInfo: T): Unit = runBlocking {
-        mutex.withLock {
-            val serverInfo = voiceClient.serverInfo
-                .orElseThrow { IllegalStateException("Not connected") }
+    /**
+     * Queues the source info update to the source lane, so the caller is not blocked by the audio processing
+     */
+    override fun update(sourceInfo: T) {
+        scope.launch {
+            try {
+                mutex.withLock { applyUpdate(sourceInfo) }
+            } catch (e: Exception) {
+                LOGGER.error("Failed to update audio source {}", sourceInfo, e)
+            }
+        }
+    }
 
-            val voiceInfo = serverInfo.voiceInfo
-            val stereoChanged = isStereo(this@BaseClientAudioSource.sourceInfo) != isStereo(sourceInfo)
+    /**
+     * Applies the source info update
+     *
+     * Called on the source lane under the source lock
+     */
+    protected open suspend fun applyUpdate(sourceInfo: T) {
+        if (closed.get()) return
 
-            // initialize sources
-            if (stereoChanged) {
-                val oldSourceGroup = sourceGroup
-                sourceGroup = createSourceGroup(sourceInfo)
-                oldSourceGroup.clear()
+        val serverInfo = voiceClient.serverInfo
+            .orElseThrow { IllegalStateException("Not connected") }
 
-                BaseVoice.DEBUG_LOGGER.log(
-                    "Update device sources for {} in {}",
-                    sourceInfo,
-                    if (isStereo(sourceInfo)) "stereo" else "mono"
-                )
-            }
+        val stereoChanged = isStereo(this.sourceInfo) != isStereo(sourceInfo)
 
-            // initialize decoder
-            if (sourceInfo.isStereo != this@BaseClientAudioSource.sourceInfo.isStereo) {
-                decoder?.close()
+        // initialize sources
+        if (stereoChanged) {
+            val oldSourceGroup = sourceGroup
+            sourceGroup = createSourceGroup(sourceInfo)
+            oldSourceGroup.clear()
 
-                sourceInfo.decoderInfo?.let {
-                    decoder = createDecoder(sourceInfo, voiceInfo, it)
-                }
-                lastSequenceNumbers.clear()
-                BaseVoice.DEBUG_LOGGER.log("Update decoder for {}", sourceInfo)
+            if (mixed) {
+                mixerChannel?.close()
+                mixerChannel = createMixerChannel(sourceInfo)
             }
 
-            // initialize encryption
-            serverInfo.encryption.ifPresent {
-                encryption = it
-            }
+            BaseVoice.DEBUG_LOGGER.log(
+                "Update device sources for {} in {}",
+                sourceInfo,
+                if (isStereo(sourceInfo)) "stereo" else "mono"
+            )
+        }
 
-            // initialize volumes
-            if (sourceInfo.lineId != this@BaseClientAudioSource.sourceInfo.lineId) {
-                lineVolume = getLineVolume(sourceInfo)
-                lineMute = getLineMute(sourceInfo)
-                BaseVoice.DEBUG_LOGGER.log("Update source line for {}", sourceInfo)
-            }
+        // release decoder, the new one will be leased on the next audio packet
+        if (sourceInfo.isStereo != this.sourceInfo.isStereo) {
+            releaseDecoder()
+            lastSequenceNumbers.clear()
+            BaseVoice.DEBUG_LOGGER.log("Update decoder for {}", sourceInfo)
+        }
 
-            this@BaseClientAudioSource.sourceInfo = sourceInfo
+        // initialize encryption
+        serverInfo.encryption.ifPresent {
+            encryption = it
+        }
 
-            voiceClient.eventBus.call(AudioSourceInitializedEvent(this@BaseClientAudioSource))
+        // initialize volumes
+        if (sourceInfo.lineId != this.sourceInfo.lineId) {
+            lineVolume = getLineVolume(sourceInfo)
+            lineMute = getLineMute(sourceInfo)
+            BaseVoice.DEBUG_LOGGER.log("Update source line for {}", sourceInfo)
         }
+
+        this.sourceInfo = sourceInfo
+
+        voiceClient.eventBus.call(AudioSourceInitializedEvent(this))
     }
 
     override fun process(packet: SourceAudioPacket) {
         if (isClosed() || lineMute.value()) return
 
-        SCOPE.launch { processAudioPacket(packet) }
+        scope.launch { processAudioPacket(packet) }
     }
 
     override fun process(packet: SourceAudioEndPacket) {
         if (isClosed() || lineMute.value()) return
 
-        SCOPE.launch { processAudioEndPacket(packet) }
+        scope.launch { processAudioEndPacket(packet) }
         endRequest?.cancel()
-        endRequest = SCOPE.launch {
+        endRequest = scope.launch {
             try {
                 delay(100L)
                 reset()
@@ -179,19 +234,23 @@ abstract class BaseClientAudioSource<T> constructor(
     }
 
     override suspend fun close() = mutex.withLock {
+        if (closed.get()) return
+
         activated.set(false)
         canHear.set(false)
         closed.set(true)
 
-        decoder?.close()
+        releaseDecoder()
         sourceGroup.clear()
+        mixerChannel?.close()
+        occlusionEntry?.close()
 
         voiceClient.eventBus.call(AudioSourceClosedEvent(this@BaseClientAudioSource))
         BaseVoice.DEBUG_LOGGER.log("Source {} closed", sourceInfo)
     }
 
     override fun closeAsync(): CompletableFuture<Void?> =
-        SCOPE.future {
+        scope.future {
             close()
             null
         }
@@ -269,7 +328,7 @@ abstract class BaseClientAudioSource<T> constructor(
             var occlusion: Double = calculateOcclusion(position)
             if (lastOcclusion >= 0) {
                 lastOcclusion = if (occlusion > lastOcclusion) {
-                    (lastOcclusion + 0.05).coerceAtLeast(0.0)
+                    (lastOcclusion + 0.05).coerceAtMost(occlusion)
                 } else {
                     (lastOcclusion - 0.05).coerceAtLeast(occlusion)
                 }
@@ -310,6 +369,11 @@ abstract class BaseClientAudioSource<T> constructor(
         // so we need to make sure that source is not closed rn
         if (closed.get()) return
 
+        // lease decoder only when source is actually speaking
+        if (decoder == null) {
+            sourceInfo.decoderInfo?.let { decoder = leaseDecoder(it) }
+        }
+
         // packet compensation
         if (lastSequenceNumber >= 0) {
             val packetsToCompensate = (packet.sequenceNumber - (lastSequenceNumber + 1)).toInt()
@@ -318,7 +382,8 @@ abstract class BaseClientAudioSource<T> constructor(
                 for (i in 0 until packetsToCompensate) {
                     if (decoder != null && decoder is AudioDecoderPlc && !sourceInfo.isStereo) {
                         try {
-                            write((decoder as AudioDecoderPlc).decodePLC())
+                            val decodedLength = (decoder as AudioDecoderPlc).decodePLC(decodeBuffer, 0, decodeBuffer.size)
+                            write(decodedSamples(decodedLength))
                         } catch (e: CodecException) {
                             LOGGER.warn("Failed to decode source audio", e)
                             return
@@ -332,8 +397,7 @@ abstract class BaseClientAudioSource<T> constructor(
 
         // decrypt & decode samples
         try {
-            val decrypted = encryption?.decrypt(packet.data) ?: packet.data
-            val decoded = decoder?.decode(decrypted) ?: AudioUtil.bytesToShorts(decrypted)
+            val decoded = decode(packet.data)
 
             if (sourceInfo.isStereo && config.advanced.stereoSourcesToMono.value()) {
                 write(AudioUtil.convertToMonoShorts(decoded))
@@ -349,9 +413,17 @@ abstract class BaseClientAudioSource<T> constructor(
         lastSequenceNumbers[sourceInfo.lineId] = packet.sequenceNumber
         lastActivation = System.currentTimeMillis()
 
+        val wasHeard = activated.get() && canHear.get()
+
         if (distance > 0) canHear.set(sourceDistance <= distance)
         activated.set(true)
         resetted.set(false)
+
+        if (!wasHeard && canHear.get()) {
+            voiceClient.eventBus.call(AudioSourceActivatedEvent(this@BaseClientAudioSource))
+        } else if (wasHeard && !canHear.get()) {
+            voiceClient.eventBus.call(AudioSourceDeactivatedEvent(this@BaseClientAudioSource))
+        }
     }
 
     private suspend fun processAudioEndPacket(packet: SourceAudioEndPacket) = mutex.withLock {
@@ -361,13 +433,17 @@ abstract class BaseClientAudioSource<T> constructor(
 
     private suspend fun reset() = mutex.withLock {
         if (!resetted.compareAndSet(false, true)) return
-        if (decoder != null) decoder!!.reset()
+        releaseDecoder()
+
+        val wasHeard = activated.get() && canHear.get()
         activated.set(false)
         canHear.set(false)
+
+        if (wasHeard) voiceClient.eventBus.call(AudioSourceDeactivatedEvent(this@BaseClientAudioSource))
     }
 
     private fun resetAsync() =
-        SCOPE.future {
+        scope.future {
             reset()
             null
         }
@@ -412,16 +488,44 @@ abstract class BaseClientAudioSource<T> constructor(
     }
 
     private fun calculateOcclusion(position: Vec3): Double {
-        val player: LocalPlayer = Minecraft.getInstance().player ?: return 0.0
+        // occlusion is calculated by the occlusion service against the blocks snapshot,
+        // so the world is not accessed from the audio thread
+        val entry = occlusionEntry ?: voiceClient.occlusionService.createEntry().also { occlusionEntry = it }
+
+        return entry.query(position).coerceAtLeast(0.0)
+    }
+
+    private fun decode(data: ByteArray): ShortArray {
+        var decrypted = data
+        var decryptedLength = data.size
 
-        return SoundOcclusion.getOccludedPercent(
-            player.level(),
-            position,
-            player.eyePosition
-        )
+        encryption?.let {
+            if (decryptBuffer.capacity() < data.size) {
+                decryptBuffer = ByteBuffer.allocate(data.size)
+            }
+
+            decryptBuffer.clear()
+            decryptedLength = it.decrypt(ByteBuffer.wrap(data), decryptBuffer)
+            decrypted = decryptBuffer.array()
+        }
+
+        val audioDecoder = decoder
+            ?: return AudioUtil.bytesToShorts(decrypted.copyOf(decryptedLength))
+
+        val decodedLength = audioDecoder.decode(decrypted, 0, decryptedLength, decodeBuffer, 0, decodeBuffer.size)
+        return decodedSamples(decodedLength)
     }
 
+    private fun decodedSamples(length: Int): ShortArray =
+        if (length == decodeBuffer.size) decodeBuffer
+        else decodeBuffer.copyOf(length)
+
     private fun write(samples: ShortArray) {
+        mixerChannel?.let {
+            it.write(samples)
+            return
+        }
+
         for (source in sourceGroup.sources) {
             source.write(
                 AudioUtil.shortsToBytes(
@@ -432,7 +536,24 @@ abstract class BaseClientAudioSource<T> constructor(
     }
 
     private suspend fun updateSource(volume: Float, position: Vec3) {
+        mixerChannel?.let {
+            it.gain = volume
+            it.position = if (isPanningDisabled()) null else position
+            return
+        }
+
         for (source in sourceGroup.sources) {
+            // stream sources apply params on the next streaming tick without blocking the lane
+            if (source is StreamAlSource) {
+                val panningDisabled = isPanningDisabled()
+                source.updateParamsAsync(
+                    volume,
+                    panningDisabled,
+                    if (panningDisabled) POSITION_ZERO else position.toFloatArray()
+                )
+                continue
+            }
+
             if (source !is AlSource) continue
             val device = source.device
 
@@ -460,6 +581,8 @@ abstract class BaseClientAudioSource<T> constructor(
 
     private suspend fun createSourceGroup(sourceInfo: T): SourceGroup {
         return voiceClient.deviceManager.createSourceGroup(DeviceType.OUTPUT).also {
+            if (mixed) return it
+
             it.create(isStereo(sourceInfo), Params.EMPTY)
 
             for (source in it.sources) {
@@ -475,16 +598,32 @@ abstract class BaseClientAudioSource<T> constructor(
         }
     }
 
-    private fun createDecoder(sourceInfo: T, voiceInfo: VoiceInfo, decoderInfo: CodecInfo): AudioDecoder {
-        return voiceClient.codecManager.createDecoder(
+    private fun leaseDecoder(decoderInfo: CodecInfo): AudioDecoder {
+        val voiceInfo = voiceClient.serverInfo
+            .orElseThrow { IllegalStateException("Not connected") }
+            .voiceInfo
+
+        decodeBuffer = ShortArray(voiceInfo.bufferSize * if (sourceInfo.isStereo) 2 else 1)
+
+        return voiceClient.decoderPool.lease(
             decoderInfo,
             voiceInfo.captureInfo.sampleRate,
             sourceInfo.isStereo,
             voiceInfo.bufferSize,
             voiceInfo.captureInfo.mtuSize
-        )
+        ).also { BaseVoice.DEBUG_LOGGER.log("Decoder leased for {}", sourceInfo) }
     }
 
+    private fun releaseDecoder() {
+        decoder?.let {
+            voiceClient.decoderPool.release(it)
+            decoder = null
+        }
+    }
+
+    private fun createMixerChannel(sourceInfo: T): MixerChannel =
+        voiceClient.softwareMixer.createChannel(isStereo(sourceInfo)) { closeAsync() }
+
     private fun getLineVolume(sourceInfo: T): DoubleConfigEntry {
         val sourceLine = voiceClient.sourceLineManager.getLineById(sourceInfo.lineId)
             .orElseThrow { IllegalStateException("Source line not found") }
@@ -518,6 +657,17 @@ abstract class BaseClientAudioSource<T> constructor(
         private val LOGGER: Logger = LogManager.getLogger(BaseClientAudioSource::class.java)
         private val POSITION_ZERO = floatArrayOf(0f, 0f, 0f)
 
-        private val SCOPE = CoroutineScope(Executors.newSingleThreadExecutor().asCoroutineDispatcher())
+        private val LANES = Array(Runtime.getRuntime().availableProcessors().coerceIn(1, 8)) { lane ->
+            CoroutineScope(Executors.newSingleThreadExecutor { r ->
+                val thread = Thread(
+                    null,
+                    r,
+                    "Voice Source Lane #$lane",
+                    0
+                )
+                thread.isDaemon = true
+                thread
+            }.asCoroutineDispatcher())
+        }
     }
 }
@@ -1,13 +1,11 @@
 package su.plo.voice.client.audio.source
 
-import kotlinx.coroutines.runBlocking
 import net.minecraft.client.Minecraft
 import net.minecraft.client.player.LocalPlayer
 import net.minecraft.world.phys.Vec3
 import su.plo.config.entry.BooleanConfigEntry
 import su.plo.config.entry.DoubleConfigEntry
 import su.plo.voice.api.client.audio.device.AlAudioDevice
-import su.plo.voice.api.client.audio.device.DeviceException
 import su.plo.voice.api.client.audio.device.source.AlSource
 import su.plo.voice.client.BaseVoiceClient
 import su.plo.voice.client.config.VoiceClientConfig
@@ -26,15 +24,14 @@ class ClientDirectSource(
 
     private var sourceMute: BooleanConfigEntry? = createSourceMute(sourceInfo)
 
-    @Throws(DeviceException::class)
-    override fun update(sourceInfo: DirectSourceInfo) {
+    override suspend fun applyUpdate(sourceInfo: DirectSourceInfo) {
         if (sourceInfo.sender != this.sourceInfo.sender) {
             sourceVolume = createSourceVolume(sourceInfo)
             sourceMute = createSourceMute(sourceInfo)
         }
 
-        super.update(sourceInfo)
-        runBlocking { updateSourceParams() }
+        super.applyUpdate(sourceInfo)
+        updateSourceParams()
     }
 
     override fun process(packet: SourceAudioPacket) {
@@ -3,8 +3,6 @@ package su.plo.voice.client.audio.source
 import com.google.common.collect.ListMultimap
 import com.google.common.collect.Maps
 import com.google.common.collect.Multimaps
-import kotlinx.coroutines.runBlocking
-import su.plo.voice.api.client.audio.device.DeviceException
 import su.plo.voice.api.client.audio.source.ClientAudioSource
 import su.plo.voice.api.client.audio.source.ClientSelfSourceInfo
 import su.plo.voice.api.client.audio.source.ClientSourceManager
@@ -94,81 +92,91 @@ class VoiceClientSourceManager(
         sourcesByEntityId.clear()
         sourceRequestById.clear()
         selfSourceInfoById.clear()
+        voiceClient.decoderPool.clear()
     }
 
-    // todo: refactor somehow pepega
-    override fun update(sourceInfo: SourceInfo): Unit = runBlocking {
-        try {
-            if (sourceById.containsKey(sourceInfo.id)) {
-                val source = sourceById[sourceInfo.id]!!
-                if (source.isClosed()) {
-                    sourceRequestById.remove(sourceInfo.id)
-                    return@runBlocking
-                }
-                if (source.sourceInfo.lineId !== sourceInfo.lineId) {
-                    sourcesByLineId.remove(source.sourceInfo.lineId, source)
-                    sourcesByLineId.put(sourceInfo.lineId, source)
-                }
-
-                if (source.sourceInfo.javaClass != sourceInfo.javaClass)
-                    return@runBlocking
-
-                when (sourceInfo) {
-                    is StaticSourceInfo ->
-                        (source as ClientAudioSource<StaticSourceInfo>).update(sourceInfo)
-
-                    is PlayerSourceInfo ->
-                        (source as ClientAudioSource<PlayerSourceInfo>).update(sourceInfo)
-
-                    is EntitySourceInfo ->
-                        (source as ClientAudioSource<EntitySourceInfo>).update(sourceInfo)
-
-                    is DirectSourceInfo ->
-                        (source as ClientAudioSource<DirectSourceInfo>).update(sourceInfo)
-
-                    else -> throw IllegalArgumentException("Invalid source type")
-                }
-                return@runBlocking
+    /**
+     * Creates or updates the source
+     *
+     * Sources are created and updated on their lanes, so this doesn't block the caller.
+     * New sources are registered immediately, and audio packets received while the source is being created
+     * are queued on the source lane instead of requesting the source info again
+     */
+    override fun update(sourceInfo: SourceInfo) {
+        val source = sourceById[sourceInfo.id]
+        if (source != null) {
+            if (source.isClosed()) {
+                sourceRequestById.remove(sourceInfo.id)
+                return
             }
+            if (source.sourceInfo.lineId !== sourceInfo.lineId) {
+                sourcesByLineId.remove(source.sourceInfo.lineId, source)
+                sourcesByLineId.put(sourceInfo.lineId, source)
+            }
+
+            if (source.sourceInfo.javaClass != sourceInfo.javaClass) return
 
             when (sourceInfo) {
-                is PlayerSourceInfo -> {
-                    val source = createPlayerSource(sourceInfo)
-                    sourceById[sourceInfo.getId()] = source
-                    sourcesByLineId.put(sourceInfo.getLineId(), source)
-                    sourcesByPlayerId.put(sourceInfo.playerInfo.playerId, source)
-                }
-
-                is EntitySourceInfo -> {
-                    val source = createEntitySource(sourceInfo)
-                    sourceById[sourceInfo.getId()] = source
-                    sourcesByLineId.put(sourceInfo.getLineId(), source)
-                    sourcesByEntityId.put(sourceInfo.entityId, source)
-                }
-
-                is StaticSourceInfo -> {
-                    val source = createStaticSource(sourceInfo)
-                    sourceById[sourceInfo.getId()] = source
-                    sourcesByLineId.put(sourceInfo.getLineId(), source)
-                }
-
-                is DirectSourceInfo -> {
-                    val source = createDirectSource(sourceInfo)
-                    sourceById[sourceInfo.getId()] = source
-                    sourcesByLineId.put(sourceInfo.getLineId(), source)
-                }
+                is StaticSourceInfo ->
+                    (source as ClientAudioSource<StaticSourceInfo>).update(sourceInfo)
+
+                is PlayerSourceInfo ->
+                    (source as ClientAudioSource<PlayerSourceInfo>).update(sourceInfo)
+
+                is EntitySourceInfo ->
+                    (source as ClientAudioSource<EntitySourceInfo>).update(sourceInfo)
+
+                is DirectSourceInfo ->
+                    (source as ClientAudioSource<DirectSourceInfo>).update(sourceInfo)
 
                 else -> throw IllegalArgumentException("Invalid source type")
             }
-            sourceRequestById.remove(sourceInfo.id)
-        } catch (e: DeviceException) {
-            throw IllegalStateException("Failed to initialize audio source", e)
+
+            // update is applied on the source lane,
+            // so audio packets with the new state shouldn't request the source info again until it's applied
+            sourceRequestById[sourceInfo.id] = System.currentTimeMillis()
+            return
+        }
+
+        when (sourceInfo) {
+            is PlayerSourceInfo -> {
+                val source = createPlayerSource(sourceInfo)
+                sourceById[sourceInfo.getId()] = source
+                sourcesByLineId.put(sourceInfo.getLineId(), source)
+                sourcesByPlayerId.put(sourceInfo.playerInfo.playerId, source)
+            }
+
+            is EntitySourceInfo -> {
+                val source = createEntitySource(sourceInfo)
+                sourceById[sourceInfo.getId()] = source
+                sourcesByLineId.put(sourceInfo.getLineId(), source)
+                sourcesByEntityId.put(sourceInfo.entityId, source)
+            }
+
+            is StaticSourceInfo -> {
+                val source = createStaticSource(sourceInfo)
+                sourceById[sourceInfo.getId()] = source
+                sourcesByLineId.put(sourceInfo.getLineId(), source)
+            }
+
+            is DirectSourceInfo -> {
+                val source = createDirectSource(sourceInfo)
+                sourceById[sourceInfo.getId()] = source
+                sourcesByLineId.put(sourceInfo.getLineId(), source)
+            }
+
+            else -> throw IllegalArgumentException("Invalid source type")
         }
+        sourceRequestById.remove(sourceInfo.id)
     }
 
     override fun sendSourceInfoRequest(sourceId: UUID, requestIfExist: Boolean) {
         if (!requestIfExist && sourceById.containsKey(sourceId)) return
 
+        // source info is already requested or the update is not applied yet
+        val lastRequest = sourceRequestById.getOrDefault(sourceId, 0L)
+        if (sourceById.containsKey(sourceId) && System.currentTimeMillis() - lastRequest <= 1000L) return
+
         val connection = voiceClient.serverConnection
             .orElseThrow { IllegalStateException("Not connected") }
 
@@ -195,7 +203,8 @@ class VoiceClientSourceManager(
         voiceClient.eventBus.unregister(voiceClient, source)
 
         sourceById.remove(source.sourceInfo.id)
-        sourcesByLineId.remove(source.sourceInfo.lineId, source)
+        // line of the source can be changed in the update which is not applied yet
+        sourcesByLineId.values().remove(source)
 
         (source.sourceInfo as? PlayerSourceInfo)?.playerInfo?.let {
             sourcesByPlayerId.remove(it.playerId, source)
@@ -218,25 +227,37 @@ class VoiceClientSourceManager(
     private fun createPlayerSource(sourceInfo: PlayerSourceInfo): ClientAudioSource<PlayerSourceInfo> {
         return ClientPlayerSource(
             voiceClient, config, sourceInfo
-        ).also { voiceClient.eventBus.register(voiceClient, it) }
+        ).also {
+            voiceClient.eventBus.register(voiceClient, it)
+            it.initialize()
+        }
     }
 
     private fun createEntitySource(sourceInfo: EntitySourceInfo): ClientAudioSource<EntitySourceInfo> {
         return ClientEntitySource(
             voiceClient, config, sourceInfo
-        ).also { voiceClient.eventBus.register(voiceClient, it) }
+        ).also {
+            voiceClient.eventBus.register(voiceClient, it)
+            it.initialize()
+        }
     }
 
     private fun createDirectSource(sourceInfo: DirectSourceInfo): ClientAudioSource<DirectSourceInfo> {
         return ClientDirectSource(
             voiceClient, config, sourceInfo
-        ).also { voiceClient.eventBus.register(voiceClient, it) }
+        ).also {
+            voiceClient.eventBus.register(voiceClient, it)
+            it.initialize()
+        }
     }
 
     private fun createStaticSource(sourceInfo: StaticSourceInfo): ClientAudioSource<StaticSourceInfo> {
         return ClientStaticSource(
             voiceClient, config, sourceInfo
-        ).also { voiceClient.eventBus.register(voiceClient, it) }
+        ).also {
+            voiceClient.eventBus.register(voiceClient, it)
+            it.initialize()
+        }
     }
 
     companion object {
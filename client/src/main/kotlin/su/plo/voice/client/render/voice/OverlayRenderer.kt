@@ -15,8 +15,14 @@ import su.plo.voice.api.client.PlasmoVoiceClient
 import su.plo.voice.api.client.audio.line.ClientSourceLine
 import su.plo.voice.api.client.config.overlay.OverlayPosition
 import su.plo.voice.api.client.config.overlay.OverlaySourceState
+import su.plo.voice.api.client.event.audio.source.AudioSourceActivatedEvent
+import su.plo.voice.api.client.event.audio.source.AudioSourceClosedEvent
+import su.plo.voice.api.client.event.audio.source.AudioSourceDeactivatedEvent
+import su.plo.voice.api.client.event.audio.source.AudioSourceInitializedEvent
 import su.plo.voice.api.event.EventSubscribe
 import su.plo.voice.client.config.VoiceClientConfig
+import su.plo.voice.client.event.language.LanguageChangedEvent
+import su.plo.voice.client.event.line.SourceLineUpdatedEvent
 import su.plo.voice.client.event.render.HudRenderEvent
 import su.plo.voice.proto.data.audio.source.DirectSourceInfo
 import su.plo.voice.proto.data.audio.source.PlayerSourceInfo
@@ -24,71 +30,121 @@ import su.plo.voice.proto.data.audio.source.SourceInfo
 import su.plo.voice.proto.data.player.MinecraftGameProfile
 import java.util.*
 
+/**
+ * Renders the players and sources of the source lines on the HUD
+ *
+ * Overlay entries are rebuilt only when sources, source lines or overlay source states are changed,
+ * so the HUD pass only draws the prepared entries
+ */
 class OverlayRenderer(
     private val voiceClient: PlasmoVoiceClient,
     private val config: VoiceClientConfig
 ) {
 
+    @Volatile
+    private var dirty = true
+    private var entries: List<OverlayEntry> = emptyList()
+    private val sourceStates: MutableMap<UUID, OverlaySourceState> = Maps.newHashMap()
+    private var lastSkinUpdate = 0L
+
     @EventSubscribe
     fun onHudRender(event: HudRenderEvent) {
         if (!voiceClient.serverInfo.isPresent ||
             !voiceClient.udpClientManager.client.isPresent ||
             Minecraft.getInstance().player == null ||
+            Minecraft.getInstance().level == null ||
             !config.overlay.overlayEnabled.value()
-        ) return
+        ) {
+            dirty = true
+            return
+        }
+
+        if (dirty || isSourceStatesChanged()) rebuild()
+        if (entries.isEmpty()) return
+
+        val now = System.currentTimeMillis()
+        if (now - lastSkinUpdate > SKIN_UPDATE_INTERVAL_MS) {
+            lastSkinUpdate = now
+            entries.forEach { it.updateSkin() }
+        }
 
         val position = config.overlay.overlayPosition.value()
-        var renderedIndex = 0
+        entries.forEachIndexed { index, entry ->
+            renderEntry(event.stack, position, index, entry)
+        }
+    }
+
+    @EventSubscribe
+    fun onSourceInitialized(event: AudioSourceInitializedEvent) {
+        dirty = true
+    }
+
+    @EventSubscribe
+    fun onSourceClosed(event: AudioSourceClosedEvent) {
+        dirty = true
+    }
+
+    @EventSubscribe
+    fun onSourceActivated(event: AudioSourceActivatedEvent) {
+        dirty = true
+    }
+
+    @EventSubscribe
+    fun onSourceDeactivated(event: AudioSourceDeactivatedEvent) {
+        dirty = true
+    }
+
+    @EventSubscribe
+    fun onSourceLineUpdated(event: SourceLineUpdatedEvent) {
+        dirty = true
+    }
+
+    @EventSubscribe
+    fun onLanguageChanged(event: LanguageChangedEvent) {
+        dirty = true
+    }
+
+    private fun isSourceStatesChanged(): Boolean {
+        val lines = voiceClient.sourceLineManager.lines
+        if (lines.size != sourceStates.size) return true
+
+        return lines.any { sourceStates[it.id] != config.overlay.sourceStates.getState(it).value() }
+    }
+
+    private fun rebuild() {
+        // reset the flag before reading sources, so changes made during the rebuild are not lost
+        dirty = false
+        sourceStates.clear()
+        lastSkinUpdate = System.currentTimeMillis()
+
+        val entries: MutableList<OverlayEntry> = Lists.newArrayList()
 
         for (sourceLine in voiceClient.sourceLineManager.lines) {
             val sourceState = config.overlay.sourceStates.getState(sourceLine).value()
+            sourceStates[sourceLine.id] = sourceState
             if (sourceState == OverlaySourceState.OFF || sourceState == OverlaySourceState.NEVER) continue
 
-            val toRender: MutableList<Pair<UUID, RenderSourceInfo>> = Lists.newArrayList()
+            val lineIcon = ResourceLocation(sourceLine.icon)
 
             if (sourceLine.hasPlayers() && sourceState == OverlaySourceState.ALWAYS) {
-                val toRenderByPlayerId: MutableMap<UUID, RenderSourceInfo> = Maps.newHashMap()
+                val entryByPlayerId: MutableMap<UUID, OverlayEntry> = Maps.newHashMap()
 
                 for (player in sourceLine.players!!.sortedBy { it.name }) {
-                    val renderSourceInfo = RenderSourceInfo(
-                        player.id,
+                    val entry = OverlayEntry(
+                        lineIcon,
                         MinecraftTextComponent.literal(player.name),
-                        player,
-                        false
+                        player
                     )
 
-                    toRenderByPlayerId[player.id] = renderSourceInfo
-                    toRender.add(
-                        Pair(
-                            player.id,
-                            renderSourceInfo
-                        )
-                    )
+                    entryByPlayerId[player.id] = entry
+                    entries.add(entry)
                 }
 
                 for (selfSource in voiceClient.sourceManager.selfSourceInfos) {
                     val selfSourceInfo = selfSource.selfSourceInfo
                     if (selfSourceInfo.sourceInfo.lineId != sourceLine.id) continue
 
-//                val activated = voiceClient.activationManager
-//                    .getActivationById(selfSourceInfo.activationId)
-//                    .orElse(null)?.isActivated
-//                    ?: false
-
-                    toRenderByPlayerId[selfSourceInfo.playerId]?.apply {
-                        activated = voiceClient.activationManager
-                            .getActivationById(selfSourceInfo.activationId)
-                            .orElse(null)?.isActive
-                            ?: false
-                    }
-                    // todo: WHEN_TALKING?
-//                ?: run {
-//                val sourceInfo = selfSourceInfo.sourceInfo
-//                if (sourceState == OverlaySourceState.WHEN_TALKING && sourceInfo is DirectSourceInfo) {
-//                    val player = sourceLine.players.find { it.id == sourceInfo.sender?.id } ?: return@run
-//                    renderPlayer(player, true)
-//                }
-//            }
+                    entryByPlayerId[selfSourceInfo.playerId]?.selfActivationId = selfSourceInfo.activationId
                 }
 
                 for (source in voiceClient.sourceManager.getSourcesByLineId(sourceLine.id)) {
@@ -96,50 +152,43 @@ class OverlayRenderer(
 
                     val sourceInfo = source.sourceInfo as? DirectSourceInfo ?: continue
 
-                    toRenderByPlayerId[sourceInfo.sender?.id]?.apply {
-                        activated = true
-                    }
+                    entryByPlayerId[sourceInfo.sender?.id]?.heard = true
                 }
             } else {
                 for (source in voiceClient.sourceManager.getSourcesByLineId(sourceLine.id)) {
                     if (!source.canHear()) continue
 
-                    val sourceId = getSourceSenderId(source.sourceInfo)
-
-                    toRender.add(
-                        Pair(
-                            sourceId,
-                            RenderSourceInfo(
-                                getSourceSenderId(source.sourceInfo),
-                                getSourceSenderName(source.sourceInfo, sourceLine),
-                                getSourcePlayer(source.sourceInfo),
-                                true
-                            )
-                        )
+                    entries.add(
+                        OverlayEntry(
+                            lineIcon,
+                            getSourceSenderName(source.sourceInfo, sourceLine),
+                            getSourcePlayer(source.sourceInfo)
+                        ).apply { heard = true }
                     )
                 }
             }
-
-            for ((_, sourceInfo) in toRender) {
-                renderEntry(event.stack, sourceLine, position, renderedIndex++, sourceInfo)
-            }
         }
+
+        entries.forEach { it.updateSkin() }
+        this.entries = entries
     }
 
     private fun renderEntry(
         stack: UMatrixStack,
-        sourceLine: ClientSourceLine,
         position: OverlayPosition,
         index: Int,
-        sourceInfo: RenderSourceInfo
+        entry: OverlayEntry
     ) {
-        if (Minecraft.getInstance().level == null) return
-
         val overlayStyle = config.overlay.overlayStyle.value()
 
+        val activated = entry.heard || entry.selfActivationId?.let { activationId ->
+            voiceClient.activationManager
+                .getActivationById(activationId)
+                .orElse(null)?.isActive
+        } ?: false
+
         // todo: entity renderer?
-        val sourceName = sourceInfo.sourceName
-        val textWidth = RenderUtil.getTextWidth(sourceName) + 8
+        val textWidth = entry.textWidth
         var x = calcPositionX(position.x)
         var y = calcPositionY(position.y)
         if (position.isBottom) {
@@ -158,12 +207,12 @@ class OverlayRenderer(
 
         // render helm
         if (overlayStyle.hasSkin) {
-            sourceInfo.player?.let {
+            entry.skin?.let {
                 if (position.isRight) {
                     x -= 16
                 }
 
-                UGraphics.bindTexture(0, loadSkin(it))
+                UGraphics.bindTexture(0, it)
                 UGraphics.color4f(1f, 1f, 1f, 1f)
                 RenderUtil.blit(stack, x, y, 16, 16, 8f, 8f, 8, 8, 64, 64)
                 UGraphics.enableBlend()
@@ -182,21 +231,21 @@ class OverlayRenderer(
             }
 
             RenderUtil.fill(stack, x, y, x + textWidth, y + ENTRY_HEIGHT, backgroundColor)
-            RenderUtil.drawString(stack, sourceName, x + 4, y + 4, 0xFFFFFF, false)
+            RenderUtil.drawString(stack, entry.sourceName, x + 4, y + 4, 0xFFFFFF, false)
 
-            if (sourceInfo.activated && !position.isRight) {
+            if (activated && !position.isRight) {
                 x += textWidth + 1
             }
         }
 
         // render line icon
-        if (sourceInfo.activated) {
+        if (activated) {
             if (position.isRight) {
                 x -= 16 + 1
             }
 
             RenderUtil.fill(stack, x, y, x + 16, y + ENTRY_HEIGHT, backgroundColor)
-            UGraphics.bindTexture(0, ResourceLocation(sourceLine.icon))
+            UGraphics.bindTexture(0, entry.lineIcon)
             UGraphics.color4f(1f, 1f, 1f, 1f)
             RenderUtil.blit(stack, x, y, 0, 0f, 0f, 16, 16, 16, 16)
         }
@@ -236,17 +285,6 @@ class OverlayRenderer(
         }
     }
 
-    private fun getSourceSenderId(sourceInfo: SourceInfo): UUID =
-        when (sourceInfo) {
-            is DirectSourceInfo ->
-                sourceInfo.sender?.id ?: sourceInfo.id
-
-            is PlayerSourceInfo ->
-                sourceInfo.playerInfo.playerId
-
-            else -> sourceInfo.id
-        }
-
     private fun getSourcePlayer(sourceInfo: SourceInfo): MinecraftGameProfile? =
         when (sourceInfo) {
             is DirectSourceInfo ->
@@ -306,15 +344,26 @@ class OverlayRenderer(
         }
     }
 
+    private inner class OverlayEntry(
+        val lineIcon: ResourceLocation,
+        val sourceName: MinecraftTextComponent,
+        val player: MinecraftGameProfile?
+    ) {
+
+        val textWidth = RenderUtil.getTextWidth(sourceName) + 8
+        var skin: ResourceLocation? = null
+        var heard = false
+        var selfActivationId: UUID? = null
+
+        fun updateSkin() {
+            skin = player?.let { loadSkin(it) }
+        }
+    }
+
     companion object {
         private const val ENTRY_HEIGHT = 16
         private const val MAX_TEXT_WIDTH = 40
+        // skins are loaded asynchronously, so cached skin locations are updated periodically
+        private const val SKIN_UPDATE_INTERVAL_MS = 1_000L
     }
 }
-
-private data class RenderSourceInfo(
-    val sourceId: UUID,
-    val sourceName: MinecraftTextComponent,
-    val player: MinecraftGameProfile?,
-    var activated: Boolean
-)
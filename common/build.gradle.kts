@@ -6,6 +6,7 @@ val buildVersion: String by rootProject
 
 plugins {
     id("org.jetbrains.gradle.plugin.idea-ext")
+    alias(libs.plugins.jmh)
 }
 
 dependencies {
@@ -35,6 +36,56 @@ val generateTemplates = tasks.register<Copy>("generateTemplates") {
 
 sourceSets.main.get().java.srcDir(generateTemplates.map { it.outputs })
 
+jmh {
+    includes.set(listOf(".*Benchmark"))
+    warmupIterations.set(2)
+    iterations.set(5)
+    fork.set(1)
+    // enables Vector API audio ops in AudioUtilBenchmark
+    jvmArgsAppend.add("--add-modules=jdk.incubator.vector")
+}
+
+// Java 22 sources (FFM opus binding) require JDK 22 toolchain installed locally,
+// so they are compiled only with -PffmOpus=true
+val ffmOpus = (findProperty("ffmOpus") as String?)?.toBoolean() ?: false
+
+if (ffmOpus) {
+    val java22: SourceSet by sourceSets.creating {
+        java.setSrcDirs(listOf("src/main/java22"))
+        compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+    }
+
+    tasks.named<JavaCompile>(java22.compileJavaTaskName) {
+        javaCompiler.set(javaToolchains.compilerFor {
+            languageVersion.set(JavaLanguageVersion.of(22))
+        })
+        options.release.set(22)
+        options.encoding = Charsets.UTF_8.name()
+    }
+
+    // FFM classes are visible only to Java 22+ runtimes,
+    // older runtimes never see class files they can't load
+    tasks.jar {
+        into("META-INF/versions/22") {
+            from(java22.output)
+        }
+        manifest {
+            attributes("Multi-Release" to "true")
+        }
+    }
+
+    dependencies {
+        "jmhRuntimeOnly"(java22.output)
+    }
+
+    // run benchmarks on Java 22, so FFM implementation is benchmarked too
+    tasks.named<me.champeau.jmh.JMHTask>("jmh") {
+        javaLauncher.set(javaToolchains.launcherFor {
+            languageVersion.set(JavaLanguageVersion.of(22))
+        })
+    }
+}
+
 fun Project.idea(block: IdeaModel.() -> Unit) =
     (this as ExtensionAware).extensions.configure("idea", block)
 
@@ -0,0 +1,93 @@
+package su.plo.voice.api.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares scalar and Vector API audio ops on 20ms stereo frame at 48kHz
+ * <br/>
+ * "vector" requires jdk.incubator.vector module
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class AudioUtilBenchmark {
+
+    private static final int SAMPLES = 960 * 2;
+
+    @Param({"scalar", "vector"})
+    public String implementation;
+
+    private AudioOps ops;
+
+    private short[] samples;
+    private byte[] bytes;
+    private short[] shorts;
+    private float[] floats;
+    private short[] mono;
+
+    @Setup
+    public void setup() throws Exception {
+        switch (implementation) {
+            case "scalar":
+                this.ops = new ScalarAudioOps();
+                break;
+            case "vector":
+                this.ops = (AudioOps) Class.forName("su.plo.voice.api.util.VectorAudioOps")
+                        .getMethod("create")
+                        .invoke(null);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown implementation " + implementation);
+        }
+
+        Random random = new Random(0L);
+        this.samples = new short[SAMPLES];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) random.nextInt();
+        }
+
+        this.bytes = new byte[SAMPLES * 2];
+        this.shorts = new short[SAMPLES];
+        this.floats = new float[SAMPLES];
+        this.mono = new short[SAMPLES / 2];
+
+        ops.shortsToBytes(samples, 0, bytes, 0, SAMPLES);
+    }
+
+    @Benchmark
+    public byte[] shortsToBytes() {
+        ops.shortsToBytes(samples, 0, bytes, 0, SAMPLES);
+        return bytes;
+    }
+
+    @Benchmark
+    public short[] bytesToShorts() {
+        ops.bytesToShorts(bytes, 0, shorts, 0, SAMPLES);
+        return shorts;
+    }
+
+    @Benchmark
+    public float[] shortsToFloats() {
+        ops.shortsToFloats(samples, 0, floats, 0, SAMPLES);
+        return floats;
+    }
+
+    @Benchmark
+    public short[] convertToMono() {
+        ops.convertToMono(samples, 0, mono, 0, mono.length);
+        return mono;
+    }
+
+    @Benchmark
+    public double sumOfSquares() {
+        return ops.sumOfSquares(samples, 0, SAMPLES);
+    }
+
+    @Benchmark
+    public byte[] shortsToBytesAllocating() {
+        return AudioUtil.shortsToBytes(samples);
+    }
+}
@@ -0,0 +1,104 @@
+package su.plo.voice.audio.codec.opus;
+
+import org.openjdk.jmh.annotations.*;
+import su.plo.voice.api.audio.codec.CodecException;
+import su.plo.voice.proto.data.audio.codec.opus.OpusMode;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares opus implementations encoding and decoding 20ms frame at 48kHz
+ * <br/>
+ * "ffm" requires Java 22+
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class OpusCodecBenchmark {
+
+    private static final int SAMPLE_RATE = 48_000;
+    private static final int BUFFER_SIZE = 960;
+    private static final int MTU_SIZE = 1024;
+
+    @Param({"java", "jna", "ffm"})
+    public String implementation;
+
+    @Param({"false", "true"})
+    public boolean stereo;
+
+    private BaseOpusEncoder encoder;
+    private BaseOpusDecoder decoder;
+
+    private short[] samples;
+    private byte[] encoded;
+    private byte[] encodedFrame;
+    private short[] decoded;
+
+    @Setup
+    public void setup() throws Exception {
+        int channels = stereo ? 2 : 1;
+
+        switch (implementation) {
+            case "java":
+                this.encoder = new JavaOpusEncoder(SAMPLE_RATE, stereo, BUFFER_SIZE, OpusMode.VOIP, MTU_SIZE);
+                this.decoder = new JavaOpusDecoder(SAMPLE_RATE, stereo, BUFFER_SIZE, MTU_SIZE);
+                break;
+            case "jna":
+                this.encoder = new NativeOpusEncoder(SAMPLE_RATE, stereo, BUFFER_SIZE, OpusMode.VOIP, MTU_SIZE);
+                this.decoder = new NativeOpusDecoder(SAMPLE_RATE, stereo, BUFFER_SIZE, MTU_SIZE);
+                break;
+            case "ffm":
+                this.encoder = (BaseOpusEncoder) Class.forName("su.plo.voice.audio.codec.opus.FfmOpusEncoder")
+                        .getConstructor(int.class, boolean.class, int.class, OpusMode.class, int.class)
+                        .newInstance(SAMPLE_RATE, stereo, BUFFER_SIZE, OpusMode.VOIP, MTU_SIZE);
+                this.decoder = (BaseOpusDecoder) Class.forName("su.plo.voice.audio.codec.opus.FfmOpusDecoder")
+                        .getConstructor(int.class, boolean.class, int.class, int.class)
+                        .newInstance(SAMPLE_RATE, stereo, BUFFER_SIZE, MTU_SIZE);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown implementation " + implementation);
+        }
+
+        encoder.open();
+        decoder.open();
+
+        // sine with some noise, so the encoder doesn't switch to DTX
+        Random random = new Random(0L);
+        this.samples = new short[BUFFER_SIZE * channels];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (Math.sin(i / 10.0) * 8_000 + random.nextInt(1_000));
+        }
+
+        this.encoded = new byte[MTU_SIZE];
+        this.encodedFrame = Arrays.copyOf(encoded, encoder.encode(samples, 0, samples.length, encoded, 0, encoded.length));
+        this.decoded = new short[BUFFER_SIZE * channels];
+    }
+
+    @TearDown
+    public void tearDown() {
+        encoder.close();
+        decoder.close();
+    }
+
+    @Benchmark
+    public int encode() throws CodecException {
+        return encoder.encode(samples, 0, samples.length, encoded, 0, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encodeArray() throws CodecException {
+        return encoder.encode(samples);
+    }
+
+    @Benchmark
+    public int decode() throws CodecException {
+        return decoder.decode(encodedFrame, 0, encodedFrame.length, decoded, 0, decoded.length);
+    }
+
+    @Benchmark
+    public short[] decodeArray() throws CodecException {
+        return decoder.decode(encodedFrame);
+    }
+}
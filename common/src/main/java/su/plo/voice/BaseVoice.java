@@ -15,6 +15,8 @@ import su.plo.voice.api.logging.DebugLogger;
 import su.plo.voice.audio.codec.VoiceCodecManager;
 import su.plo.voice.audio.codec.opus.OpusCodecSupplier;
 import su.plo.voice.encryption.VoiceEncryptionManager;
+import su.plo.voice.encryption.aead.AesGcmEncryptionSupplier;
+import su.plo.voice.encryption.aead.ChaCha20Poly1305EncryptionSupplier;
 import su.plo.voice.encryption.aes.AesEncryptionSupplier;
 import su.plo.voice.event.VoiceEventBus;
 import su.plo.voice.util.version.ModrinthLoader;
@@ -43,6 +45,11 @@ public abstract class BaseVoice implements PlasmoVoice {
         this.loader = loader;
         this.addons = new VoiceAddonManager(this);
 
+        // registration order is the preference order advertised by the server
+        encryption.register(new AesGcmEncryptionSupplier());
+        if (ChaCha20Poly1305EncryptionSupplier.isSupported()) {
+            encryption.register(new ChaCha20Poly1305EncryptionSupplier());
+        }
         encryption.register(new AesEncryptionSupplier());
 
         codecs.register(new OpusCodecSupplier());
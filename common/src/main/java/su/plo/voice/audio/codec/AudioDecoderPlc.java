@@ -5,4 +5,11 @@ import su.plo.voice.api.audio.codec.CodecException;
 public interface AudioDecoderPlc {
 
     short[] decodePLC() throws CodecException;
+
+    /**
+     * Conceals the lost packet into the caller-provided output array
+     *
+     * @return the number of samples written to the output array
+     */
+    int decodePLC(short[] output, int outputOffset, int outputLength) throws CodecException;
 }
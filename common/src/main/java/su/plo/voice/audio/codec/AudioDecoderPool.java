@@ -0,0 +1,116 @@
+package su.plo.voice.audio.codec;
+
+import com.google.common.collect.Maps;
+import lombok.Data;
+import org.jetbrains.annotations.NotNull;
+import su.plo.voice.api.audio.codec.AudioDecoder;
+import su.plo.voice.api.audio.codec.CodecManager;
+import su.plo.voice.proto.data.audio.codec.CodecInfo;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Bounded pool of audio decoders keyed by codec and audio format
+ * <br/>
+ * Decoders are leased by sources while they are active and returned after they are reset,
+ * so the number of decoders equals the number of active sources instead of all known sources
+ * <br/>
+ * At most {@code maxIdle} returned decoders are kept, the rest are closed
+ */
+public final class AudioDecoderPool {
+
+    private final CodecManager codecManager;
+    private final int maxIdle;
+
+    private final Map<Key, Deque<AudioDecoder>> idleByKey = Maps.newHashMap();
+    private final Map<AudioDecoder, Key> leased = new IdentityHashMap<>();
+
+    private int idleCount;
+
+    public AudioDecoderPool(@NotNull CodecManager codecManager, int maxIdle) {
+        this.codecManager = checkNotNull(codecManager, "codecManager cannot be null");
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Leases an idle decoder with the same codec and format or creates the new one
+     *
+     * @return the opened decoder, must be returned with {@link #release(AudioDecoder)}
+     */
+    public synchronized @NotNull AudioDecoder lease(@NotNull CodecInfo codecInfo,
+                                                    int sampleRate,
+                                                    boolean stereo,
+                                                    int bufferSize,
+                                                    int mtuSize) {
+        Key key = new Key(codecInfo.getName(), codecInfo.getParams(), sampleRate, stereo, bufferSize, mtuSize);
+
+        AudioDecoder decoder = null;
+        Deque<AudioDecoder> idle = idleByKey.get(key);
+        if (idle != null) {
+            decoder = idle.pollFirst();
+            if (idle.isEmpty()) idleByKey.remove(key);
+        }
+
+        if (decoder != null) {
+            idleCount--;
+        } else {
+            decoder = codecManager.createDecoder(codecInfo, sampleRate, stereo, bufferSize, mtuSize);
+        }
+
+        leased.put(decoder, key);
+        return decoder;
+    }
+
+    /**
+     * Resets the decoder and returns it to the pool
+     * <br/>
+     * Decoder is closed if the pool is full or the decoder wasn't leased from this pool
+     */
+    public synchronized void release(@NotNull AudioDecoder decoder) {
+        Key key = leased.remove(decoder);
+        if (key == null || idleCount >= maxIdle || !decoder.isOpen()) {
+            decoder.close();
+            return;
+        }
+
+        decoder.reset();
+        idleByKey.computeIfAbsent(key, (k) -> new ArrayDeque<>()).addFirst(decoder);
+        idleCount++;
+    }
+
+    /**
+     * Closes all idle decoders
+     * <br/>
+     * Leased decoders are closed when they are returned
+     */
+    public synchronized void clear() {
+        idleByKey.values().forEach((idle) -> idle.forEach(AudioDecoder::close));
+        idleByKey.clear();
+        leased.clear();
+        idleCount = 0;
+    }
+
+    public synchronized int getIdleCount() {
+        return idleCount;
+    }
+
+    public synchronized int getLeasedCount() {
+        return leased.size();
+    }
+
+    @Data
+    private static final class Key {
+
+        private final String name;
+        private final Map<String, String> params;
+        private final int sampleRate;
+        private final boolean stereo;
+        private final int bufferSize;
+        private final int mtuSize;
+    }
+}
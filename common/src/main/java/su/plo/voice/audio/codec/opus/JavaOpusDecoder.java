@@ -4,6 +4,8 @@ import su.plo.opus.concentus.OpusDecoder;
 import su.plo.opus.concentus.OpusException;
 import su.plo.voice.api.audio.codec.CodecException;
 
+import java.util.Arrays;
+
 public final class JavaOpusDecoder implements BaseOpusDecoder {
 
     private final int sampleRate;
@@ -25,27 +27,31 @@ public final class JavaOpusDecoder implements BaseOpusDecoder {
     public short[] decode(byte[] encoded) throws CodecException {
         if (!isOpen()) throw new CodecException("Decoder is not open");
 
+        int length = encoded == null ? 0 : encoded.length;
+        int result = decode(encoded, 0, length, buffer, 0, buffer.length);
+
+        return Arrays.copyOf(buffer, result);
+    }
+
+    @Override
+    public int decode(byte[] encoded, int offset, int length,
+                      short[] output, int outputOffset, int outputLength) throws CodecException {
+        if (!isOpen()) throw new CodecException("Decoder is not open");
+
+        int frameSize = Math.min(bufferSize, outputLength / channels);
+
         int result;
         try {
-            if (encoded == null || encoded.length == 0) {
-                result = decoder.decode(null, 0, 0, buffer, 0, bufferSize, false);
+            if (encoded == null || length == 0) {
+                result = decoder.decode(null, 0, 0, output, outputOffset, frameSize, false);
             } else {
-                result = decoder.decode(encoded, 0, encoded.length, buffer, 0, bufferSize, false);
+                result = decoder.decode(encoded, offset, length, output, outputOffset, frameSize, false);
             }
         } catch (OpusException e) {
             throw new CodecException("Failed to decode audio", e);
         }
 
-        short[] decoded;
-        if (encoded == null || encoded.length == 0) {
-            decoded = new short[result];
-        } else {
-            decoded = new short[result * channels];
-        }
-
-        System.arraycopy(buffer, 0, decoded, 0, decoded.length);
-
-        return decoded;
+        return result * channels;
     }
 
     @Override
@@ -82,4 +88,9 @@ public final class JavaOpusDecoder implements BaseOpusDecoder {
     public short[] decodePLC() throws CodecException {
         return decode(null);
     }
+
+    @Override
+    public int decodePLC(short[] output, int outputOffset, int outputLength) throws CodecException {
+        return decode(null, 0, 0, output, outputOffset, outputLength);
+    }
 }
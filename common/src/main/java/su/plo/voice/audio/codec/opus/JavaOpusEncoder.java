@@ -6,6 +6,8 @@ import su.plo.opus.concentus.OpusException;
 import su.plo.voice.api.audio.codec.CodecException;
 import su.plo.voice.proto.data.audio.codec.opus.OpusMode;
 
+import java.util.Arrays;
+
 public final class JavaOpusEncoder implements BaseOpusEncoder {
 
     private final int sampleRate;
@@ -34,17 +36,22 @@ public final class JavaOpusEncoder implements BaseOpusEncoder {
     public byte[] encode(short[] samples) throws CodecException {
         if (!isOpen()) throw new CodecException("Encoder is not open");
 
-        int result;
+        int result = encode(samples, 0, samples.length, buffer, 0, mtuSize);
+
+        return Arrays.copyOf(buffer, result);
+    }
+
+    @Override
+    public int encode(short[] samples, int offset, int length,
+                      byte[] output, int outputOffset, int outputLength) throws CodecException {
+        if (!isOpen()) throw new CodecException("Encoder is not open");
+        if (length < bufferSize * channels) throw new CodecException("Not enough samples to encode");
+
         try {
-            result = encoder.encode(samples, 0, bufferSize, buffer, 0, mtuSize);
+            return encoder.encode(samples, offset, bufferSize, output, outputOffset, Math.min(mtuSize, outputLength));
         } catch (OpusException e) {
             throw new CodecException("Failed to encode audio", e);
         }
-
-        byte[] encoded = new byte[result];
-        System.arraycopy(buffer, 0, encoded, 0, result);
-
-        return encoded;
     }
 
     @Override
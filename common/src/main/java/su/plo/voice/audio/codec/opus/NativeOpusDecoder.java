@@ -15,6 +15,7 @@ public final class NativeOpusDecoder implements BaseOpusDecoder {
     private final int mtuSize;
 
     private PointerByReference decoder;
+    private byte[] encodedBuffer;
     private ShortBuffer buffer;
 
     public NativeOpusDecoder(int sampleRate, boolean stereo, int bufferSize, int mtuSize) {
@@ -28,33 +29,35 @@ public final class NativeOpusDecoder implements BaseOpusDecoder {
     public short[] decode(byte[] encoded) throws CodecException {
         if (!isOpen()) throw new CodecException("Decoder is not open");
 
-        buffer.clear();
-        int result;
-        if (encoded == null || encoded.length == 0) {
-            result = Opus.INSTANCE.opus_decode(decoder, null, 0, buffer, bufferSize, 0);
-        } else {
-            result = Opus.INSTANCE.opus_decode(decoder, encoded, encoded.length, buffer, bufferSize, 0);
-        }
+        int length = encoded == null ? 0 : encoded.length;
+        int result = decode(encoded, 0, length);
 
-        if (result != bufferSize) throw new CodecException("Audio was decoded with invalid frame size");
-        if (result < 0) throw new CodecException("Failed to decode audio: " + Opus.INSTANCE.opus_strerror(result));
+        short[] decoded = new short[result];
+        buffer.get(decoded, 0, decoded.length);
 
-        short[] decoded;
-        if (encoded == null || encoded.length == 0) {
-            decoded = new short[result];
-        } else {
-            decoded = new short[result * channels];
+        return decoded;
+    }
+
+    @Override
+    public int decode(byte[] encoded, int offset, int length,
+                      short[] output, int outputOffset, int outputLength) throws CodecException {
+        if (!isOpen()) throw new CodecException("Decoder is not open");
+
+        int result = decode(encoded, offset, length);
+        if (result > outputLength) {
+            throw new CodecException("Output buffer is too small: " + outputLength + " < " + result);
         }
 
-        buffer.get(decoded, 0, decoded.length);
+        buffer.get(output, outputOffset, result);
 
-        return decoded;
+        return result;
     }
 
     @Override
     public void open() throws CodecException {
         IntBuffer error = IntBuffer.allocate(1);
         this.decoder = Opus.INSTANCE.opus_decoder_create(sampleRate, channels, error);
+        this.encodedBuffer = new byte[mtuSize];
         this.buffer = ShortBuffer.allocate(bufferSize * channels);
 
         if (error.get() != Opus.OPUS_OK && decoder == null) {
@@ -75,6 +78,7 @@ public final class NativeOpusDecoder implements BaseOpusDecoder {
 
         Opus.INSTANCE.opus_decoder_destroy(decoder);
         this.decoder = null;
+        this.encodedBuffer = null;
         this.buffer = null;
     }
 
@@ -87,4 +91,37 @@ public final class NativeOpusDecoder implements BaseOpusDecoder {
     public short[] decodePLC() throws CodecException {
         return decode(null);
     }
+
+    @Override
+    public int decodePLC(short[] output, int outputOffset, int outputLength) throws CodecException {
+        return decode(null, 0, 0, output, outputOffset, outputLength);
+    }
+
+    /**
+     * Decodes data into the internal buffer
+     *
+     * @return the number of decoded samples in the internal buffer
+     */
+    private int decode(byte[] encoded, int offset, int length) throws CodecException {
+        buffer.clear();
+        int result;
+        if (encoded == null || length == 0) {
+            result = Opus.INSTANCE.opus_decode(decoder, null, 0, buffer, bufferSize, 0);
+        } else {
+            // native binding doesn't accept array offset
+            if (offset != 0) {
+                if (length > encodedBuffer.length) throw new CodecException("Encoded data is larger than MTU");
+
+                System.arraycopy(encoded, offset, encodedBuffer, 0, length);
+                encoded = encodedBuffer;
+            }
+
+            result = Opus.INSTANCE.opus_decode(decoder, encoded, length, buffer, bufferSize, 0);
+        }
+
+        if (result != bufferSize) throw new CodecException("Audio was decoded with invalid frame size");
+        if (result < 0) throw new CodecException("Failed to decode audio: " + Opus.INSTANCE.opus_strerror(result));
+
+        return result * channels;
+    }
 }
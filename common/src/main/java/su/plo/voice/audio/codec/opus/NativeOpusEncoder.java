@@ -18,6 +18,7 @@ public final class NativeOpusEncoder implements BaseOpusEncoder {
     private final int mtuSize;
 
     private PointerByReference encoder;
+    private ShortBuffer samplesBuffer;
     private ByteBuffer buffer;
 
     public NativeOpusEncoder(int sampleRate,
@@ -36,12 +37,7 @@ public final class NativeOpusEncoder implements BaseOpusEncoder {
     public byte[] encode(short[] samples) throws CodecException {
         if (!isOpen()) throw new CodecException("Encoder is not open");
 
-        ShortBuffer shortSamples = ShortBuffer.wrap(samples);
-
-        buffer.clear();
-        int result = Opus.INSTANCE.opus_encode(encoder, shortSamples, bufferSize, buffer, mtuSize);
-
-        if (result < 0) throw new CodecException("Failed to encode audio: " + Opus.INSTANCE.opus_strerror(result));
+        int result = encode(samples, 0, samples.length);
 
         byte[] encoded = new byte[result];
         buffer.get(encoded);
@@ -49,10 +45,26 @@ public final class NativeOpusEncoder implements BaseOpusEncoder {
         return encoded;
     }
 
+    @Override
+    public int encode(short[] samples, int offset, int length,
+                      byte[] output, int outputOffset, int outputLength) throws CodecException {
+        if (!isOpen()) throw new CodecException("Encoder is not open");
+
+        int result = encode(samples, offset, length);
+        if (result > outputLength) {
+            throw new CodecException("Output buffer is too small: " + outputLength + " < " + result);
+        }
+
+        buffer.get(output, outputOffset, result);
+
+        return result;
+    }
+
     @Override
     public void open() throws CodecException {
         IntBuffer error = IntBuffer.allocate(1);
         this.encoder = Opus.INSTANCE.opus_encoder_create(sampleRate, channels, opusMode.getApplication(), error);
+        this.samplesBuffer = ShortBuffer.allocate(bufferSize * channels);
         this.buffer = ByteBuffer.allocate(mtuSize);
 
         if (error.get() != Opus.OPUS_OK && encoder == null) {
@@ -73,6 +85,7 @@ public final class NativeOpusEncoder implements BaseOpusEncoder {
 
         Opus.INSTANCE.opus_encoder_destroy(encoder);
         this.encoder = null;
+        this.samplesBuffer = null;
         this.buffer = null;
     }
 
@@ -95,4 +108,26 @@ public final class NativeOpusEncoder implements BaseOpusEncoder {
 
         return request.get();
     }
+
+    /**
+     * Encodes samples into the internal buffer
+     * <br/>
+     * Samples are copied to the reusable buffer instead of wrapping the array on every call
+     *
+     * @return the number of encoded bytes in the internal buffer
+     */
+    private int encode(short[] samples, int offset, int length) throws CodecException {
+        if (length < bufferSize * channels) throw new CodecException("Not enough samples to encode");
+
+        samplesBuffer.clear();
+        samplesBuffer.put(samples, offset, bufferSize * channels);
+        samplesBuffer.flip();
+
+        buffer.clear();
+        int result = Opus.INSTANCE.opus_encode(encoder, samplesBuffer, bufferSize, buffer, mtuSize);
+
+        if (result < 0) throw new CodecException("Failed to encode audio: " + Opus.INSTANCE.opus_strerror(result));
+
+        return result;
+    }
 }
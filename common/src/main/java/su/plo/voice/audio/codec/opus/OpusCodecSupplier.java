@@ -5,6 +5,7 @@ import su.plo.voice.BaseVoice;
 import su.plo.voice.api.audio.codec.CodecSupplier;
 import su.plo.voice.proto.data.audio.codec.CodecInfo;
 import su.plo.voice.proto.data.audio.codec.opus.OpusEncoderInfo;
+import su.plo.voice.proto.data.audio.codec.opus.OpusMode;
 
 import java.io.IOException;
 
@@ -12,6 +13,11 @@ import static su.plo.voice.util.NativesKt.isNativesSupported;
 
 public final class OpusCodecSupplier implements CodecSupplier<BaseOpusEncoder, BaseOpusDecoder> {
 
+    // FFM classes are compiled for Java 22, so they should be loaded only by name
+    private static final String FFM_ENCODER_CLASS = "su.plo.voice.audio.codec.opus.FfmOpusEncoder";
+    private static final String FFM_DECODER_CLASS = "su.plo.voice.audio.codec.opus.FfmOpusDecoder";
+    private static final String FFM_BINDING_CLASS = "su.plo.voice.audio.codec.opus.FfmOpus";
+
     @Override
     public @NotNull BaseOpusEncoder createEncoder(int sampleRate,
                                                   boolean stereo,
@@ -26,7 +32,19 @@ public final class OpusCodecSupplier implements CodecSupplier<BaseOpusEncoder, B
         }
 
         BaseOpusEncoder encoder = null;
-        if (isNativesSupported()) {
+        if (FfmSupport.SUPPORTED) {
+            try {
+                encoder = (BaseOpusEncoder) Class.forName(FFM_ENCODER_CLASS)
+                        .getConstructor(int.class, boolean.class, int.class, OpusMode.class, int.class)
+                        .newInstance(sampleRate, stereo, bufferSize, opusEncoderInfo.getMode(), mtuSize);
+                encoder.open();
+            } catch (Exception | LinkageError e) {
+                encoder = null;
+                BaseVoice.DEBUG_LOGGER.warn("Failed to load FFM opus. Falling back to JNA impl", e);
+            }
+        }
+
+        if (encoder == null && isNativesSupported()) {
             try {
                 Class.forName("su.plo.opus.Opus");
 
@@ -61,6 +79,18 @@ public final class OpusCodecSupplier implements CodecSupplier<BaseOpusEncoder, B
                                                   int mtuSize,
                                                   @NotNull CodecInfo codecInfo) {
         BaseOpusDecoder decoder;
+        if (FfmSupport.SUPPORTED) {
+            try {
+                decoder = (BaseOpusDecoder) Class.forName(FFM_DECODER_CLASS)
+                        .getConstructor(int.class, boolean.class, int.class, int.class)
+                        .newInstance(sampleRate, stereo, bufferSize, mtuSize);
+                decoder.open();
+                return decoder;
+            } catch (Exception | LinkageError e) {
+                BaseVoice.DEBUG_LOGGER.warn("Failed to load FFM opus. Falling back to JNA impl", e);
+            }
+        }
+
         if (isNativesSupported()) {
             try {
                 Class.forName("su.plo.opus.Opus");
@@ -87,4 +117,42 @@ public final class OpusCodecSupplier implements CodecSupplier<BaseOpusEncoder, B
     public @NotNull String getName() {
         return "opus";
     }
+
+    /**
+     * FFM API is final since Java 22
+     * <br/>
+     * Can be disabled with "plasmovoice.disable_ffm" system property
+     */
+    private static boolean isFfmSupported() {
+        if (!isNativesSupported() || System.getProperty("plasmovoice.disable_ffm") != null) return false;
+
+        String specificationVersion = System.getProperty("java.specification.version");
+        if (specificationVersion == null || specificationVersion.startsWith("1.")) return false;
+
+        try {
+            if (Integer.parseInt(specificationVersion) < 22) return false;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        try {
+            // initializes the binding, so missing libopus is detected here and not on every codec creation
+            Class.forName(FFM_BINDING_CLASS, true, OpusCodecSupplier.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            // jar is built without FFM binding (ffmOpus=false)
+            return false;
+        } catch (Exception | LinkageError e) {
+            BaseVoice.DEBUG_LOGGER.warn("Failed to load FFM opus. Falling back to JNA impl", e);
+            return false;
+        }
+    }
+
+    /**
+     * Resolves FFM support once on the first codec creation
+     */
+    private static final class FfmSupport {
+
+        private static final boolean SUPPORTED = isFfmSupported();
+    }
 }
@@ -0,0 +1,75 @@
+package su.plo.voice.encryption;
+
+import com.google.common.collect.Maps;
+import org.jetbrains.annotations.NotNull;
+import su.plo.voice.api.encryption.Encryption;
+import su.plo.voice.api.encryption.EncryptionException;
+import su.plo.voice.api.encryption.EncryptionManager;
+import su.plo.voice.api.encryption.EncryptionSupplier;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Measures encrypt + decrypt time of a typical opus frame for every registered algorithm
+ */
+public final class EncryptionBenchmark {
+
+    private static final int FRAME_SIZE = 128;
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int ITERATIONS = 10_000;
+
+    private final Map<String, Long> nanosByAlgorithm = Maps.newConcurrentMap();
+
+    /**
+     * Runs the benchmark for all algorithms registered in the manager
+     * <br/>
+     * Algorithms that failed to encrypt or decrypt are skipped
+     */
+    public void run(@NotNull EncryptionManager manager) {
+        byte[] key = new byte[16];
+        byte[] frame = new byte[FRAME_SIZE];
+        EncryptionUtil.nextBytes(key);
+        EncryptionUtil.nextBytes(frame);
+
+        for (EncryptionSupplier supplier : manager.getAlgorithms()) {
+            try {
+                Encryption encryption = supplier.create(key);
+
+                measure(encryption, frame, WARMUP_ITERATIONS);
+                nanosByAlgorithm.put(supplier.getName(), measure(encryption, frame, ITERATIONS));
+            } catch (Exception e) {
+                nanosByAlgorithm.remove(supplier.getName());
+            }
+        }
+    }
+
+    /**
+     * Gets the average encrypt + decrypt time of the algorithm in nanoseconds
+     */
+    public Optional<Long> getResult(@NotNull String algorithm) {
+        return Optional.ofNullable(nanosByAlgorithm.get(algorithm));
+    }
+
+    /**
+     * Gets the fastest measured algorithm from the collection
+     *
+     * @return the fastest algorithm or empty if none of them was measured
+     */
+    public Optional<String> getFastest(@NotNull Collection<String> algorithms) {
+        return algorithms.stream()
+                .filter(nanosByAlgorithm::containsKey)
+                .min(Comparator.comparingLong(nanosByAlgorithm::get));
+    }
+
+    private long measure(@NotNull Encryption encryption, byte[] frame, int iterations) throws EncryptionException {
+        long startTime = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            encryption.decrypt(encryption.encrypt(frame));
+        }
+
+        return (System.nanoTime() - startTime) / iterations;
+    }
+}
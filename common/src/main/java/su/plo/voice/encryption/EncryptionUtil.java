@@ -0,0 +1,31 @@
+package su.plo.voice.encryption;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+public final class EncryptionUtil {
+
+    // SecureRandom is thread-safe, but NativePRNG shares a global lock,
+    // so every thread gets its own non-blocking generator
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(EncryptionUtil::createRandom);
+
+    /**
+     * Fills the array with random bytes using thread's own generator
+     *
+     * @param bytes the array to fill
+     */
+    public static void nextBytes(byte[] bytes) {
+        RANDOM.get().nextBytes(bytes);
+    }
+
+    private static SecureRandom createRandom() {
+        try {
+            return SecureRandom.getInstance("SHA1PRNG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+
+    private EncryptionUtil() {
+    }
+}
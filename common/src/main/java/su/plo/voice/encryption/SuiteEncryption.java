@@ -0,0 +1,92 @@
+package su.plo.voice.encryption;
+
+import org.jetbrains.annotations.NotNull;
+import su.plo.voice.api.encryption.Encryption;
+import su.plo.voice.api.encryption.EncryptionException;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Encryption over the list of algorithms sharing the same key
+ * <br/>
+ * Every frame is prefixed with the index of the algorithm in the list,
+ * so each peer can encrypt with its own fastest algorithm
+ * while still being able to decrypt frames from the others
+ */
+public final class SuiteEncryption implements Encryption {
+
+    private final List<Encryption> suites;
+    private final int encryptIndex;
+    private final Encryption encryption;
+
+    /**
+     * @param suites the encryptions by algorithm index, null if algorithm is not supported
+     * @param encryptIndex the index of algorithm used to encrypt data
+     */
+    public SuiteEncryption(@NotNull List<Encryption> suites, int encryptIndex) {
+        if (suites.size() > 0xFF) {
+            throw new IllegalArgumentException("Too many algorithms");
+        }
+
+        Encryption encryption = suites.get(encryptIndex);
+        if (encryption == null) {
+            throw new IllegalArgumentException("Encrypt algorithm is not supported");
+        }
+
+        this.suites = suites;
+        this.encryptIndex = encryptIndex;
+        this.encryption = encryption;
+    }
+
+    @Override
+    public byte[] encrypt(byte[] data) throws EncryptionException {
+        byte[] encrypted = encryption.encrypt(data);
+
+        byte[] tagged = new byte[encrypted.length + 1];
+        tagged[0] = (byte) encryptIndex;
+        System.arraycopy(encrypted, 0, tagged, 1, encrypted.length);
+
+        return tagged;
+    }
+
+    @Override
+    public byte[] decrypt(byte[] data) throws EncryptionException {
+        if (data.length == 0) throw new EncryptionException("Empty frame");
+
+        byte[] encrypted = new byte[data.length - 1];
+        System.arraycopy(data, 1, encrypted, 0, encrypted.length);
+
+        return getSuite(data[0]).decrypt(encrypted);
+    }
+
+    @Override
+    public int getMaxEncryptedLength(int length) {
+        int maxLength = encryption.getMaxEncryptedLength(length);
+        return maxLength < 0 ? -1 : maxLength + 1;
+    }
+
+    @Override
+    public int encrypt(@NotNull ByteBuffer input, @NotNull ByteBuffer output) throws EncryptionException {
+        output.put((byte) encryptIndex);
+        return encryption.encrypt(input, output) + 1;
+    }
+
+    @Override
+    public int decrypt(@NotNull ByteBuffer input, @NotNull ByteBuffer output) throws EncryptionException {
+        if (!input.hasRemaining()) throw new EncryptionException("Empty frame");
+
+        return getSuite(input.get()).decrypt(input, output);
+    }
+
+    private Encryption getSuite(byte index) throws EncryptionException {
+        int suiteIndex = index & 0xFF;
+
+        Encryption suite = suiteIndex < suites.size() ? suites.get(suiteIndex) : null;
+        if (suite == null) {
+            throw new EncryptionException("Algorithm with index " + suiteIndex + " is not supported");
+        }
+
+        return suite;
+    }
+}
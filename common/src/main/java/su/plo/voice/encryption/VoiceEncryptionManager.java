@@ -7,13 +7,15 @@ import su.plo.voice.api.encryption.EncryptionManager;
 import su.plo.voice.api.encryption.EncryptionSupplier;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 public final class VoiceEncryptionManager implements EncryptionManager {
 
-    private final Map<String, EncryptionSupplier> algorithms = Maps.newHashMap();
+    private final Map<String, EncryptionSupplier> algorithms = Maps.newLinkedHashMap();
 
     @Override
     public synchronized @NotNull Encryption create(@NotNull String name, byte[] data) {
@@ -28,6 +30,29 @@ public final class VoiceEncryptionManager implements EncryptionManager {
         return supplier.create(data);
     }
 
+    @Override
+    public synchronized @NotNull Encryption createSuite(@NotNull List<String> algorithms,
+                                                        @NotNull String encryptAlgorithm,
+                                                        byte[] data) {
+        checkNotNull(algorithms, "algorithms cannot be null");
+        checkNotNull(encryptAlgorithm, "encryptAlgorithm cannot be null");
+        checkNotNull(data, "params cannot be null");
+
+        int encryptIndex = algorithms.indexOf(encryptAlgorithm);
+        if (encryptIndex < 0) {
+            throw new IllegalArgumentException("Encryption algorithm with name " + encryptAlgorithm + " is not in the suite");
+        }
+
+        List<Encryption> suites = algorithms.stream()
+                .map(name -> {
+                    EncryptionSupplier supplier = this.algorithms.get(name);
+                    return supplier != null ? supplier.create(data) : null;
+                })
+                .collect(Collectors.toList());
+
+        return new SuiteEncryption(suites, encryptIndex);
+    }
+
     @Override
     public synchronized void register(@NotNull EncryptionSupplier supplier) {
         String name = supplier.getName();
@@ -0,0 +1,169 @@
+package su.plo.voice.encryption.aead;
+
+import org.jetbrains.annotations.NotNull;
+import su.plo.voice.api.encryption.Encryption;
+import su.plo.voice.api.encryption.EncryptionException;
+import su.plo.voice.encryption.EncryptionUtil;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Authenticated encryption with a deterministic 96-bit nonce per frame
+ * <br/>
+ * The key is shared by all clients of the server, so random nonces would collide after ~2^32 frames network-wide.
+ * Instead, every instance (i.e. every sender) uses a random 64-bit prefix and a 32-bit frame counter,
+ * the prefix is regenerated when the counter is exhausted
+ * <br/>
+ * Frame layout is nonce + ciphertext + tag
+ */
+public final class AeadEncryption implements Encryption {
+
+    private static final int NONCE_LENGTH = 12;
+    private static final int NONCE_PREFIX_LENGTH = 8;
+    private static final long MAX_COUNTER = 0xFFFFFFFFL;
+    // both GCM and Poly1305 tags are 128-bit
+    private static final int TAG_LENGTH = 16;
+
+    private static final ThreadLocal<byte[]> NONCE = ThreadLocal.withInitial(() -> new byte[NONCE_LENGTH]);
+
+    private final String cipherName;
+    private final SecretKeySpec key;
+    private final Function<byte[], AlgorithmParameterSpec> parameters;
+
+    private volatile NonceSequence nonceSequence = new NonceSequence();
+
+    // Cipher is not thread-safe, so instances are cached per thread
+    private final ThreadLocal<Cipher> encryptCipher = ThreadLocal.withInitial(this::createCipher);
+    private final ThreadLocal<Cipher> decryptCipher = ThreadLocal.withInitial(this::createCipher);
+
+    public AeadEncryption(@NotNull String cipherName,
+                          @NotNull SecretKeySpec key,
+                          @NotNull Function<byte[], AlgorithmParameterSpec> parameters) {
+        this.cipherName = cipherName;
+        this.key = key;
+        this.parameters = parameters;
+    }
+
+    @Override
+    public byte[] encrypt(byte[] data) throws EncryptionException {
+        try {
+            byte[] nonce = NONCE.get();
+            Cipher cipher = initEncrypt(nonce);
+
+            // write nonce and encrypted data to the same array
+            byte[] encrypted = new byte[NONCE_LENGTH + cipher.getOutputSize(data.length)];
+            System.arraycopy(nonce, 0, encrypted, 0, NONCE_LENGTH);
+
+            int length = cipher.doFinal(data, 0, data.length, encrypted, NONCE_LENGTH);
+            if (NONCE_LENGTH + length != encrypted.length) {
+                return Arrays.copyOf(encrypted, NONCE_LENGTH + length);
+            }
+
+            return encrypted;
+        } catch (Exception e) {
+            throw new EncryptionException("Failed to encrypt data", e);
+        }
+    }
+
+    @Override
+    public byte[] decrypt(byte[] encrypted) throws EncryptionException {
+        try {
+            byte[] nonce = NONCE.get();
+            System.arraycopy(encrypted, 0, nonce, 0, NONCE_LENGTH);
+
+            Cipher cipher = decryptCipher.get();
+            cipher.init(Cipher.DECRYPT_MODE, key, parameters.apply(nonce));
+
+            return cipher.doFinal(encrypted, NONCE_LENGTH, encrypted.length - NONCE_LENGTH);
+        } catch (Exception e) {
+            throw new EncryptionException("Failed to decrypt data", e);
+        }
+    }
+
+    @Override
+    public int getMaxEncryptedLength(int length) {
+        return NONCE_LENGTH + length + TAG_LENGTH;
+    }
+
+    @Override
+    public int encrypt(@NotNull ByteBuffer input, @NotNull ByteBuffer output) throws EncryptionException {
+        try {
+            byte[] nonce = NONCE.get();
+            Cipher cipher = initEncrypt(nonce);
+
+            output.put(nonce);
+            return NONCE_LENGTH + cipher.doFinal(input, output);
+        } catch (Exception e) {
+            throw new EncryptionException("Failed to encrypt data", e);
+        }
+    }
+
+    @Override
+    public int decrypt(@NotNull ByteBuffer input, @NotNull ByteBuffer output) throws EncryptionException {
+        try {
+            byte[] nonce = NONCE.get();
+            input.get(nonce);
+
+            Cipher cipher = decryptCipher.get();
+            cipher.init(Cipher.DECRYPT_MODE, key, parameters.apply(nonce));
+
+            return cipher.doFinal(input, output);
+        } catch (Exception e) {
+            throw new EncryptionException("Failed to decrypt data", e);
+        }
+    }
+
+    private Cipher initEncrypt(byte[] nonce) throws GeneralSecurityException {
+        nextNonce(nonce);
+
+        Cipher cipher = encryptCipher.get();
+        cipher.init(Cipher.ENCRYPT_MODE, key, parameters.apply(nonce));
+
+        return cipher;
+    }
+
+    private void nextNonce(byte[] nonce) {
+        while (true) {
+            NonceSequence sequence = this.nonceSequence;
+
+            long counter = sequence.counter.getAndIncrement();
+            if (counter <= MAX_COUNTER) {
+                System.arraycopy(sequence.prefix, 0, nonce, 0, NONCE_PREFIX_LENGTH);
+                nonce[8] = (byte) (counter >>> 24);
+                nonce[9] = (byte) (counter >>> 16);
+                nonce[10] = (byte) (counter >>> 8);
+                nonce[11] = (byte) counter;
+                return;
+            }
+
+            synchronized (this) {
+                if (this.nonceSequence == sequence) this.nonceSequence = new NonceSequence();
+            }
+        }
+    }
+
+    private Cipher createCipher() {
+        try {
+            return Cipher.getInstance(cipherName);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to create " + cipherName + " cipher", e);
+        }
+    }
+
+    private static final class NonceSequence {
+
+        private final byte[] prefix = new byte[NONCE_PREFIX_LENGTH];
+        private final AtomicLong counter = new AtomicLong();
+
+        private NonceSequence() {
+            EncryptionUtil.nextBytes(prefix);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package su.plo.voice.encryption.aead;
+
+import org.jetbrains.annotations.NotNull;
+import su.plo.voice.api.encryption.Encryption;
+import su.plo.voice.api.encryption.EncryptionSupplier;
+
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+public final class AesGcmEncryptionSupplier implements EncryptionSupplier {
+
+    private static final String CIPHER = "AES/GCM/NoPadding";
+
+    @Override
+    public @NotNull Encryption create(byte[] data) {
+        return new AeadEncryption(
+                CIPHER,
+                new SecretKeySpec(data, "AES"),
+                (nonce) -> new GCMParameterSpec(128, nonce)
+        );
+    }
+
+    @Override
+    public @NotNull String getName() {
+        return CIPHER;
+    }
+}
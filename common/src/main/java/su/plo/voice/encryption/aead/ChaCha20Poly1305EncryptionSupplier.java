@@ -0,0 +1,57 @@
+package su.plo.voice.encryption.aead;
+
+import org.jetbrains.annotations.NotNull;
+import su.plo.voice.api.encryption.Encryption;
+import su.plo.voice.api.encryption.EncryptionSupplier;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * ChaCha20-Poly1305 is available only on Java 11+,
+ * so check {@link #isSupported()} before registering this supplier
+ */
+public final class ChaCha20Poly1305EncryptionSupplier implements EncryptionSupplier {
+
+    private static final String CIPHER = "ChaCha20-Poly1305";
+
+    public static boolean isSupported() {
+        try {
+            Cipher.getInstance(CIPHER);
+            return true;
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public @NotNull Encryption create(byte[] data) {
+        return new AeadEncryption(
+                CIPHER,
+                new SecretKeySpec(deriveKey(data), "ChaCha20"),
+                IvParameterSpec::new
+        );
+    }
+
+    @Override
+    public @NotNull String getName() {
+        return CIPHER;
+    }
+
+    /**
+     * ChaCha20 requires 256-bit key, but voice servers share 128-bit AES keys
+     */
+    private byte[] deriveKey(byte[] data) {
+        if (data.length == 32) return data;
+
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+}
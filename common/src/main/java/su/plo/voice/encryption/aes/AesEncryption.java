@@ -1,19 +1,29 @@
 package su.plo.voice.encryption.aes;
 
+import org.jetbrains.annotations.NotNull;
 import su.plo.voice.api.encryption.Encryption;
 import su.plo.voice.api.encryption.EncryptionException;
+import su.plo.voice.encryption.EncryptionUtil;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
-import java.security.SecureRandom;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
 
 public final class AesEncryption implements Encryption {
 
     private static final String CIPHER = "AES/CBC/PKCS5Padding";
+    private static final int IV_LENGTH = 16;
+
+    private static final ThreadLocal<byte[]> IV = ThreadLocal.withInitial(() -> new byte[IV_LENGTH]);
 
     private final SecretKeySpec key;
-    private final SecureRandom random = new SecureRandom();
+
+    // Cipher is not thread-safe, so instances are cached per thread
+    private final ThreadLocal<Cipher> encryptCipher = ThreadLocal.withInitial(AesEncryption::createCipher);
+    private final ThreadLocal<Cipher> decryptCipher = ThreadLocal.withInitial(AesEncryption::createCipher);
 
     public AesEncryption(byte[] key) {
         this.key = new SecretKeySpec(key, "AES");
@@ -22,16 +32,19 @@ public final class AesEncryption implements Encryption {
     @Override
     public byte[] encrypt(byte[] data) throws EncryptionException {
         try {
-            IvParameterSpec iv = generateIv();
+            Cipher cipher = initEncrypt();
+            byte[] iv = cipher.getIV();
 
-            // initialize cipher
-            Cipher cipher = Cipher.getInstance(CIPHER);
-            cipher.init(Cipher.ENCRYPT_MODE, key, iv);
+            // write iv and encrypted data to the same array
+            byte[] encrypted = new byte[IV_LENGTH + cipher.getOutputSize(data.length)];
+            System.arraycopy(iv, 0, encrypted, 0, IV_LENGTH);
 
-            // encrypt data
-            byte[] encrypted = cipher.doFinal(data);
+            int length = cipher.doFinal(data, 0, data.length, encrypted, IV_LENGTH);
+            if (IV_LENGTH + length != encrypted.length) {
+                return Arrays.copyOf(encrypted, IV_LENGTH + length);
+            }
 
-            return copyIvEncrypted(iv, encrypted);
+            return encrypted;
         } catch (Exception e) {
             throw new EncryptionException("Failed to encrypt data", e);
         }
@@ -40,48 +53,68 @@ public final class AesEncryption implements Encryption {
     @Override
     public byte[] decrypt(byte[] encrypted) throws EncryptionException {
         try {
-            IvParameterSpec iv = ivFromEncrypted(encrypted);
+            Cipher cipher = decryptCipher.get();
+            cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(encrypted, 0, IV_LENGTH));
 
-            // initialize cipher
-            Cipher cipher = Cipher.getInstance(CIPHER);
-            cipher.init(Cipher.DECRYPT_MODE, key, iv);
-
-            encrypted = dataFromEncrypted(encrypted);
-            return cipher.doFinal(encrypted);
+            return cipher.doFinal(encrypted, IV_LENGTH, encrypted.length - IV_LENGTH);
         } catch (Exception e) {
             throw new EncryptionException("Failed to decrypt data", e);
         }
     }
 
-    private IvParameterSpec generateIv() {
-        byte[] iv = new byte[16];
-        random.nextBytes(iv);
-        return new IvParameterSpec(iv);
+    @Override
+    public int getMaxEncryptedLength(int length) {
+        // iv + data padded to the block size
+        return IV_LENGTH + (length / 16 + 1) * 16;
+    }
+
+    @Override
+    public int encrypt(@NotNull ByteBuffer input, @NotNull ByteBuffer output) throws EncryptionException {
+        try {
+            Cipher cipher = initEncrypt();
+
+            output.put(cipher.getIV());
+            return IV_LENGTH + cipher.doFinal(input, output);
+        } catch (Exception e) {
+            throw new EncryptionException("Failed to encrypt data", e);
+        }
+    }
+
+    @Override
+    public int decrypt(@NotNull ByteBuffer input, @NotNull ByteBuffer output) throws EncryptionException {
+        try {
+            byte[] iv = IV.get();
+            input.get(iv);
+
+            Cipher cipher = decryptCipher.get();
+            cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(iv));
+
+            return cipher.doFinal(input, output);
+        } catch (Exception e) {
+            throw new EncryptionException("Failed to decrypt data", e);
+        }
     }
 
     /**
-     * Copies iv and encrypted data to new byte array
+     * Initializes thread's encrypt cipher with the new random iv
      *
-     * @return the byte array
+     * @return the initialized cipher
      */
-    private byte[] copyIvEncrypted(IvParameterSpec iv, byte[] encrypted) {
-        byte[] encryptedIv = new byte[iv.getIV().length + encrypted.length];
-
-        System.arraycopy(iv.getIV(), 0, encryptedIv, 0, iv.getIV().length);
-        System.arraycopy(encrypted, 0, encryptedIv, iv.getIV().length, encrypted.length);
+    private Cipher initEncrypt() throws GeneralSecurityException {
+        byte[] iv = IV.get();
+        EncryptionUtil.nextBytes(iv);
 
-        return encryptedIv;
-    }
+        Cipher cipher = encryptCipher.get();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
 
-    private IvParameterSpec ivFromEncrypted(byte[] encrypted) {
-        byte[] iv = new byte[16];
-        System.arraycopy(encrypted, 0, iv, 0, iv.length);
-        return new IvParameterSpec(iv);
+        return cipher;
     }
 
-    private byte[] dataFromEncrypted(byte[] encrypted) {
-        byte[] data = new byte[encrypted.length - 16];
-        System.arraycopy(encrypted, 16, data, 0, data.length);
-        return data;
+    private static Cipher createCipher() {
+        try {
+            return Cipher.getInstance(CIPHER);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to create " + CIPHER + " cipher", e);
+        }
     }
 }
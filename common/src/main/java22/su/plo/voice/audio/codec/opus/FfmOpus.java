@@ -0,0 +1,116 @@
+package su.plo.voice.audio.codec.opus;
+
+import com.sun.jna.NativeLibrary;
+
+import java.io.File;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+/**
+ * Foreign Function & Memory API binding for libopus
+ * <br/>
+ * This class is compiled for Java 22 and must be loaded only via reflection
+ * after checking the runtime version, see {@link OpusCodecSupplier}
+ */
+final class FfmOpus {
+
+    static final int OPUS_OK = 0;
+    static final int OPUS_SET_BITRATE_REQUEST = 4002;
+    static final int OPUS_GET_BITRATE_REQUEST = 4003;
+    static final int OPUS_RESET_STATE = 4028;
+
+    static final MethodHandle OPUS_ENCODER_CREATE;
+    static final MethodHandle OPUS_ENCODE;
+    static final MethodHandle OPUS_ENCODER_CTL;
+    static final MethodHandle OPUS_ENCODER_CTL_INT;
+    static final MethodHandle OPUS_ENCODER_CTL_POINTER;
+    static final MethodHandle OPUS_ENCODER_DESTROY;
+
+    static final MethodHandle OPUS_DECODER_CREATE;
+    static final MethodHandle OPUS_DECODE;
+    static final MethodHandle OPUS_DECODER_CTL;
+    static final MethodHandle OPUS_DECODER_DESTROY;
+
+    static final MethodHandle OPUS_STRERROR;
+
+    static {
+        Linker linker = Linker.nativeLinker();
+        SymbolLookup lookup = lookupLibrary();
+
+        OPUS_ENCODER_CREATE = downcall(linker, lookup, "opus_encoder_create",
+                FunctionDescriptor.of(ADDRESS, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS));
+        OPUS_ENCODE = downcall(linker, lookup, "opus_encode",
+                FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, JAVA_INT, ADDRESS, JAVA_INT));
+        OPUS_ENCODER_CTL = downcall(linker, lookup, "opus_encoder_ctl",
+                FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT));
+        OPUS_ENCODER_CTL_INT = downcall(linker, lookup, "opus_encoder_ctl",
+                FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, JAVA_INT),
+                Linker.Option.firstVariadicArg(2));
+        OPUS_ENCODER_CTL_POINTER = downcall(linker, lookup, "opus_encoder_ctl",
+                FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS),
+                Linker.Option.firstVariadicArg(2));
+        OPUS_ENCODER_DESTROY = downcall(linker, lookup, "opus_encoder_destroy",
+                FunctionDescriptor.ofVoid(ADDRESS));
+
+        OPUS_DECODER_CREATE = downcall(linker, lookup, "opus_decoder_create",
+                FunctionDescriptor.of(ADDRESS, JAVA_INT, JAVA_INT, ADDRESS));
+        OPUS_DECODE = downcall(linker, lookup, "opus_decode",
+                FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, JAVA_INT, ADDRESS, JAVA_INT, JAVA_INT));
+        OPUS_DECODER_CTL = downcall(linker, lookup, "opus_decoder_ctl",
+                FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT));
+        OPUS_DECODER_DESTROY = downcall(linker, lookup, "opus_decoder_destroy",
+                FunctionDescriptor.ofVoid(ADDRESS));
+
+        OPUS_STRERROR = downcall(linker, lookup, "opus_strerror",
+                FunctionDescriptor.of(ADDRESS, JAVA_INT));
+    }
+
+    static String strerror(int error) {
+        try {
+            MemorySegment message = (MemorySegment) OPUS_STRERROR.invokeExact(error);
+            // returned pointer has zero length, so it should be resized to read null-terminated string
+            return message.reinterpret(Long.MAX_VALUE).getString(0);
+        } catch (Throwable e) {
+            return String.valueOf(error);
+        }
+    }
+
+    /**
+     * Uses the library file extracted by JNA opus binding,
+     * so both bindings use the same libopus build
+     */
+    private static SymbolLookup lookupLibrary() {
+        File libraryFile = null;
+        try {
+            libraryFile = NativeLibrary.getInstance("opus").getFile();
+        } catch (Throwable ignored) {
+        }
+
+        if (libraryFile != null) {
+            return SymbolLookup.libraryLookup(libraryFile.toPath(), Arena.global());
+        }
+
+        return SymbolLookup.libraryLookup(System.mapLibraryName("opus"), Arena.global());
+    }
+
+    private static MethodHandle downcall(Linker linker,
+                                         SymbolLookup lookup,
+                                         String name,
+                                         FunctionDescriptor descriptor,
+                                         Linker.Option... options) {
+        MemorySegment symbol = lookup.find(name)
+                .orElseThrow(() -> new UnsatisfiedLinkError("Symbol " + name + " not found in libopus"));
+
+        return linker.downcallHandle(symbol, descriptor, options);
+    }
+
+    private FfmOpus() {
+    }
+}
@@ -0,0 +1,173 @@
+package su.plo.voice.audio.codec.opus;
+
+import su.plo.voice.BaseVoice;
+import su.plo.voice.api.audio.codec.CodecException;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT;
+
+/**
+ * Opus decoder using {@link FfmOpus} binding
+ * <br/>
+ * All native segments are allocated once when the decoder is opened
+ */
+public final class FfmOpusDecoder implements BaseOpusDecoder {
+
+    private final int sampleRate;
+    private final int channels;
+    private final int bufferSize;
+    private final int mtuSize;
+
+    private Arena arena;
+    private MemorySegment decoder;
+    private MemorySegment encodedSegment;
+    private MemorySegment samplesSegment;
+
+    public FfmOpusDecoder(int sampleRate, boolean stereo, int bufferSize, int mtuSize) {
+        this.sampleRate = sampleRate;
+        this.channels = stereo ? 2 : 1;
+        this.bufferSize = bufferSize;
+        this.mtuSize = mtuSize;
+    }
+
+    @Override
+    public short[] decode(byte[] encoded) throws CodecException {
+        if (!isOpen()) throw new CodecException("Decoder is not open");
+
+        int length = encoded == null ? 0 : encoded.length;
+        int result = decode(encoded, 0, length);
+
+        return samplesSegment.asSlice(0, (long) result * JAVA_SHORT.byteSize()).toArray(JAVA_SHORT);
+    }
+
+    @Override
+    public int decode(byte[] encoded, int offset, int length,
+                      short[] output, int outputOffset, int outputLength) throws CodecException {
+        if (!isOpen()) throw new CodecException("Decoder is not open");
+
+        int result = decode(encoded, offset, length);
+        if (result > outputLength) {
+            throw new CodecException("Output buffer is too small: " + outputLength + " < " + result);
+        }
+
+        MemorySegment.copy(samplesSegment, JAVA_SHORT, 0, output, outputOffset, result);
+
+        return result;
+    }
+
+    @Override
+    public void open() throws CodecException {
+        this.arena = Arena.ofShared();
+        this.encodedSegment = arena.allocate(JAVA_BYTE, mtuSize);
+        this.samplesSegment = arena.allocate(JAVA_SHORT, (long) bufferSize * channels);
+        MemorySegment error = arena.allocate(JAVA_INT);
+
+        try {
+            this.decoder = (MemorySegment) FfmOpus.OPUS_DECODER_CREATE.invokeExact(
+                    sampleRate,
+                    channels,
+                    error
+            );
+        } catch (Throwable e) {
+            close();
+            throw new CodecException("Failed to open opus decoder", e);
+        }
+
+        if (error.get(JAVA_INT, 0) != FfmOpus.OPUS_OK || decoder.equals(MemorySegment.NULL)) {
+            int errorCode = error.get(JAVA_INT, 0);
+            close();
+            throw new CodecException("Failed to open opus decoder:" + FfmOpus.strerror(errorCode));
+        }
+    }
+
+    @Override
+    public void reset() {
+        if (!isOpen()) return;
+
+        try {
+            int result = (int) FfmOpus.OPUS_DECODER_CTL.invokeExact(decoder, FfmOpus.OPUS_RESET_STATE);
+            if (result != FfmOpus.OPUS_OK) {
+                BaseVoice.DEBUG_LOGGER.warn("Failed to reset opus decoder: {}", result);
+            }
+        } catch (Throwable ignored) {
+        }
+    }
+
+    @Override
+    public void close() {
+        if (decoder != null && !decoder.equals(MemorySegment.NULL)) {
+            try {
+                FfmOpus.OPUS_DECODER_DESTROY.invokeExact(decoder);
+            } catch (Throwable ignored) {
+            }
+        }
+
+        if (arena != null) arena.close();
+
+        this.decoder = null;
+        this.arena = null;
+        this.encodedSegment = null;
+        this.samplesSegment = null;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return decoder != null && !decoder.equals(MemorySegment.NULL);
+    }
+
+    @Override
+    public short[] decodePLC() throws CodecException {
+        return decode(null);
+    }
+
+    @Override
+    public int decodePLC(short[] output, int outputOffset, int outputLength) throws CodecException {
+        return decode(null, 0, 0, output, outputOffset, outputLength);
+    }
+
+    /**
+     * Decodes data into the samples segment
+     *
+     * @return the number of decoded samples
+     */
+    private int decode(byte[] encoded, int offset, int length) throws CodecException {
+        int result;
+        try {
+            if (encoded == null || length == 0) {
+                result = (int) FfmOpus.OPUS_DECODE.invokeExact(
+                        decoder,
+                        MemorySegment.NULL,
+                        0,
+                        samplesSegment,
+                        bufferSize,
+                        0
+                );
+            } else {
+                if (length > mtuSize) throw new CodecException("Encoded data is larger than MTU");
+                MemorySegment.copy(encoded, offset, encodedSegment, JAVA_BYTE, 0, length);
+
+                result = (int) FfmOpus.OPUS_DECODE.invokeExact(
+                        decoder,
+                        encodedSegment,
+                        length,
+                        samplesSegment,
+                        bufferSize,
+                        0
+                );
+            }
+        } catch (CodecException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new CodecException("Failed to decode audio", e);
+        }
+
+        if (result < 0) throw new CodecException("Failed to decode audio: " + FfmOpus.strerror(result));
+        if (result != bufferSize) throw new CodecException("Audio was decoded with invalid frame size");
+
+        return result * channels;
+    }
+}
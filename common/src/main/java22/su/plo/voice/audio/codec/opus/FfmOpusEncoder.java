@@ -0,0 +1,193 @@
+package su.plo.voice.audio.codec.opus;
+
+import su.plo.voice.BaseVoice;
+import su.plo.voice.api.audio.codec.CodecException;
+import su.plo.voice.proto.data.audio.codec.opus.OpusMode;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT;
+
+/**
+ * Opus encoder using {@link FfmOpus} binding
+ * <br/>
+ * All native segments are allocated once when the encoder is opened
+ */
+public final class FfmOpusEncoder implements BaseOpusEncoder {
+
+    private final int sampleRate;
+    private final int bufferSize;
+    private final int channels;
+    private final OpusMode opusMode;
+    private final int mtuSize;
+
+    private Arena arena;
+    private MemorySegment encoder;
+    private MemorySegment samplesSegment;
+    private MemorySegment encodedSegment;
+    private MemorySegment intSegment;
+
+    public FfmOpusEncoder(int sampleRate,
+                          boolean stereo,
+                          int bufferSize,
+                          OpusMode opusMode,
+                          int mtuSize) {
+        this.sampleRate = sampleRate;
+        this.channels = stereo ? 2 : 1;
+        this.bufferSize = bufferSize;
+        this.opusMode = opusMode;
+        this.mtuSize = mtuSize;
+    }
+
+    @Override
+    public byte[] encode(short[] samples) throws CodecException {
+        if (!isOpen()) throw new CodecException("Encoder is not open");
+
+        int result = encode(samples, 0, samples.length);
+
+        return encodedSegment.asSlice(0, result).toArray(JAVA_BYTE);
+    }
+
+    @Override
+    public int encode(short[] samples, int offset, int length,
+                      byte[] output, int outputOffset, int outputLength) throws CodecException {
+        if (!isOpen()) throw new CodecException("Encoder is not open");
+
+        int result = encode(samples, offset, length);
+        if (result > outputLength) {
+            throw new CodecException("Output buffer is too small: " + outputLength + " < " + result);
+        }
+
+        MemorySegment.copy(encodedSegment, JAVA_BYTE, 0, output, outputOffset, result);
+
+        return result;
+    }
+
+    @Override
+    public void open() throws CodecException {
+        this.arena = Arena.ofShared();
+        this.samplesSegment = arena.allocate(JAVA_SHORT, (long) bufferSize * channels);
+        this.encodedSegment = arena.allocate(JAVA_BYTE, mtuSize);
+        this.intSegment = arena.allocate(JAVA_INT);
+
+        try {
+            this.encoder = (MemorySegment) FfmOpus.OPUS_ENCODER_CREATE.invokeExact(
+                    sampleRate,
+                    channels,
+                    opusMode.getApplication(),
+                    intSegment
+            );
+        } catch (Throwable e) {
+            close();
+            throw new CodecException("Failed to open opus encoder", e);
+        }
+
+        int error = intSegment.get(JAVA_INT, 0);
+        if (error != FfmOpus.OPUS_OK || encoder.equals(MemorySegment.NULL)) {
+            close();
+            throw new CodecException("Failed to open opus encoder:" + FfmOpus.strerror(error));
+        }
+    }
+
+    @Override
+    public void reset() {
+        if (!isOpen()) return;
+
+        try {
+            int result = (int) FfmOpus.OPUS_ENCODER_CTL.invokeExact(encoder, FfmOpus.OPUS_RESET_STATE);
+            if (result != FfmOpus.OPUS_OK) {
+                BaseVoice.DEBUG_LOGGER.warn("Failed to reset opus encoder: {}", result);
+            }
+        } catch (Throwable ignored) {
+        }
+    }
+
+    @Override
+    public void close() {
+        if (encoder != null && !encoder.equals(MemorySegment.NULL)) {
+            try {
+                FfmOpus.OPUS_ENCODER_DESTROY.invokeExact(encoder);
+            } catch (Throwable ignored) {
+            }
+        }
+
+        if (arena != null) arena.close();
+
+        this.encoder = null;
+        this.arena = null;
+        this.samplesSegment = null;
+        this.encodedSegment = null;
+        this.intSegment = null;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return encoder != null && !encoder.equals(MemorySegment.NULL);
+    }
+
+    @Override
+    public void setBitrate(int bitrate) {
+        if (!isOpen()) return;
+
+        try {
+            int result = (int) FfmOpus.OPUS_ENCODER_CTL_INT.invokeExact(
+                    encoder,
+                    FfmOpus.OPUS_SET_BITRATE_REQUEST,
+                    bitrate
+            );
+            if (result != FfmOpus.OPUS_OK) {
+                BaseVoice.DEBUG_LOGGER.warn("Failed to set opus encoder bitrate to {}: {}", bitrate, result);
+            }
+        } catch (Throwable ignored) {
+        }
+    }
+
+    @Override
+    public int getBitrate() {
+        if (!isOpen()) return -1;
+
+        try {
+            int result = (int) FfmOpus.OPUS_ENCODER_CTL_POINTER.invokeExact(
+                    encoder,
+                    FfmOpus.OPUS_GET_BITRATE_REQUEST,
+                    intSegment
+            );
+            if (result != FfmOpus.OPUS_OK) return -1;
+
+            return intSegment.get(JAVA_INT, 0);
+        } catch (Throwable e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Encodes samples into the encoded segment
+     *
+     * @return the number of encoded bytes
+     */
+    private int encode(short[] samples, int offset, int length) throws CodecException {
+        if (length < bufferSize * channels) throw new CodecException("Not enough samples to encode");
+
+        MemorySegment.copy(samples, offset, samplesSegment, JAVA_SHORT, 0, bufferSize * channels);
+
+        int result;
+        try {
+            result = (int) FfmOpus.OPUS_ENCODE.invokeExact(
+                    encoder,
+                    samplesSegment,
+                    bufferSize,
+                    encodedSegment,
+                    mtuSize
+            );
+        } catch (Throwable e) {
+            throw new CodecException("Failed to encode audio", e);
+        }
+
+        if (result < 0) throw new CodecException("Failed to encode audio: " + FfmOpus.strerror(result));
+
+        return result;
+    }
+}
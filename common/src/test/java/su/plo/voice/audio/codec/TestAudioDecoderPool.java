@@ -0,0 +1,105 @@
+package su.plo.voice.audio.codec;
+
+import com.google.common.collect.Maps;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import su.plo.voice.api.audio.codec.AudioDecoder;
+import su.plo.voice.api.audio.codec.AudioEncoder;
+import su.plo.voice.api.audio.codec.CodecSupplier;
+import su.plo.voice.proto.data.audio.codec.CodecInfo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestAudioDecoderPool {
+
+    private final CodecInfo codecInfo = new CodecInfo("test", Maps.newHashMap());
+
+    @Test
+    public void testReuse() {
+        AudioDecoderPool pool = createPool(1);
+
+        TestDecoder decoder = (TestDecoder) pool.lease(codecInfo, 48_000, false, 960, 1024);
+        pool.release(decoder);
+
+        assertEquals(1, decoder.resets);
+        assertEquals(1, pool.getIdleCount());
+        assertSame(decoder, pool.lease(codecInfo, 48_000, false, 960, 1024));
+        assertNotSame(decoder, pool.lease(codecInfo, 48_000, true, 960, 1024));
+        assertEquals(2, pool.getLeasedCount());
+    }
+
+    @Test
+    public void testBounded() {
+        AudioDecoderPool pool = createPool(1);
+
+        TestDecoder first = (TestDecoder) pool.lease(codecInfo, 48_000, false, 960, 1024);
+        TestDecoder second = (TestDecoder) pool.lease(codecInfo, 48_000, false, 960, 1024);
+        pool.release(first);
+        pool.release(second);
+
+        assertEquals(1, pool.getIdleCount());
+        assertFalse(second.isOpen());
+
+        pool.clear();
+        assertFalse(first.isOpen());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    private AudioDecoderPool createPool(int maxIdle) {
+        VoiceCodecManager codecManager = new VoiceCodecManager();
+        codecManager.register(new TestCodecSupplier());
+
+        return new AudioDecoderPool(codecManager, maxIdle);
+    }
+
+    private static final class TestCodecSupplier implements CodecSupplier<AudioEncoder, AudioDecoder> {
+
+        @Override
+        public @NotNull AudioEncoder createEncoder(int sampleRate, boolean stereo, int bufferSize, int mtuSize,
+                                                   @NotNull CodecInfo codecInfo) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public @NotNull AudioDecoder createDecoder(int sampleRate, boolean stereo, int bufferSize, int mtuSize,
+                                                   @NotNull CodecInfo codecInfo) {
+            return new TestDecoder();
+        }
+
+        @Override
+        public @NotNull String getName() {
+            return "test";
+        }
+    }
+
+    private static final class TestDecoder implements AudioDecoder {
+
+        private boolean open = true;
+        private int resets;
+
+        @Override
+        public short[] decode(byte[] encoded) {
+            return new short[0];
+        }
+
+        @Override
+        public void open() {
+            this.open = true;
+        }
+
+        @Override
+        public void reset() {
+            resets++;
+        }
+
+        @Override
+        public void close() {
+            this.open = false;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package su.plo.voice.encryption;
+
+import org.junit.jupiter.api.Test;
+import su.plo.voice.api.encryption.EncryptionException;
+import su.plo.voice.encryption.aes.AesEncryption;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestAesEncryption {
+
+    private final AesEncryption encryption = new AesEncryption(new byte[16]);
+
+    @Test
+    public void testArrayRoundTrip() throws EncryptionException {
+        byte[] data = new byte[123];
+        Arrays.fill(data, (byte) 7);
+
+        byte[] encrypted = encryption.encrypt(data);
+        assertEquals(16 + 128, encrypted.length);
+        assertArrayEquals(data, encryption.decrypt(encrypted));
+    }
+
+    @Test
+    public void testBufferRoundTrip() throws EncryptionException {
+        byte[] data = new byte[64];
+        Arrays.fill(data, (byte) 3);
+
+        ByteBuffer encrypted = ByteBuffer.allocateDirect(256);
+        int encryptedLength = encryption.encrypt(ByteBuffer.wrap(data), encrypted);
+        encrypted.flip();
+        assertEquals(encryptedLength, encrypted.remaining());
+
+        // buffer and array APIs should be interchangeable
+        byte[] encryptedArray = new byte[encryptedLength];
+        encrypted.duplicate().get(encryptedArray);
+        assertArrayEquals(data, encryption.decrypt(encryptedArray));
+
+        ByteBuffer decrypted = ByteBuffer.allocate(256);
+        int decryptedLength = encryption.decrypt(encrypted, decrypted);
+        assertEquals(data.length, decryptedLength);
+
+        byte[] decryptedArray = new byte[decryptedLength];
+        decrypted.flip();
+        decrypted.get(decryptedArray);
+        assertArrayEquals(data, decryptedArray);
+    }
+}
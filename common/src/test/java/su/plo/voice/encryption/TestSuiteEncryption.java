@@ -0,0 +1,125 @@
+package su.plo.voice.encryption;
+
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.Test;
+import su.plo.voice.api.encryption.Encryption;
+import su.plo.voice.api.encryption.EncryptionException;
+import su.plo.voice.api.encryption.EncryptionSupplier;
+import su.plo.voice.encryption.aead.AesGcmEncryptionSupplier;
+import su.plo.voice.encryption.aead.ChaCha20Poly1305EncryptionSupplier;
+import su.plo.voice.encryption.aes.AesEncryptionSupplier;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSuiteEncryption {
+
+    private final byte[] key = new byte[16];
+    private final VoiceEncryptionManager manager = createManager();
+    private final List<String> algorithms = manager.getAlgorithms()
+            .stream()
+            .map(EncryptionSupplier::getName)
+            .collect(Collectors.toList());
+
+    @Test
+    public void testRoundTripPerTag() throws EncryptionException {
+        byte[] data = createData(123);
+
+        // other peer encrypts with its own algorithm
+        Encryption receiver = manager.createSuite(algorithms, algorithms.get(0), key);
+
+        for (int index = 0; index < algorithms.size(); index++) {
+            Encryption sender = manager.createSuite(algorithms, algorithms.get(index), key);
+
+            byte[] encrypted = sender.encrypt(data);
+            assertEquals(index, encrypted[0]);
+            assertTrue(encrypted.length <= sender.getMaxEncryptedLength(data.length));
+            assertArrayEquals(data, receiver.decrypt(encrypted));
+
+            ByteBuffer encryptedBuffer = ByteBuffer.allocate(256);
+            int encryptedLength = sender.encrypt(ByteBuffer.wrap(data), encryptedBuffer);
+            encryptedBuffer.flip();
+            assertEquals(encryptedLength, encryptedBuffer.remaining());
+            assertEquals(index, encryptedBuffer.get(0));
+
+            ByteBuffer decrypted = ByteBuffer.allocate(256);
+            assertEquals(data.length, receiver.decrypt(encryptedBuffer, decrypted));
+            assertArrayEquals(data, Arrays.copyOf(decrypted.array(), data.length));
+        }
+    }
+
+    @Test
+    public void testUnknownTag() throws EncryptionException {
+        Encryption encryption = manager.createSuite(algorithms, algorithms.get(0), key);
+
+        byte[] encrypted = encryption.encrypt(createData(32));
+        encrypted[0] = (byte) algorithms.size();
+        assertThrows(EncryptionException.class, () -> encryption.decrypt(encrypted));
+
+        // algorithm is advertised, but not registered on this side
+        List<String> withUnsupported = Lists.newArrayList(algorithms);
+        withUnsupported.add(0, "Unsupported");
+        Encryption receiver = manager.createSuite(withUnsupported, algorithms.get(0), key);
+
+        byte[] unsupported = encryption.encrypt(createData(32));
+        unsupported[0] = 0;
+        assertThrows(EncryptionException.class, () -> receiver.decrypt(unsupported));
+
+        assertThrows(EncryptionException.class, () -> encryption.decrypt(new byte[0]));
+    }
+
+    @Test
+    public void testAeadTampered() throws EncryptionException {
+        byte[] data = createData(64);
+
+        List<EncryptionSupplier> suppliers = Lists.newArrayList(new AesGcmEncryptionSupplier());
+        if (ChaCha20Poly1305EncryptionSupplier.isSupported()) {
+            suppliers.add(new ChaCha20Poly1305EncryptionSupplier());
+        }
+
+        for (EncryptionSupplier supplier : suppliers) {
+            Encryption encryption = supplier.create(key);
+
+            byte[] encrypted = encryption.encrypt(data);
+            assertArrayEquals(data, encryption.decrypt(encrypted));
+
+            // nonce is never reused
+            byte[] next = encryption.encrypt(data);
+            assertFalse(Arrays.equals(Arrays.copyOf(encrypted, 12), Arrays.copyOf(next, 12)));
+
+            byte[] tamperedCiphertext = encrypted.clone();
+            tamperedCiphertext[12] ^= 1;
+            assertThrows(EncryptionException.class, () -> encryption.decrypt(tamperedCiphertext));
+
+            byte[] tamperedTag = encrypted.clone();
+            tamperedTag[tamperedTag.length - 1] ^= 1;
+            assertThrows(EncryptionException.class, () -> encryption.decrypt(tamperedTag));
+
+            byte[] tamperedNonce = encrypted.clone();
+            tamperedNonce[0] ^= 1;
+            assertThrows(EncryptionException.class, () -> encryption.decrypt(tamperedNonce));
+        }
+    }
+
+    private byte[] createData(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    private static VoiceEncryptionManager createManager() {
+        VoiceEncryptionManager manager = new VoiceEncryptionManager();
+        manager.register(new AesGcmEncryptionSupplier());
+        if (ChaCha20Poly1305EncryptionSupplier.isSupported()) {
+            manager.register(new ChaCha20Poly1305EncryptionSupplier());
+        }
+        manager.register(new AesEncryptionSupplier());
+        return manager;
+    }
+}
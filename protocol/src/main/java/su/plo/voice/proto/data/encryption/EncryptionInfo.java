@@ -1,5 +1,6 @@
 package su.plo.voice.proto.data.encryption;
 
+import com.google.common.collect.Lists;
 import com.google.common.io.ByteArrayDataInput;
 import com.google.common.io.ByteArrayDataOutput;
 import lombok.AllArgsConstructor;
@@ -10,6 +11,8 @@ import su.plo.voice.proto.packets.PacketSerializable;
 import su.plo.voice.proto.packets.PacketUtil;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -18,12 +21,25 @@ import static com.google.common.base.Preconditions.checkNotNull;
 @ToString
 public final class EncryptionInfo implements PacketSerializable {
 
+    /**
+     * The algorithm used by the server itself
+     */
     @Getter
     private String algorithm;
 
     @Getter
     private byte[] data;
 
+    /**
+     * Algorithms supported by the server in the preference order
+     * <br/>
+     * Client encrypts with the fastest algorithm it supports
+     * and tags every frame with the algorithm index in this list.
+     * Empty if the server doesn't support tagged frames, so {@link #algorithm} is used as is
+     */
+    @Getter
+    private List<String> algorithms = Collections.emptyList();
+
     @Override
     public void deserialize(ByteArrayDataInput in) throws IOException {
         this.algorithm = in.readUTF();
@@ -34,6 +50,19 @@ public final class EncryptionInfo implements PacketSerializable {
         this.data = data;
     }
 
+    /**
+     * Reads the algorithms list
+     * <br/>
+     * The list is written separately at the end of the packet, so it can be read only if the peer supports it
+     */
+    public void deserializeAlgorithms(ByteArrayDataInput in) throws IOException {
+        int size = PacketUtil.readSafeInt(in, 0, 0xFF);
+        this.algorithms = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; i++) {
+            algorithms.add(in.readUTF());
+        }
+    }
+
     @Override
     public void serialize(ByteArrayDataOutput out) {
         checkNotNull(algorithm, "algorithm cannot be null");
@@ -44,4 +73,11 @@ public final class EncryptionInfo implements PacketSerializable {
         out.writeInt(data.length);
         out.write(data);
     }
+
+    public void serializeAlgorithms(ByteArrayDataOutput out) {
+        checkNotNull(algorithms, "algorithms cannot be null");
+
+        out.writeInt(algorithms.size());
+        algorithms.forEach(out::writeUTF);
+    }
 }
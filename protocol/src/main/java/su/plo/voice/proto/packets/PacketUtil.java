@@ -20,6 +20,20 @@ public class PacketUtil {
         return value;
     }
 
+    /**
+     * Reads the int appended to the end of the packet in the newer protocol version
+     *
+     * @return the int or the default value if the packet was written by the older protocol version
+     */
+    public static int readOptionalInt(ByteArrayDataInput in, int defaultValue) {
+        try {
+            return in.readInt();
+        } catch (IllegalStateException e) {
+            // end of the packet
+            return defaultValue;
+        }
+    }
+
     public static void writeBytes(ByteArrayDataOutput out, byte[] bytes) {
         out.writeInt(bytes.length);
         out.write(bytes);
@@ -14,6 +14,18 @@ import java.util.Optional;
 
 public class PacketTcpCodec {
 
+    /**
+     * Version of the TCP packets format
+     * <br/>
+     * Peers exchange it at the end of {@link PlayerInfoPacket} and {@link ConfigPacket},
+     * the peers without it are treated as version 0
+     * <ul>
+     *     <li>1 - encryption algorithms list in {@link ConfigPacket}, tagged audio frames
+     *     and {@link su.plo.voice.proto.packets.udp.serverbound.PlayerMultiAudioPacket}</li>
+     * </ul>
+     */
+    public static final int PROTOCOL_VERSION = 1;
+
     private static final PacketRegistry PACKETS = new PacketRegistry();
 
     static {
@@ -13,6 +13,7 @@ import su.plo.voice.proto.data.audio.capture.VoiceActivation;
 import su.plo.voice.proto.data.audio.line.VoiceSourceLine;
 import su.plo.voice.proto.data.encryption.EncryptionInfo;
 import su.plo.voice.proto.packets.PacketUtil;
+import su.plo.voice.proto.packets.tcp.PacketTcpCodec;
 
 import java.io.IOException;
 import java.util.Collection;
@@ -34,13 +35,19 @@ public final class ConfigPacket extends ConfigPlayerInfoPacket {
     private @Nullable EncryptionInfo encryption;
     private Set<VoiceSourceLine> sourceLines;
     private Set<VoiceActivation> activations;
+    /**
+     * Protocol version of the server, see {@link PacketTcpCodec#PROTOCOL_VERSION}
+     */
+    @Getter
+    private int protocolVersion;
 
     public ConfigPacket(@NotNull UUID serverId,
                         @NotNull CaptureInfo captureInfo,
                         @Nullable EncryptionInfo encryption,
                         @NotNull Set<VoiceSourceLine> sourceLines,
                         @NotNull Set<VoiceActivation> activations,
-                        @NotNull Map<String, Boolean> permissions) {
+                        @NotNull Map<String, Boolean> permissions,
+                        int protocolVersion) {
         super(permissions);
 
         this.serverId = serverId;
@@ -48,6 +55,7 @@ public final class ConfigPacket extends ConfigPlayerInfoPacket {
         this.encryption = encryption;
         this.sourceLines = sourceLines;
         this.activations = activations;
+        this.protocolVersion = protocolVersion;
     }
 
     public Collection<VoiceSourceLine> getSourceLines() {
@@ -89,6 +97,12 @@ public final class ConfigPacket extends ConfigPlayerInfoPacket {
         }
 
         super.read(in);
+
+        // fields below are appended in the newer protocol versions
+        this.protocolVersion = PacketUtil.readOptionalInt(in, 0);
+        if (protocolVersion >= 1 && encryption != null) {
+            encryption.deserializeAlgorithms(in);
+        }
     }
 
     @Override
@@ -112,6 +126,11 @@ public final class ConfigPacket extends ConfigPlayerInfoPacket {
         activations.forEach(activation -> activation.serialize(out));
 
         super.write(out);
+
+        out.writeInt(protocolVersion);
+        if (protocolVersion >= 1 && encryption != null) {
+            encryption.serializeAlgorithms(out);
+        }
     }
 
     @Override
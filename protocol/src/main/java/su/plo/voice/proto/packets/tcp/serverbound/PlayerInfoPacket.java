@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 import lombok.NonNull;
 import lombok.ToString;
 import su.plo.voice.proto.packets.PacketUtil;
+import su.plo.voice.proto.packets.tcp.PacketTcpCodec;
 
 import java.io.IOException;
 
@@ -22,6 +23,8 @@ public final class PlayerInfoPacket extends PlayerStatePacket {
     private String version;
     @Getter
     private byte[] publicKey;
+    @Getter
+    private int protocolVersion;
 
     public PlayerInfoPacket(@NonNull String minecraftVersion,
                             @NonNull String version,
@@ -33,6 +36,7 @@ public final class PlayerInfoPacket extends PlayerStatePacket {
         this.minecraftVersion = minecraftVersion;
         this.version = version;
         this.publicKey = publicKey;
+        this.protocolVersion = PacketTcpCodec.PROTOCOL_VERSION;
     }
 
     @Override
@@ -45,6 +49,8 @@ public final class PlayerInfoPacket extends PlayerStatePacket {
         int length = PacketUtil.readSafeInt(in, 1, 2048);
         this.publicKey = new byte[length];
         in.readFully(publicKey);
+
+        this.protocolVersion = PacketUtil.readOptionalInt(in, 0);
     }
 
     @Override
@@ -57,6 +63,8 @@ public final class PlayerInfoPacket extends PlayerStatePacket {
         checkNotNull(publicKey);
         out.writeInt(publicKey.length);
         out.write(publicKey);
+
+        out.writeInt(protocolVersion);
     }
 
     @Override
@@ -11,6 +11,7 @@ import su.plo.voice.proto.packets.udp.bothbound.PingPacket;
 import su.plo.voice.proto.packets.udp.clientbound.SelfAudioInfoPacket;
 import su.plo.voice.proto.packets.udp.clientbound.SourceAudioPacket;
 import su.plo.voice.proto.packets.udp.serverbound.PlayerAudioPacket;
+import su.plo.voice.proto.packets.udp.serverbound.PlayerMultiAudioPacket;
 
 import java.io.IOException;
 import java.util.Optional;
@@ -29,6 +30,7 @@ public class PacketUdpCodec {
         PACKETS.register(++lastPacketId, PlayerAudioPacket.class);
         PACKETS.register(++lastPacketId, SourceAudioPacket.class);
         PACKETS.register(++lastPacketId, SelfAudioInfoPacket.class);
+        PACKETS.register(++lastPacketId, PlayerMultiAudioPacket.class);
         PACKETS.register(0x100, CustomPacket.class);
     }
 
@@ -0,0 +1,118 @@
+package su.plo.voice.proto.packets.udp.serverbound;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.jetbrains.annotations.NotNull;
+import su.plo.voice.proto.packets.Packet;
+import su.plo.voice.proto.packets.PacketUtil;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Audio frame shared by multiple activations
+ * <br/>
+ * Client sends this packet instead of multiple {@link PlayerAudioPacket}
+ * if activations encoded the frame with the same encoder,
+ * so the payload is encoded, encrypted and sent once
+ */
+@NoArgsConstructor
+@ToString
+public final class PlayerMultiAudioPacket implements Packet<ServerPacketUdpHandler> {
+
+    public static final int MAX_ACTIVATIONS = 64;
+
+    @Getter
+    private byte[] data;
+    @Getter
+    private boolean stereo;
+    @Getter
+    private List<ActivationEntry> activations;
+
+    public PlayerMultiAudioPacket(byte[] data, boolean stereo, @NotNull List<ActivationEntry> activations) {
+        checkArgument(!activations.isEmpty() && activations.size() <= MAX_ACTIVATIONS, "activations");
+
+        this.data = checkNotNull(data);
+        this.stereo = stereo;
+        this.activations = activations;
+    }
+
+    /**
+     * @return audio packets of the every activation sharing the same payload
+     */
+    public @NotNull List<PlayerAudioPacket> toPlayerAudioPackets() {
+        List<PlayerAudioPacket> packets = Lists.newArrayListWithCapacity(activations.size());
+        for (ActivationEntry activation : activations) {
+            packets.add(new PlayerAudioPacket(
+                    activation.getSequenceNumber(),
+                    data,
+                    activation.getActivationId(),
+                    activation.getDistance(),
+                    stereo
+            ));
+        }
+
+        return packets;
+    }
+
+    @Override
+    public void read(ByteArrayDataInput in) throws IOException {
+        int length = PacketUtil.readSafeInt(in, 1, 2048);
+        byte[] data = new byte[length];
+        in.readFully(data);
+        this.data = data;
+
+        this.stereo = in.readBoolean();
+
+        int size = PacketUtil.readSafeInt(in, 1, MAX_ACTIVATIONS);
+        this.activations = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; i++) {
+            activations.add(new ActivationEntry(
+                    PacketUtil.readUUID(in),
+                    in.readLong(),
+                    in.readShort()
+            ));
+        }
+    }
+
+    @Override
+    public void write(ByteArrayDataOutput out) throws IOException {
+        out.writeInt(data.length);
+        out.write(data);
+
+        out.writeBoolean(stereo);
+
+        out.writeInt(activations.size());
+        for (ActivationEntry activation : activations) {
+            PacketUtil.writeUUID(out, checkNotNull(activation.getActivationId()));
+            out.writeLong(activation.getSequenceNumber());
+            out.writeShort(activation.getDistance());
+        }
+    }
+
+    @Override
+    public void handle(ServerPacketUdpHandler handler) {
+        handler.handle(this);
+    }
+
+    @AllArgsConstructor
+    @ToString
+    public static final class ActivationEntry {
+
+        @Getter
+        private final UUID activationId;
+        @Getter
+        private final long sequenceNumber;
+        @Getter
+        private final short distance;
+    }
+}
@@ -6,4 +6,6 @@ import su.plo.voice.proto.packets.udp.PacketUdpHandler;
 public interface ServerPacketUdpHandler extends PacketUdpHandler {
 
     void handle(@NotNull PlayerAudioPacket packet);
+
+    void handle(@NotNull PlayerMultiAudioPacket packet);
 }
@@ -147,7 +147,9 @@ public final class ServerToPlayerChannelHandler implements ClientPacketTcpHandle
                     packet.getEncryption(),
                     sourceLines.size() > 0 ? sourceLines : Sets.newHashSet(packet.getSourceLines()),
                     activations.size() > 0 ? activations : Sets.newHashSet(packet.getActivations()),
-                    packet.getPermissions()
+                    packet.getPermissions(),
+                    // audio is forwarded to the backend server, so the client should use its protocol version
+                    packet.getProtocolVersion()
             ));
             throw new CancelForwardingException();
         }
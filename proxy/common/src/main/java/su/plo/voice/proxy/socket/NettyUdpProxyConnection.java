@@ -1,5 +1,6 @@
 package su.plo.voice.proxy.socket;
 
+import com.google.common.collect.Lists;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.socket.DatagramPacket;
@@ -18,10 +19,12 @@ import su.plo.voice.proto.packets.udp.PacketUdpCodec;
 import su.plo.voice.proto.packets.udp.bothbound.CustomPacket;
 import su.plo.voice.proto.packets.udp.bothbound.PingPacket;
 import su.plo.voice.proto.packets.udp.serverbound.PlayerAudioPacket;
+import su.plo.voice.proto.packets.udp.serverbound.PlayerMultiAudioPacket;
 import su.plo.voice.proto.packets.udp.serverbound.ServerPacketUdpHandler;
 import su.plo.voice.proxy.connection.CancelForwardingException;
 
 import java.net.InetSocketAddress;
+import java.util.List;
 import java.util.UUID;
 
 @RequiredArgsConstructor
@@ -78,4 +81,37 @@ public final class NettyUdpProxyConnection implements UdpProxyConnection, Server
             throw new CancelForwardingException();
         }
     }
+
+    @Override
+    public void handle(@NotNull PlayerMultiAudioPacket packet) {
+        List<PlayerMultiAudioPacket.ActivationEntry> activations = packet.getActivations();
+        List<PlayerMultiAudioPacket.ActivationEntry> forwarded = Lists.newArrayListWithCapacity(activations.size());
+
+        List<PlayerAudioPacket> audioPackets = packet.toPlayerAudioPackets();
+        for (int i = 0; i < audioPackets.size(); i++) {
+            if (voiceProxy.getEventBus().call(new PlayerSpeakEvent(player, audioPackets.get(i)))) {
+                forwarded.add(activations.get(i));
+            }
+        }
+
+        // nothing is cancelled, so the original packet is forwarded as is
+        if (forwarded.size() == activations.size()) return;
+
+        if (!forwarded.isEmpty()) {
+            sendToRemoteServer(new PlayerMultiAudioPacket(packet.getData(), packet.isStereo(), forwarded));
+        }
+        throw new CancelForwardingException();
+    }
+
+    private void sendToRemoteServer(Packet<?> packet) {
+        if (remoteServer == null) return;
+
+        byte[] encoded = PacketUdpCodec.encode(packet, remoteSecret);
+        if (encoded == null) return;
+
+        channel.writeAndFlush(new DatagramPacket(
+                Unpooled.wrappedBuffer(encoded),
+                remoteServer.getAddress()
+        ));
+    }
 }
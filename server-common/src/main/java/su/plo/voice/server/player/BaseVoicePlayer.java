@@ -44,6 +44,12 @@ public abstract class BaseVoicePlayer<P extends MinecraftServerPlayer>
     private PlayerModLoader modLoader;
     @Setter
     private PublicKey publicKey;
+    /**
+     * Protocol version of the player's client, see {@link PacketTcpCodec#PROTOCOL_VERSION}
+     */
+    @Getter
+    @Setter
+    private int protocolVersion;
 
     private final Map<UUID, Integer> distanceByActivationId = Maps.newConcurrentMap();
     @Getter
@@ -18,6 +18,7 @@ import su.plo.voice.api.addon.ServerAddonsLoader;
 import su.plo.voice.api.audio.codec.AudioDecoder;
 import su.plo.voice.api.audio.codec.AudioEncoder;
 import su.plo.voice.api.encryption.Encryption;
+import su.plo.voice.api.encryption.EncryptionSupplier;
 import su.plo.voice.api.server.PlasmoBaseVoiceServer;
 import su.plo.voice.api.server.PlasmoVoiceServer;
 import su.plo.voice.api.server.audio.capture.ServerActivationManager;
@@ -48,6 +49,7 @@ import su.plo.voice.server.connection.VoiceUdpServerConnectionManager;
 import su.plo.voice.server.mute.VoiceMuteManager;
 import su.plo.voice.server.mute.storage.MuteStorageFactory;
 import su.plo.voice.server.player.LuckPermsListener;
+import su.plo.voice.server.player.BaseVoicePlayer;
 import su.plo.voice.server.player.PermissionSupplier;
 import su.plo.voice.server.player.VoiceServerPlayerManager;
 import su.plo.voice.server.socket.NettyUdpServer;
@@ -58,6 +60,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -72,6 +75,12 @@ public abstract class BaseVoiceServer extends BaseVoice implements PlasmoVoiceSe
 
     protected static final ConfigurationProvider TOML = ConfigurationProvider.getProvider(TomlConfiguration.class);
 
+    /**
+     * Untagged encryption supported by the clients before {@link #TAGGED_FRAMES_PROTOCOL_VERSION}
+     */
+    public static final String LEGACY_ENCRYPTION_ALGORITHM = "AES/CBC/PKCS5Padding";
+    private static final int TAGGED_FRAMES_PROTOCOL_VERSION = 1;
+
     @Getter
     protected final TcpServerConnectionManager tcpConnectionManager = new VoiceTcpServerConnectionManager(this);
     @Getter
@@ -102,6 +111,12 @@ public abstract class BaseVoiceServer extends BaseVoice implements PlasmoVoiceSe
 
     @Getter
     private Encryption defaultEncryption;
+    /**
+     * Whether the untagged legacy encryption is used instead of the suite,
+     * true while there are connected clients that can't read tagged audio frames
+     */
+    @Getter
+    private volatile boolean legacyEncryption;
 
     protected BaseVoiceServer(@NotNull ModrinthLoader loader) {
         super(loader);
@@ -259,8 +274,51 @@ public abstract class BaseVoiceServer extends BaseVoice implements PlasmoVoiceSe
 
     public void updateAesEncryptionKey(byte[] aesKey) {
         config.voice().aesEncryptionKey(aesKey);
-        // initialize default encoder
-        this.defaultEncryption = encryption.create("AES/CBC/PKCS5Padding", aesKey);
+        if (legacyEncryption) {
+            this.defaultEncryption = encryption.create(LEGACY_ENCRYPTION_ALGORITHM, aesKey);
+            return;
+        }
+
+        // initialize default encryption with the most preferred algorithm
+        List<String> algorithms = getEncryptionAlgorithms();
+        this.defaultEncryption = encryption.createSuite(algorithms, algorithms.get(0), aesKey);
+    }
+
+    /**
+     * Switches between the suite and the legacy encryption depending on the connected clients
+     * <br/>
+     * All clients share the key and the server forwards audio frames as is,
+     * so one client that can't read tagged frames switches everyone to the legacy encryption.
+     * If the encryption is changed, config is resent to all connected players
+     *
+     * @return true if the encryption is changed
+     */
+    public synchronized boolean updateLegacyEncryption() {
+        if (config == null) return false;
+
+        boolean legacyEncryption = udpConnectionManager.getConnections()
+                .stream()
+                .map(connection -> (BaseVoicePlayer<?>) connection.getPlayer())
+                .anyMatch(player -> player.getProtocolVersion() < TAGGED_FRAMES_PROTOCOL_VERSION);
+        if (this.legacyEncryption == legacyEncryption) return false;
+
+        this.legacyEncryption = legacyEncryption;
+        updateAesEncryptionKey(config.voice().aesEncryptionKey());
+        LOGGER.info("Switched to {} encryption", legacyEncryption ? "legacy" : "suite");
+
+        udpConnectionManager.getConnections()
+                .forEach(connection -> tcpConnectionManager.sendConfigInfo(connection.getPlayer()));
+        return true;
+    }
+
+    /**
+     * Gets registered encryption algorithms in the preference order advertised to the clients
+     */
+    public List<String> getEncryptionAlgorithms() {
+        return encryption.getAlgorithms()
+                .stream()
+                .map(EncryptionSupplier::getName)
+                .collect(Collectors.toList());
     }
 
     private void startUdpServer() {
@@ -76,6 +76,9 @@ public final class PlayerChannelHandler implements ServerPacketTcpHandler {
             return;
         }
 
+        // clients before protocol version 1 can't read tagged audio frames,
+        // server switches to the legacy encryption while they are connected
+        voicePlayer.setProtocolVersion(packet.getProtocolVersion());
         voicePlayer.setVoiceDisabled(packet.isVoiceDisabled());
         voicePlayer.setMicrophoneMuted(packet.isMicrophoneMuted());
 
@@ -12,11 +12,14 @@ import su.plo.voice.proto.data.audio.capture.VoiceActivation;
 import su.plo.voice.proto.data.audio.codec.CodecInfo;
 import su.plo.voice.proto.data.encryption.EncryptionInfo;
 import su.plo.voice.proto.packets.Packet;
+import su.plo.voice.proto.packets.tcp.PacketTcpCodec;
 import su.plo.voice.proto.packets.tcp.clientbound.*;
 import su.plo.voice.server.BaseVoiceServer;
 
 import javax.crypto.Cipher;
 import java.security.PublicKey;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.function.Predicate;
@@ -100,10 +103,18 @@ public final class VoiceTcpServerConnectionManager implements TcpServerConnectio
             Cipher encryptCipher = Cipher.getInstance("RSA");
             encryptCipher.init(Cipher.ENCRYPT_MODE, publicKey);
 
-            aesEncryption = new EncryptionInfo(
-                    "AES/CBC/PKCS5Padding",
-                    encryptCipher.doFinal(voiceConfig.aesEncryptionKey())
-            );
+            byte[] data = encryptCipher.doFinal(voiceConfig.aesEncryptionKey());
+            if (voiceServer.isLegacyEncryption()) {
+                // empty algorithms list makes the client use the algorithm as is, without frame tags
+                aesEncryption = new EncryptionInfo(
+                        BaseVoiceServer.LEGACY_ENCRYPTION_ALGORITHM,
+                        data,
+                        Collections.emptyList()
+                );
+            } else {
+                List<String> algorithms = voiceServer.getEncryptionAlgorithms();
+                aesEncryption = new EncryptionInfo(algorithms.get(0), data, algorithms);
+            }
         } catch (Exception e) {
             BaseVoice.LOGGER.error("Failed to encode encryption data: {}", e.toString());
             e.printStackTrace();
@@ -129,7 +140,8 @@ public final class VoiceTcpServerConnectionManager implements TcpServerConnectio
                         .filter(activation -> activation.checkPermissions(receiver))
                         .map(activation -> (VoiceActivation) activation) // waytoodank
                         .collect(Collectors.toSet()),
-                getPlayerPermissions(receiver)
+                getPlayerPermissions(receiver),
+                PacketTcpCodec.PROTOCOL_VERSION
         );
         receiver.sendPacket(packet);
 
@@ -135,6 +135,8 @@ public final class VoiceUdpServerConnectionManager implements UdpServerConnectio
 
         BaseVoice.DEBUG_LOGGER.log("{} disconnected", connection.getPlayer().getInstance().getName());
         voiceServer.getEventBus().call(new UdpClientDisconnectedEvent(connection));
+
+        voiceServer.updateLegacyEncryption();
     }
 
     @Override
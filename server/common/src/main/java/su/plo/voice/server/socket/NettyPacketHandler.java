@@ -58,7 +58,10 @@ public final class NettyPacketHandler extends SimpleChannelInboundHandler<NettyP
         connection.setRemoteAddress(nettyPacket.getDatagramPacket().sender());
         voiceServer.getUdpConnectionManager().addConnection(connection);
 
-        voiceServer.getTcpConnectionManager().sendConfigInfo(player.get());
+        // config is already resent to all connected players if this player changed the encryption
+        if (!voiceServer.updateLegacyEncryption()) {
+            voiceServer.getTcpConnectionManager().sendConfigInfo(player.get());
+        }
         voiceServer.getTcpConnectionManager().sendPlayerList(player.get());
 
         voiceServer.getTcpConnectionManager().broadcastPlayerInfoUpdate(player.get());
@@ -19,6 +19,7 @@ import su.plo.voice.proto.packets.udp.PacketUdpCodec;
 import su.plo.voice.proto.packets.udp.bothbound.CustomPacket;
 import su.plo.voice.proto.packets.udp.bothbound.PingPacket;
 import su.plo.voice.proto.packets.udp.serverbound.PlayerAudioPacket;
+import su.plo.voice.proto.packets.udp.serverbound.PlayerMultiAudioPacket;
 import su.plo.voice.proto.packets.udp.serverbound.ServerPacketUdpHandler;
 import su.plo.voice.server.BaseVoiceServer;
 
@@ -107,4 +108,13 @@ public final class NettyUdpServerConnection implements UdpServerConnection, Serv
         if (voiceServer.getMuteManager().getMute(player.getInstance().getUUID()).isPresent()) return;
         voiceServer.getEventBus().call(new PlayerSpeakEvent(player, packet));
     }
+
+    @Override
+    public void handle(@NotNull PlayerMultiAudioPacket packet) {
+        if (voiceServer.getMuteManager().getMute(player.getInstance().getUUID()).isPresent()) return;
+
+        for (PlayerAudioPacket audioPacket : packet.toPlayerAudioPackets()) {
+            voiceServer.getEventBus().call(new PlayerSpeakEvent(player, audioPacket));
+        }
+    }
 }